@@ -1,5 +1,6 @@
 package org.ozsoft.portfoliomanager;
 
+import org.ozsoft.portfoliomanager.util.HttpClient;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Configuration;
@@ -11,6 +12,13 @@ import org.springframework.lang.NonNull;
 public class Application {
 
     public static void main(String[] args) {
+        // Allow more idle keep-alive connections per host than the JDK default of 5 (read once, before the first HTTP request)
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(HttpClient.DEFAULT_THREAD_COUNT));
+        }
+
+        // Load the portfolio while the Spring context starts
+        org.ozsoft.portfoliomanager.domain.Configuration.preload();
         SpringApplication.run(Application.class, args);
     }
 
@@ -22,6 +22,7 @@ import javax.swing.SwingUtilities;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.ozsoft.portfoliomanager.domain.Configuration;
 import org.ozsoft.portfoliomanager.ui.MainFrame;
 
 public class Main {
@@ -30,6 +31,7 @@ public class Main {
 
     public static void main(String[] args) {
         LOGGER.debug("Starting application");
+        Configuration.preload();
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
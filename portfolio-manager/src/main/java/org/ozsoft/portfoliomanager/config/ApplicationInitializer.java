@@ -5,9 +5,12 @@ import org.apache.logging.log4j.Logger;
 import org.ozsoft.portfoliomanager.domain.Configuration;
 import org.ozsoft.portfoliomanager.service.DatabaseService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 @Component
 public class ApplicationInitializer {
@@ -17,13 +20,51 @@ public class ApplicationInitializer {
     @Autowired
     private DatabaseService databaseService;
 
+    @Value("${config.save.window-ms:500}")
+    private long saveWindowMillis;
+
+    @Value("${config.save.shutdown-timeout-seconds:30}")
+    private long shutdownTimeoutSeconds;
+
+    @Value("${config.save.wal-enabled:false}")
+    private boolean changeLogEnabled;
+
     @PostConstruct
     public void init() {
         try {
             Configuration.setDatabaseService(databaseService);
+            Configuration.setSaveWindow(saveWindowMillis);
+            Configuration.setChangeLogEnabled(changeLogEnabled);
             LOGGER.info("DatabaseService injected into Configuration");
+            importFromDatabase();
         } catch (Exception e) {
             LOGGER.error("Failed to initialize application", e);
         }
     }
+
+    /**
+     * Without a data file (e.g. a new installation on an existing database), starts from the stocks and transactions in
+     * the database.
+     */
+    private void importFromDatabase() {
+        Configuration config = Configuration.getInstance();
+        if (config.getStocks().isEmpty() && config.getTransactions().isEmpty()) {
+            long startTime = System.currentTimeMillis();
+            if (config.importFrom(databaseService.loadAllStocks(), databaseService.loadAllTransactions())) {
+                LOGGER.info("Configuration imported from database in " + (System.currentTimeMillis() - startTime) + " ms");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            if (!Configuration.flush(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                LOGGER.error("Timeout while saving configuration on shutdown");
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while saving configuration on shutdown");
+            Thread.currentThread().interrupt();
+        }
+    }
 }
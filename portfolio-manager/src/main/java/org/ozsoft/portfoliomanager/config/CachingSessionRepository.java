@@ -0,0 +1,210 @@
+package org.ozsoft.portfoliomanager.config;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ozsoft.portfoliomanager.util.LruCache;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+/**
+ * Keeps sessions of a (JDBC) session repository in memory, so requests don't read the session tables. Attribute
+ * changes are written through right away; last-access updates are batched and written every flush interval.
+ * Only suitable for a single application instance, since other instances would not see the cached changes.
+ */
+public class CachingSessionRepository<S extends Session>
+        implements SessionRepository<CachingSessionRepository.CachedSession<S>>, DisposableBean {
+
+    private static final Logger LOGGER = LogManager.getLogger(CachingSessionRepository.class);
+
+    private final SessionRepository<S> delegate;
+    private final LruCache<String, CachedSession<S>> cache;
+    private final long ttlSeconds;
+    private final Map<String, CachedSession<S>> touched = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CachingSessionRepository(SessionRepository<S> delegate, LruCache<String, CachedSession<S>> cache,
+            long ttlSeconds, long flushIntervalSeconds) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.ttlSeconds = ttlSeconds;
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public CachedSession<S> createSession() {
+        return new CachedSession<>(delegate.createSession());
+    }
+
+    @Override
+    public void save(CachedSession<S> session) {
+        synchronized (session) {
+            if (session.changed) {
+                delegate.save(session.delegate);
+                session.changed = false;
+                session.touched = false;
+                touched.remove(session.cachedId);
+                if (!session.cachedId.equals(session.getId())) {
+                    // Session ID changed (e.g. on login)
+                    cache.remove(session.cachedId);
+                    session.cachedId = session.getId();
+                }
+                cache.put(session.cachedId, session, ttlSeconds, TimeUnit.SECONDS);
+            } else if (session.touched) {
+                touched.put(session.cachedId, session);
+            }
+        }
+    }
+
+    @Override
+    public CachedSession<S> findById(String id) {
+        CachedSession<S> session = cache.get(id);
+        if (session == null) {
+            S stored = delegate.findById(id);
+            if (stored == null) {
+                return null;
+            }
+            session = new CachedSession<>(stored);
+            session.changed = false;
+            cache.put(id, session, ttlSeconds, TimeUnit.SECONDS);
+        } else if (session.isExpired()) {
+            deleteById(id);
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        cache.remove(id);
+        touched.remove(id);
+        delegate.deleteById(id);
+    }
+
+    /**
+     * Writes the batched last-access updates.
+     */
+    void flush() {
+        int count = 0;
+        for (String id : touched.keySet()) {
+            CachedSession<S> session = touched.remove(id);
+            if (session == null) {
+                continue;
+            }
+            try {
+                synchronized (session) {
+                    if (session.touched && !session.changed) {
+                        delegate.save(session.delegate);
+                        session.touched = false;
+                        count++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not save session last access time", e);
+            }
+        }
+        if (count > 0) {
+            LOGGER.debug("Flushed last access time of " + count + " sessions");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Session that records whether it changed (written through) or was only accessed (written in batches).
+     */
+    public static final class CachedSession<S extends Session> implements Session {
+
+        private final S delegate;
+        private String cachedId;
+        private boolean changed = true;
+        private boolean touched;
+
+        CachedSession(S delegate) {
+            this.delegate = delegate;
+            this.cachedId = delegate.getId();
+        }
+
+        @Override
+        public synchronized String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public synchronized String changeSessionId() {
+            changed = true;
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public synchronized <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public synchronized Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public synchronized void setAttribute(String attributeName, Object attributeValue) {
+            changed = true;
+            delegate.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public synchronized void removeAttribute(String attributeName) {
+            changed = true;
+            delegate.removeAttribute(attributeName);
+        }
+
+        @Override
+        public synchronized Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public synchronized void setLastAccessedTime(Instant lastAccessedTime) {
+            touched = true;
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public synchronized Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public synchronized void setMaxInactiveInterval(Duration interval) {
+            changed = true;
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public synchronized Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public synchronized boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.ozsoft.portfoliomanager.config;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ozsoft.portfoliomanager.util.SecurityUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SaveContextOnUpdateOrErrorResponseWrapper;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.util.WebUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Keeps the authenticated user in an encrypted and authenticated (AES-GCM) cookie instead of a server-side
+ * session, so requests are authenticated without any storage I/O. The cookie is only written when the user
+ * logs in or out.
+ */
+public class CookieSecurityContextRepository implements SecurityContextRepository {
+
+    public static final String COOKIE_NAME = "PM_AUTH";
+
+    private static final Logger LOGGER = LogManager.getLogger(CookieSecurityContextRepository.class);
+
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecretKey key;
+    private final long maxAgeSeconds;
+    private final SecureRandom random = new SecureRandom();
+    private final Gson gson = new Gson();
+
+    /**
+     * @param secret        the secret to derive the key from; if empty, a random key is used and logins do not
+     *                      survive a restart
+     * @param maxAgeSeconds how long a login stays valid
+     */
+    public CookieSecurityContextRepository(String secret, long maxAgeSeconds) {
+        this.key = createKey(secret);
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    @Override
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        Authentication authentication = readCookie(requestResponseHolder.getRequest());
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        if (authentication != null) {
+            context.setAuthentication(authentication);
+        }
+        requestResponseHolder.setResponse(new SaveToCookieResponseWrapper(requestResponseHolder.getRequest(),
+                requestResponseHolder.getResponse(), authentication));
+        return context;
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        SaveToCookieResponseWrapper wrapper = WebUtils.getNativeResponse(response, SaveToCookieResponseWrapper.class);
+        if (wrapper != null && !wrapper.isContextSaved()) {
+            wrapper.saveContext(context);
+        }
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return WebUtils.getCookie(request, COOKIE_NAME) != null;
+    }
+
+    Authentication readCookie(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        if (cookie == null || cookie.getValue() == null || cookie.getValue().isEmpty()) {
+            return null;
+        }
+        try {
+            Payload payload = gson.fromJson(decrypt(cookie.getValue()), Payload.class);
+            if (payload == null || payload.sub == null || payload.exp < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("sub", payload.sub);
+            putIfNotNull(attributes, "email", payload.email);
+            putIfNotNull(attributes, "name", payload.name);
+            putIfNotNull(attributes, "picture", payload.picture);
+            putIfNotNull(attributes, SecurityUtils.USER_ID_ATTRIBUTE, payload.uid);
+            OAuth2User user = new DefaultOAuth2User(Collections.singleton(new OAuth2UserAuthority(attributes)),
+                    attributes, "sub");
+            return new OAuth2AuthenticationToken(user, user.getAuthorities(), payload.reg);
+        } catch (GeneralSecurityException | IllegalArgumentException | JsonParseException e) {
+            LOGGER.debug("Ignoring invalid authentication cookie: " + e.getMessage());
+            return null;
+        }
+    }
+
+    String createCookieValue(OAuth2AuthenticationToken authentication) throws GeneralSecurityException {
+        OAuth2User user = authentication.getPrincipal();
+        Payload payload = new Payload();
+        payload.sub = user.getAttribute("sub");
+        payload.email = user.getAttribute("email");
+        payload.name = user.getAttribute("name");
+        payload.picture = user.getAttribute("picture");
+        Object userId = user.getAttribute(SecurityUtils.USER_ID_ATTRIBUTE);
+        payload.uid = (userId instanceof Number) ? ((Number) userId).longValue() : null;
+        payload.reg = authentication.getAuthorizedClientRegistrationId();
+        payload.exp = System.currentTimeMillis() / 1000 + maxAgeSeconds;
+        return encrypt(gson.toJson(payload));
+    }
+
+    private String encrypt(String plainText) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        byte[] cipherText = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(iv.length + cipherText.length);
+        buffer.put(iv).put(cipherText);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    private String decrypt(String value) throws GeneralSecurityException {
+        byte[] data = Base64.getUrlDecoder().decode(value);
+        if (data.length <= IV_LENGTH) {
+            throw new IllegalArgumentException("Cookie too short");
+        }
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, data, 0, IV_LENGTH));
+        return new String(cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH), StandardCharsets.UTF_8);
+    }
+
+    private static SecretKey createKey(String secret) {
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            LOGGER.warn("No session.cookie.secret configured; using a random key, logins will not survive a restart");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            try {
+                keyBytes = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    private static void putIfNotNull(Map<String, Object> attributes, String name, Object value) {
+        if (value != null) {
+            attributes.put(name, value);
+        }
+    }
+
+    private static class Payload {
+        String sub;
+        String email;
+        String name;
+        String picture;
+        Long uid;
+        String reg;
+        long exp;
+    }
+
+    /**
+     * Writes or deletes the cookie before the response is committed, when the authentication has changed.
+     */
+    private final class SaveToCookieResponseWrapper extends SaveContextOnUpdateOrErrorResponseWrapper {
+
+        private final HttpServletRequest request;
+        private final Authentication loadedAuthentication;
+
+        SaveToCookieResponseWrapper(HttpServletRequest request, HttpServletResponse response,
+                Authentication loadedAuthentication) {
+            super(response, true);
+            this.request = request;
+            this.loadedAuthentication = loadedAuthentication;
+        }
+
+        @Override
+        protected void saveContext(SecurityContext context) {
+            Authentication authentication = context.getAuthentication();
+            if (authentication == loadedAuthentication) {
+                return;
+            }
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            if (authentication instanceof OAuth2AuthenticationToken) {
+                try {
+                    String value = createCookieValue((OAuth2AuthenticationToken) authentication);
+                    response.addHeader(HttpHeaders.SET_COOKIE, createCookie(value, maxAgeSeconds).toString());
+                } catch (GeneralSecurityException e) {
+                    LOGGER.error("Could not create authentication cookie", e);
+                }
+            } else if (authentication == null && loadedAuthentication != null) {
+                // Logged out
+                response.addHeader(HttpHeaders.SET_COOKIE, createCookie("", 0).toString());
+            }
+        }
+
+        private ResponseCookie createCookie(String value, long maxAge) {
+            return ResponseCookie.from(COOKIE_NAME, value)
+                    .path("/")
+                    .httpOnly(true)
+                    .secure(request.isSecure())
+                    .sameSite("Lax")
+                    .maxAge(Duration.ofSeconds(maxAge))
+                    .build();
+        }
+    }
+}
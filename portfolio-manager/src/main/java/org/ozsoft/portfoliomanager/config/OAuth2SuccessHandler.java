@@ -1,8 +1,13 @@
 package org.ozsoft.portfoliomanager.config;
 
+import org.ozsoft.portfoliomanager.domain.User;
 import org.ozsoft.portfoliomanager.service.UserService;
+import org.ozsoft.portfoliomanager.util.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.stereotype.Component;
@@ -10,6 +15,7 @@ import org.springframework.stereotype.Component;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
 @Component
@@ -18,6 +24,9 @@ public class OAuth2SuccessHandler implements AuthenticationSuccessHandler {
     @Autowired
     private UserService userService;
 
+    @Value("${session.mode:jdbc}")
+    private String sessionMode;
+
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
             Authentication authentication) throws IOException, ServletException {
@@ -31,7 +40,21 @@ public class OAuth2SuccessHandler implements AuthenticationSuccessHandler {
             String picture = oauth2User.getAttribute("picture");
 
             if (googleId != null && email != null) {
-                userService.saveOrUpdateUser(googleId, email, name, picture);
+                User user = userService.saveOrUpdateUser(googleId, email, name, picture);
+                if (authentication instanceof OAuth2AuthenticationToken) {
+                    // Carry the user ID in the principal, so API calls don't have to look it up
+                    SecurityContextHolder.getContext().setAuthentication(
+                            SecurityUtils.withUserId((OAuth2AuthenticationToken) authentication, user.getId()));
+                }
+                SecurityUtils.setSessionUserId(googleId, user.getId());
+            }
+        }
+
+        if (SecurityConfig.SESSION_MODE_COOKIE.equals(sessionMode)) {
+            // The session was only needed for the login handshake; the login itself is kept in a cookie
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                session.invalidate();
             }
         }
 
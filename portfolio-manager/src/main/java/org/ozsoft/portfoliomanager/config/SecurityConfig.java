@@ -1,11 +1,20 @@
 package org.ozsoft.portfoliomanager.config;
 
+import org.ozsoft.portfoliomanager.service.CacheRegistry;
+import org.ozsoft.portfoliomanager.util.LruCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -16,12 +25,30 @@ import java.util.Arrays;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    /** Sessions in the Spring Session store (spring.session.store-type), read and written on every request. */
+    public static final String SESSION_MODE_JDBC = "jdbc";
+
+    /** Sessions in the JDBC store, cached in memory with last-access updates written in batches. */
+    public static final String SESSION_MODE_CACHED_JDBC = "cached-jdbc";
+
+    /** No server-side session after login; the login is kept in an encrypted cookie. */
+    public static final String SESSION_MODE_COOKIE = "cookie";
+
     @Autowired
     private OAuth2SuccessHandler oAuth2SuccessHandler;
 
     @Autowired
     private OAuth2FailureHandler oAuth2FailureHandler;
 
+    @Value("${session.mode:jdbc}")
+    private String sessionMode;
+
+    @Value("${session.cookie.secret:}")
+    private String cookieSecret;
+
+    @Value("${session.cookie.max-age-seconds:86400}")
+    private long cookieMaxAgeSeconds;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -29,10 +56,24 @@ public class SecurityConfig {
                 .antMatchers("/auth/**", "/h2-console/**").permitAll()
                 .anyRequest().authenticated()
             )
-            .headers(headers -> headers.frameOptions().disable())
-            .sessionManagement(session -> session
-                .sessionCreationPolicy(org.springframework.security.config.http.SessionCreationPolicy.IF_REQUIRED)
-            )
+            .headers(headers -> headers.frameOptions().disable());
+
+        if (SESSION_MODE_COOKIE.equals(sessionMode)) {
+            http
+                .securityContext(context -> context
+                    .securityContextRepository(new CookieSecurityContextRepository(cookieSecret, cookieMaxAgeSeconds))
+                )
+                .sessionManagement(session -> session
+                    .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                );
+        } else {
+            http
+                .sessionManagement(session -> session
+                    .sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED)
+                );
+        }
+
+        http
             .oauth2Login(oauth2 -> oauth2
                 .authorizationEndpoint(authEndpoint -> authEndpoint
                     .baseUri("/oauth2/authorization")
@@ -42,6 +83,7 @@ public class SecurityConfig {
             )
             .logout(logout -> logout
                 .logoutUrl("/logout")
+                .deleteCookies(CookieSecurityContextRepository.COOKIE_NAME)
                 .permitAll()
             )
             .cors()
@@ -51,6 +93,28 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Puts an in-memory cache in front of the JDBC session store (requires spring.session.store-type=jdbc).
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "session.mode", havingValue = SESSION_MODE_CACHED_JDBC)
+    public CachingSessionRepository<?> cachingSessionRepository(JdbcIndexedSessionRepository jdbcSessionRepository,
+            CacheRegistry cacheRegistry,
+            @Value("${session.cache.max-sessions:10000}") int maxSessions,
+            @Value("${session.cache.ttl-seconds:600}") long ttlSeconds,
+            @Value("${session.cache.flush-seconds:30}") long flushSeconds) {
+        return createCachingSessionRepository(jdbcSessionRepository, cacheRegistry, maxSessions, ttlSeconds, flushSeconds);
+    }
+
+    private static <S extends Session> CachingSessionRepository<S> createCachingSessionRepository(
+            SessionRepository<S> delegate, CacheRegistry cacheRegistry, int maxSessions, long ttlSeconds,
+            long flushSeconds) {
+        LruCache<String, CachingSessionRepository.CachedSession<S>> cache = cacheRegistry.createCache("sessions",
+                maxSessions);
+        return new CachingSessionRepository<>(delegate, cache, ttlSeconds, flushSeconds);
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
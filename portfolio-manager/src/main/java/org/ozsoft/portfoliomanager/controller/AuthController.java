@@ -1,7 +1,9 @@
 package org.ozsoft.portfoliomanager.controller;
 
 import org.ozsoft.portfoliomanager.domain.User;
+import org.ozsoft.portfoliomanager.repository.UserRepository;
 import org.ozsoft.portfoliomanager.service.UserService;
+import org.ozsoft.portfoliomanager.util.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -22,6 +24,9 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserRepository userRepository;
+
     @GetMapping("/user")
     public ResponseEntity<?> getAuthenticatedUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -37,12 +42,20 @@ public class AuthController {
             String name = oauth2User.getAttribute("name");
             String picture = oauth2User.getAttribute("picture");
 
-            User user = userService.saveOrUpdateUser(googleId, email, name, picture);
+            // The profile is stored at login; only create the user here if that did not happen
+            Long userId;
+            try {
+                userId = SecurityUtils.getCurrentUserId(userRepository);
+            } catch (SecurityUtils.SecurityException e) {
+                User user = userService.saveOrUpdateUser(googleId, email, name, picture);
+                userId = user.getId();
+                SecurityUtils.setSessionUserId(googleId, userId);
+            }
             Map<String, Object> userInfo = new HashMap<>();
-            userInfo.put("id", user.getId());
-            userInfo.put("email", user.getEmail());
-            userInfo.put("name", user.getName());
-            userInfo.put("picture", user.getPicture());
+            userInfo.put("id", userId);
+            userInfo.put("email", email);
+            userInfo.put("name", name);
+            userInfo.put("picture", picture);
             userInfo.put("sub", googleId);
             return ResponseEntity.ok(userInfo);
         }
@@ -0,0 +1,23 @@
+package org.ozsoft.portfoliomanager.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.ozsoft.portfoliomanager.service.CacheRegistry;
+import org.ozsoft.portfoliomanager.util.CacheStats;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    @GetMapping("/stats")
+    public Map<String, CacheStats> getStats() {
+        return cacheRegistry.getStats();
+    }
+}
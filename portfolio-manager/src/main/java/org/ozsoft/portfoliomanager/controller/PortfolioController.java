@@ -1,9 +1,12 @@
 package org.ozsoft.portfoliomanager.controller;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,35 +15,40 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.ozsoft.portfoliomanager.domain.Configuration;
 import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.domain.PortfolioStatistics;
 import org.ozsoft.portfoliomanager.domain.Position;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries;
 import org.ozsoft.portfoliomanager.dto.PortfolioDTO;
 import org.ozsoft.portfoliomanager.dto.PositionDTO;
+import org.ozsoft.portfoliomanager.dto.StatisticsDTO;
 import org.ozsoft.portfoliomanager.entity.PortfolioEntity;
 import org.ozsoft.portfoliomanager.repository.UserRepository;
 import org.ozsoft.portfoliomanager.service.PortfolioService;
+import org.ozsoft.portfoliomanager.service.UserPortfolioService;
+import org.ozsoft.portfoliomanager.service.ValuationService;
 import org.ozsoft.portfoliomanager.util.SecurityUtils;
 
 @RestController
 @RequestMapping("/api/portfolio")
 public class PortfolioController {
 
-    private final Configuration config;
-
     @Autowired
     private PortfolioService portfolioService;
     
     @Autowired
-    private UserRepository userRepository;
+    private UserPortfolioService userPortfolioService;
+    
+    @Autowired
+    private ValuationService valuationService;
 
-    public PortfolioController() {
-        this.config = Configuration.getInstance();
-    }
+    @Autowired
+    private UserRepository userRepository;
 
     @GetMapping
     public PortfolioDTO getPortfolio() {
-        Portfolio portfolio = config.getPortfolio();
+        Long userId = SecurityUtils.getCurrentUserId(userRepository);
+        Portfolio portfolio = userPortfolioService.getPortfolio(userId);
         if (portfolio == null) {
             return new PortfolioDTO();
         }
@@ -54,11 +62,55 @@ public class PortfolioController {
         return ResponseEntity.ok(portfolio);
     }
 
+    /**
+     * Returns the portfolio's stored metrics (kept current in the background), without computing anything.
+     */
+    @GetMapping("/summary")
+    public PortfolioEntity getPortfolioSummary() {
+        Long userId = SecurityUtils.getCurrentUserId(userRepository);
+        return portfolioService.getOrCreateUserPortfolio(userId);
+    }
+
+    /**
+     * Returns the daily valuation (cost basis, market value, income, realized result) per day, month, quarter or
+     * year within an optional date range.
+     */
+    @GetMapping("/valuation")
+    public List<ValuationSeries.Period> getValuation(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "MONTH") String granularity) {
+        ValuationSeries.Granularity periodGranularity;
+        try {
+            periodGranularity = ValuationSeries.Granularity.valueOf(granularity.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid granularity (must be DAY, MONTH, QUARTER or YEAR)");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid date range");
+        }
+        Long userId = SecurityUtils.getCurrentUserId(userRepository);
+        return valuationService.getValuation(userId, from, to, periodGranularity);
+    }
+
+    /**
+     * Returns the average cost basis and income per month, quarter and year, and overall with the CAGR.
+     */
+    @GetMapping("/statistics")
+    public StatisticsDTO getStatistics() {
+        Long userId = SecurityUtils.getCurrentUserId(userRepository);
+        Portfolio portfolio = userPortfolioService.getPortfolio(userId);
+        PortfolioStatistics statistics = PortfolioStatistics.compute(portfolio.getTransactions(), LocalDate.now(),
+                ZoneId.systemDefault());
+        return new StatisticsDTO(statistics, portfolio.getTotalReturn());
+    }
+
     @GetMapping("/positions")
     public List<PositionDTO> getPositions(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "50") int size) {
-        Portfolio portfolio = config.getPortfolio();
+        Long userId = SecurityUtils.getCurrentUserId(userRepository);
+        Portfolio portfolio = userPortfolioService.getPortfolio(userId);
         if (portfolio == null || portfolio.getPositions() == null) {
             return new java.util.ArrayList<>();
         }
@@ -74,14 +126,14 @@ public class PortfolioController {
 
     @GetMapping("/positions/{symbol}")
     public PositionDTO getPosition(@PathVariable String symbol) {
-        Portfolio portfolio = config.getPortfolio();
-        if (portfolio == null || portfolio.getPositions() == null) {
+        Long userId = SecurityUtils.getCurrentUserId(userRepository);
+        Portfolio portfolio = userPortfolioService.getPortfolio(userId);
+        if (portfolio == null) {
             throw new IllegalArgumentException("Portfolio not found");
         }
-        for (Position position : portfolio.getPositions()) {
-            if (position != null && position.getStock() != null && position.getStock().getSymbol().equals(symbol)) {
-                return PositionDTO.fromPosition(position);
-            }
+        Position position = portfolio.getPosition(symbol.trim().toUpperCase());
+        if (position != null) {
+            return PositionDTO.fromPosition(position);
         }
         throw new IllegalArgumentException("Position not found for symbol: " + symbol);
     }
@@ -0,0 +1,23 @@
+package org.ozsoft.portfoliomanager.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.ozsoft.portfoliomanager.dto.ProviderStatsDTO;
+import org.ozsoft.portfoliomanager.service.StockAPIService;
+
+@RestController
+@RequestMapping("/api/providers")
+public class ProviderController {
+
+    @Autowired
+    private StockAPIService stockAPIService;
+
+    @GetMapping("/stats")
+    public List<ProviderStatsDTO> getStats() {
+        return stockAPIService.getProviderStats();
+    }
+}
@@ -1,5 +1,7 @@
 package org.ozsoft.portfoliomanager.controller;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,21 +18,21 @@ public class StockSearchController {
     private StockPriceService stockPriceService;
 
     @GetMapping("/stock")
-    public StockPriceDTO searchStock(@RequestParam String symbol) {
+    public CompletableFuture<StockPriceDTO> searchStock(@RequestParam String symbol) {
         if (symbol == null || symbol.isEmpty()) {
             throw new IllegalArgumentException("Symbol is required");
         }
         
-        StockPriceDTO result = stockPriceService.getIndianStock(symbol);
-        if (result == null) {
-            throw new IllegalArgumentException("Stock not found: " + symbol);
-        }
-        
-        return result;
+        return stockPriceService.getIndianStockAsync(symbol).thenApply(result -> {
+            if (result == null) {
+                throw new IllegalArgumentException("Stock not found: " + symbol);
+            }
+            return result;
+        });
     }
 
     @GetMapping("/stock/price")
-    public StockPriceDTO getStockPrice(@RequestParam String symbol) {
+    public CompletableFuture<StockPriceDTO> getStockPrice(@RequestParam String symbol) {
         return searchStock(symbol);
     }
 }
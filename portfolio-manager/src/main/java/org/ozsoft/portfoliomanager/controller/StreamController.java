@@ -0,0 +1,31 @@
+package org.ozsoft.portfoliomanager.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.ozsoft.portfoliomanager.repository.UserRepository;
+import org.ozsoft.portfoliomanager.service.QuoteStreamService;
+import org.ozsoft.portfoliomanager.util.SecurityUtils;
+
+@RestController
+@RequestMapping("/api/stream")
+public class StreamController {
+
+    @Autowired
+    private QuoteStreamService quoteStreamService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @GetMapping(value = "/prices", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPrices(@RequestParam(required = false) List<String> symbols) {
+        Long userId = SecurityUtils.getCurrentUserId(userRepository);
+        return quoteStreamService.subscribe(userId, symbols);
+    }
+}
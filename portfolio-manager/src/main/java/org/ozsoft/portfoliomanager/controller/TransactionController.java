@@ -25,6 +25,8 @@ import org.ozsoft.portfoliomanager.util.SecurityUtils;
 @RequestMapping("/api/transactions")
 public class TransactionController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final TransactionService transactionService;
 
     @Autowired
@@ -37,17 +39,31 @@ public class TransactionController {
         this.transactionService = transactionService;
     }
 
+    /**
+     * Returns a page of the user's transactions in (date, id) order. For deep paging, pass the date and ID of the
+     * last transaction received as afterDate and afterId instead of a page number.
+     */
     @GetMapping
     public List<TransactionDTO> getAllTransactions(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "50") int size) {
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String symbol,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(required = false) Long afterDate,
+            @RequestParam(required = false) Integer afterId) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid page or size (size must be between 1 and " + MAX_PAGE_SIZE + ")");
+        }
+        if ((afterDate == null) != (afterId == null)) {
+            throw new IllegalArgumentException("Both afterDate and afterId are required");
+        }
         Long userId = SecurityUtils.getCurrentUserId(userRepository);
-        List<TransactionEntity> transactions = transactionService.getUserTransactions(userId);
-        
-        int start = Math.min(page * size, transactions.size());
-        int end = Math.min(start + size, transactions.size());
-        
-        return transactions.subList(start, end).stream()
+        List<TransactionEntity> transactions = transactionService.getUserTransactions(userId, symbol, type, from, to,
+                afterDate, afterId, page, size);
+
+        return transactions.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
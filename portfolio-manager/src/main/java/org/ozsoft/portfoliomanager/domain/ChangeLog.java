@@ -0,0 +1,180 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.ozsoft.portfoliomanager.domain;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ozsoft.portfoliomanager.util.AtomicFile;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Write-ahead log of configuration changes. <br />
+ * <br />
+ *
+ * Each record is a {@link ChangeSet} as a single line of JSON, appended and forced to disk. Replaying the records on top of the last
+ * snapshot restores the latest state. A record that was only partially written (e.g. due to a crash) ends the log.
+ */
+public class ChangeLog {
+
+    private static final Logger LOGGER = LogManager.getLogger(ChangeLog.class);
+
+    private final File file;
+
+    private final Gson gson;
+
+    private int recordCount = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            The log file.
+     * @param gson
+     *            The JSON serializer.
+     */
+    public ChangeLog(File file, Gson gson) {
+        this.file = file;
+        this.gson = gson;
+    }
+
+    /**
+     * Returns whether the log file exists.
+     *
+     * @return {@code true} if the log file exists, otherwise {@code false}.
+     */
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * Returns the number of records in the log.
+     *
+     * @return The number of records.
+     */
+    public synchronized int getRecordCount() {
+        if (recordCount < 0) {
+            recordCount = read().size();
+        }
+        return recordCount;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param json
+     *            The record, as JSON.
+     *
+     * @throws IOException
+     *             If the record could not be written.
+     */
+    public synchronized void append(String json) throws IOException {
+        boolean created = !file.exists();
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write((json + '\n').getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        if (created) {
+            AtomicFile.syncDirectory(file.getAbsoluteFile().getParentFile());
+        }
+        if (recordCount >= 0) {
+            recordCount++;
+        }
+    }
+
+    /**
+     * Reads all complete records.
+     *
+     * @return The records, in the order they were written.
+     */
+    public synchronized List<ChangeSet> read() {
+        List<ChangeSet> records = new ArrayList<ChangeSet>();
+        if (file.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        records.add(gson.fromJson(line, ChangeSet.class));
+                    } catch (JsonParseException e) {
+                        LOGGER.warn("Ignoring incomplete change log record " + (records.size() + 1) + " and beyond");
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("Could not read change log: " + file.getAbsolutePath(), e);
+            }
+        }
+        recordCount = records.size();
+        return records;
+    }
+
+    /**
+     * Reads all complete records written after a snapshot. <br />
+     * <br />
+     *
+     * Records left behind by a crash between writing a snapshot and clearing the change log are already part of that snapshot,
+     * and are skipped.
+     *
+     * @param generation
+     *            The generation of the snapshot.
+     *
+     * @return The newer records, in the order they were written.
+     */
+    public synchronized List<ChangeSet> read(long generation) {
+        List<ChangeSet> records = new ArrayList<ChangeSet>();
+        for (ChangeSet record : read()) {
+            if (record.getGeneration() > generation) {
+                records.add(record);
+            }
+        }
+        if (records.size() < recordCount) {
+            LOGGER.info("Skipping " + (recordCount - records.size()) + " change log records already in the snapshot");
+        }
+        return records;
+    }
+
+    /**
+     * Deletes all records (after a snapshot has been written).
+     */
+    public synchronized void clear() {
+        if (file.exists() && !file.delete()) {
+            // Records must never be replayed on top of a newer snapshot, so at least empty the file
+            try {
+                new FileOutputStream(file).close();
+            } catch (IOException e) {
+                LOGGER.error("Could not clear change log: " + file.getAbsolutePath(), e);
+            }
+        }
+        recordCount = 0;
+    }
+}
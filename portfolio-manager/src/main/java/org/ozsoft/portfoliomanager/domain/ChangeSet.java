@@ -0,0 +1,165 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.ozsoft.portfoliomanager.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes to the configuration since the last save: added, changed and deleted stocks and transactions, plus the current settings. <br />
+ * <br />
+ *
+ * Used both to update the database and as a change log record.
+ */
+public class ChangeSet {
+
+    private boolean roundTotals;
+
+    private boolean showClosedPositions;
+
+    private boolean deductIncomeTax;
+
+    /** Number of the write this record belongs to. */
+    private long generation;
+
+    private final List<Stock> stocks = new ArrayList<Stock>();
+
+    private final List<String> deletedStocks = new ArrayList<String>();
+
+    private final List<Transaction> transactions = new ArrayList<Transaction>();
+
+    /** Keys (symbol and date) of deleted transactions. */
+    private final List<Transaction> deletedTransactions = new ArrayList<Transaction>();
+
+    /**
+     * Constructor.
+     *
+     * @param roundTotals
+     *            Whether to round monetary totals.
+     * @param showClosedPositions
+     *            Whether to show closed positions.
+     * @param deductIncomeTax
+     *            Whether to deduct income tax.
+     */
+    public ChangeSet(boolean roundTotals, boolean showClosedPositions, boolean deductIncomeTax) {
+        this.roundTotals = roundTotals;
+        this.showClosedPositions = showClosedPositions;
+        this.deductIncomeTax = deductIncomeTax;
+    }
+
+    /**
+     * Returns whether to round monetary totals.
+     *
+     * @return Whether to round monetary totals.
+     */
+    public boolean isRoundTotals() {
+        return roundTotals;
+    }
+
+    /**
+     * Returns whether to show closed positions.
+     *
+     * @return Whether to show closed positions.
+     */
+    public boolean isShowClosedPositions() {
+        return showClosedPositions;
+    }
+
+    /**
+     * Returns whether to deduct income tax.
+     *
+     * @return Whether to deduct income tax.
+     */
+    public boolean isDeductIncomeTax() {
+        return deductIncomeTax;
+    }
+
+    /**
+     * Returns the generation (the number of the write this record belongs to).
+     *
+     * @return The generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Sets the generation (the number of the write this record belongs to).
+     *
+     * @param generation
+     *            The generation.
+     */
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the added or changed stocks.
+     *
+     * @return The stocks.
+     */
+    public List<Stock> getStocks() {
+        return stocks;
+    }
+
+    /**
+     * Returns the symbols of the deleted stocks.
+     *
+     * @return The symbols.
+     */
+    public List<String> getDeletedStocks() {
+        return deletedStocks;
+    }
+
+    /**
+     * Returns the added or changed transactions.
+     *
+     * @return The transactions.
+     */
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Returns the keys (symbol and date) of the deleted transactions.
+     *
+     * @return The transaction keys.
+     */
+    public List<Transaction> getDeletedTransactions() {
+        return deletedTransactions;
+    }
+
+    /**
+     * Returns the total number of changes.
+     *
+     * @return The number of changes.
+     */
+    public int size() {
+        return stocks.size() + deletedStocks.size() + transactions.size() + deletedTransactions.size();
+    }
+
+    /**
+     * Returns whether there are no changes.
+     *
+     * @return {@code true} if there are no changes, otherwise {@code false}.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
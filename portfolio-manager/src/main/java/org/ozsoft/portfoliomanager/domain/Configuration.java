@@ -19,31 +19,43 @@
 package org.ozsoft.portfoliomanager.domain;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.ozsoft.portfoliomanager.util.AtomicFile;
+import org.ozsoft.portfoliomanager.util.WriteBehindQueue;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * The applcation's configuration. <br />
@@ -61,6 +73,8 @@ public class Configuration {
 
     private static final File PORTFOLIO_FILE = new File(DATA_DIR, "portfolio.json");
 
+    private static final File CHANGE_LOG_FILE = new File(DATA_DIR, "portfolio.wal");
+
     private static final File ANALYSIS_RESULT_FILE = new File(DATA_DIR, "stock_analysis.csv");
 
     private static final BigDecimal INCOME_TAX_RATE = new BigDecimal("0.15");
@@ -69,11 +83,38 @@ public class Configuration {
 
     private static final int MAX_BACKUP_COUNT = 5;
 
+    private static final long DEFAULT_SAVE_WINDOW = 500L;
+
+    /** Maximum number of change log records before a new snapshot is written. */
+    private static final int MAX_LOG_RECORDS = 1000;
+
+    /** Maximum number of changes to append to the change log; larger saves write a new snapshot. */
+    private static final int MAX_LOG_CHANGES = 100;
+
+    /** Compact JSON encoding for snapshots and change log records. */
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private static final ChangeLog CHANGE_LOG = new ChangeLog(CHANGE_LOG_FILE, GSON);
+
     private static final Logger LOGGER = LogManager.getLogger(Configuration.class);
 
-    private static Configuration config;
+    private static volatile Configuration config;
+
+    private static Thread loaderThread;
+
+    private static final WriteBehindQueue SAVE_QUEUE = new WriteBehindQueue("configuration-saver", new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    }, DEFAULT_SAVE_WINDOW);
+
+    private static volatile org.ozsoft.portfoliomanager.service.DatabaseService databaseService;
 
-    private static org.ozsoft.portfoliomanager.service.DatabaseService databaseService;
+    private static volatile boolean changeLogEnabled = false;
+
+    /** Whether the next save must write a snapshot, because the last changes could not be written to file. */
+    private static volatile boolean snapshotRequired = false;
 
     private boolean roundTotals = true;
 
@@ -81,16 +122,48 @@ public class Configuration {
 
     private boolean deductIncomeTax = false;
 
+    /** Number of the last write (snapshot or change log record); change log records up to the snapshot's number are already in it. */
+    private long generation;
+
     private final TreeMap<String, Stock> stocks;
 
+    /** Transactions, sorted by date. */
     private final List<Transaction> transactions;
 
+    /** Transactions by their ID (built on first access, not persisted). */
+    private transient Map<Integer, Transaction> transactionsById;
+
+    /** Transactions per symbol, sorted by date (built on first access, not persisted). */
+    private transient Map<String, List<Transaction>> transactionsBySymbol;
+
+    /** Highest transaction ID handed out. */
+    private transient int lastTransactionId;
+
+    /** Symbols of the stocks added or changed since the last save. */
+    private transient Set<String> changedStocks;
+
+    /** Symbols of the stocks deleted since the last save. */
+    private transient Set<String> deletedStocks;
+
+    /** Transactions added or changed since the last save, by ID. */
+    private transient Map<Integer, Transaction> changedTransactions;
+
+    /** Keys (ID, symbol and date) of the transactions deleted since the last save. */
+    private transient List<Transaction> deletedTransactions;
+
+    /** Portfolio maintained alongside the transactions (lazily built, not persisted). */
+    private transient Portfolio portfolio;
+
     /**
      * Constructor.
      */
     private Configuration() {
         stocks = new TreeMap<String, Stock>();
         transactions = new ArrayList<Transaction>();
+        changedStocks = new LinkedHashSet<String>();
+        deletedStocks = new LinkedHashSet<String>();
+        changedTransactions = new LinkedHashMap<Integer, Transaction>();
+        deletedTransactions = new ArrayList<Transaction>();
 
         Locale.setDefault(Locale.US);
     }
@@ -101,11 +174,42 @@ public class Configuration {
      * @return The singleton instance.
      */
     public static Configuration getInstance() {
-        if (config == null) {
-            Configuration.createDailyBackup();
-            config = Configuration.load();
+        Configuration instance = config;
+        if (instance == null) {
+            synchronized (Configuration.class) {
+                if (config == null) {
+                    Configuration.createDailyBackup();
+                    config = Configuration.load();
+                    if (databaseService != null) {
+                        // The database service was set while loading
+                        config.markAllChanged();
+                    }
+                }
+                instance = config;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Starts loading the configuration in the background, so it is (being) loaded by the time it is first needed. <br />
+     * <br />
+     *
+     * Callers of {@link #getInstance()} wait for a load in progress.
+     */
+    public static synchronized void preload() {
+        if (config == null && loaderThread == null) {
+            loaderThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long startTime = System.currentTimeMillis();
+                    getInstance();
+                    LOGGER.debug(String.format("Configuration preloaded in %d ms", System.currentTimeMillis() - startTime));
+                }
+            }, "configuration-loader");
+            loaderThread.setDaemon(true);
+            loaderThread.start();
         }
-        return config;
     }
 
     /**
@@ -131,7 +235,7 @@ public class Configuration {
      *
      * @return All stocks.
      */
-    public Set<Stock> getStocks() {
+    public synchronized Set<Stock> getStocks() {
         return new TreeSet<Stock>(stocks.values());
     }
 
@@ -158,7 +262,7 @@ public class Configuration {
      *
      * @return The stock if found, otherwise {@code null}.
      */
-    public Stock getStock(String symbol) {
+    public synchronized Stock getStock(String symbol) {
         return stocks.get(symbol);
     }
 
@@ -173,10 +277,15 @@ public class Configuration {
      *
      * @return {@code true} if the stock was added, otherwise {@code false}.
      */
-    public boolean addStock(Stock stock) {
+    public synchronized boolean addStock(Stock stock) {
         String symbol = stock.getSymbol();
         if (!stocks.containsKey(symbol)) {
             stocks.put(symbol, stock);
+            deletedStocks.remove(symbol);
+            changedStocks.add(symbol);
+            if (portfolio != null) {
+                portfolio.updatePosition(symbol);
+            }
             LOGGER.info("Added stock: " + stock);
             return true;
         } else {
@@ -192,10 +301,15 @@ public class Configuration {
      *
      * @return {@code true} if the stock was deleted, otherwise {@code false}.
      */
-    public boolean deleteStock(Stock stock) {
+    public synchronized boolean deleteStock(Stock stock) {
         String symbol = stock.getSymbol();
         if (stocks.containsKey(symbol)) {
             stocks.remove(symbol);
+            changedStocks.remove(symbol);
+            deletedStocks.add(symbol);
+            if (portfolio != null) {
+                portfolio.updatePosition(symbol);
+            }
             LOGGER.info("Deleted stock: " + stock);
             return true;
         } else {
@@ -203,32 +317,111 @@ public class Configuration {
         }
     }
 
+    /**
+     * Marks a stock as changed after it has been modified in-place, so that it is included in the next save.
+     *
+     * @param stock
+     *            The stock.
+     */
+    public synchronized void updateStock(Stock stock) {
+        if (stocks.containsKey(stock.getSymbol())) {
+            changedStocks.add(stock.getSymbol());
+        }
+    }
+
     /**
      * Returns all transactions, sorted by date.
      *
      * @return The transactions.
      */
-    public List<Transaction> getTransactions() {
-        // TODO: Only sort and update IDs when needed (dirty flag).
-        Collections.sort(transactions);
+    public synchronized List<Transaction> getTransactions() {
+        indexTransactions();
+        return Collections.unmodifiableList(transactions);
+    }
 
-        // Update transaction IDs (incremental, sorted by date).
-        int id = 1;
-        for (Transaction transaction : transactions) {
-            transaction.setId(id++);
+    /**
+     * Returns the transactions of a specific stock, sorted by date.
+     *
+     * @param symbol
+     *            The stock's symbol.
+     *
+     * @return The transactions (empty if none).
+     */
+    public synchronized List<Transaction> getTransactions(String symbol) {
+        indexTransactions();
+        List<Transaction> symbolTransactions = transactionsBySymbol.get(symbol);
+        if (symbolTransactions != null) {
+            return Collections.unmodifiableList(new ArrayList<Transaction>(symbolTransactions));
+        } else {
+            return Collections.emptyList();
         }
+    }
 
-        return Collections.unmodifiableList(transactions);
+    /**
+     * Returns a transaction based on its ID.
+     *
+     * @param id
+     *            The transaction ID.
+     *
+     * @return The transaction if found, otherwise {@code null}.
+     */
+    public synchronized Transaction getTransaction(int id) {
+        indexTransactions();
+        return transactionsById.get(id);
     }
 
     /**
-     * Adds a transaction.
+     * Adds a transaction. <br />
+     * <br />
+     *
+     * The transaction is assigned a new ID unless it already has a unique one.
      *
      * @param transaction
      *            The transaction.
+     *
+     * @throws IllegalArgumentException
+     *             If the transaction is not valid for the position (e.g. selling more shares than owned), in which case it is not added.
      */
-    public void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
+    public synchronized void addTransaction(Transaction transaction) {
+        indexTransactions();
+        if (portfolio != null) {
+            // Validates the transaction before anything else changes
+            portfolio.addTransaction(transaction);
+        }
+        int id = transaction.getId();
+        if (id <= 0 || transactionsById.containsKey(id)) {
+            id = ++lastTransactionId;
+            transaction.setId(id);
+        } else {
+            lastTransactionId = Math.max(lastTransactionId, id);
+        }
+        transactionsById.put(id, transaction);
+        insertTransaction(transaction);
+        addToSymbolIndex(transaction);
+        changedTransactions.put(id, transaction);
+    }
+
+    /**
+     * Updates a transaction after it has been modified in-place (e.g. its date or symbol).
+     *
+     * @param transaction
+     *            The transaction.
+     * @param oldSymbol
+     *            The symbol before the modification.
+     * @param oldDate
+     *            The date before the modification.
+     */
+    public synchronized void updateTransaction(Transaction transaction, String oldSymbol, long oldDate) {
+        indexTransactions();
+        // Saved by ID, so a changed symbol or date is just an update
+        changedTransactions.put(transaction.getId(), transaction);
+        if (removeTransaction(transaction)) {
+            insertTransaction(transaction);
+        }
+        // The symbol may have changed as well
+        transactionsBySymbol = null;
+        indexTransactions();
+        invalidatePortfolio();
     }
 
     /**
@@ -236,43 +429,236 @@ public class Configuration {
      *
      * @param transaction
      *            The transaction.
+     *
+     * @throws IllegalArgumentException
+     *             If the position is not valid without the transaction (e.g. a later sale of the shares it bought), in which case it is
+     *             not deleted.
      */
-    public void deleteTransaction(Transaction transaction) {
-        transactions.remove(transaction);
+    public synchronized void deleteTransaction(Transaction transaction) {
+        indexTransactions();
+        Transaction stored = transactionsById.get(transaction.getId());
+        if (stored == null) {
+            // Not one of ours by ID; fall back to matching by symbol and date
+            int index = transactions.indexOf(transaction);
+            if (index < 0) {
+                return;
+            }
+            stored = transactions.get(index);
+        }
+        if (portfolio != null) {
+            // Validates the deletion before anything else changes
+            portfolio.removeTransaction(stored);
+        }
+        if (removeTransaction(stored)) {
+            transactionsById.remove(stored.getId());
+            removeFromSymbolIndex(stored);
+            changedTransactions.remove(stored.getId());
+            deletedTransactions.add(createKey(stored));
+        }
     }
 
     /**
-     * Returns the current stock portfolio.
+     * Returns the current stock portfolio. <br />
+     * <br />
+     *
+     * The portfolio is built once and then kept up-to-date as transactions and stocks are added or deleted.
      *
      * @return The portfolio.
      */
-    public Portfolio getPortfolio() {
-        Portfolio portfolio = new Portfolio();
-        for (Transaction transaction : getTransactions()) {
-            portfolio.addTransaction(transaction);
+    public synchronized Portfolio getPortfolio() {
+        if (portfolio == null) {
+            indexTransactions();
+            Portfolio newPortfolio = new Portfolio();
+            for (List<Transaction> symbolTransactions : transactionsBySymbol.values()) {
+                for (Transaction transaction : symbolTransactions) {
+                    newPortfolio.addTransaction(transaction);
+                }
+            }
+            newPortfolio.update(this);
+            portfolio = newPortfolio;
         }
-        portfolio.update(this);
         return portfolio;
     }
 
     /**
-     * Returns whether a position (open or closed) exists for the specified stock.
+     * Creates a transaction holding only the key (ID, symbol and date) of a deleted transaction.
      *
-     * @param stock
-     *            The stock.
+     * @param transaction
+     *            The deleted transaction.
      *
-     * @return {@code true} is a position exists, otherwise {@code false}.
+     * @return The transaction key.
      */
-    public boolean hasPosition(Stock stock) {
-        String symbol = stock.getSymbol();
-        for (Transaction tx : transactions) {
-            if (tx.getSymbol().equals(symbol)) {
+    private static Transaction createKey(Transaction transaction) {
+        Transaction key = new Transaction();
+        key.setId(transaction.getId());
+        key.setSymbol(transaction.getSymbol());
+        key.setDate(transaction.getDate());
+        return key;
+    }
+
+    /**
+     * Discards the current portfolio, so it is rebuilt on next access.
+     */
+    private void invalidatePortfolio() {
+        portfolio = null;
+    }
+
+    /**
+     * Builds the transaction index on first access. <br />
+     * <br />
+     *
+     * Transactions loaded from file are sorted once and keep their persisted IDs; missing or duplicate IDs are replaced with new ones.
+     */
+    private void indexTransactions() {
+        if (transactionsById == null) {
+            transactionsBySymbol = null;
+            Collections.sort(transactions);
+            transactionsById = new HashMap<Integer, Transaction>(capacityFor(transactions.size()));
+            lastTransactionId = 0;
+            for (Transaction transaction : transactions) {
+                lastTransactionId = Math.max(lastTransactionId, transaction.getId());
+            }
+            for (Transaction transaction : transactions) {
+                int id = transaction.getId();
+                if (id <= 0 || transactionsById.containsKey(id)) {
+                    id = ++lastTransactionId;
+                    transaction.setId(id);
+                }
+                transactionsById.put(id, transaction);
+            }
+        }
+        if (transactionsBySymbol == null) {
+            transactionsBySymbol = new HashMap<String, List<Transaction>>(capacityFor(stocks.size()));
+            for (Transaction transaction : transactions) {
+                addToSymbolIndex(transaction);
+            }
+        }
+    }
+
+    /**
+     * Returns the initial capacity for a hash map to hold a number of entries without rehashing.
+     *
+     * @param size
+     *            The expected number of entries.
+     *
+     * @return The initial capacity.
+     */
+    private static int capacityFor(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+
+    /**
+     * Adds a transaction to the per-symbol index, in date order.
+     *
+     * @param transaction
+     *            The transaction.
+     */
+    private void addToSymbolIndex(Transaction transaction) {
+        List<Transaction> symbolTransactions = transactionsBySymbol.get(transaction.getSymbol());
+        if (symbolTransactions == null) {
+            symbolTransactions = new ArrayList<Transaction>();
+            transactionsBySymbol.put(transaction.getSymbol(), symbolTransactions);
+        }
+        int index = symbolTransactions.size();
+        while (index > 0 && symbolTransactions.get(index - 1).getDate() > transaction.getDate()) {
+            index--;
+        }
+        symbolTransactions.add(index, transaction);
+    }
+
+    /**
+     * Removes a transaction from the per-symbol index.
+     *
+     * @param transaction
+     *            The transaction.
+     */
+    private void removeFromSymbolIndex(Transaction transaction) {
+        List<Transaction> symbolTransactions = transactionsBySymbol.get(transaction.getSymbol());
+        if (symbolTransactions != null) {
+            for (int i = symbolTransactions.size() - 1; i >= 0; i--) {
+                if (symbolTransactions.get(i) == transaction) {
+                    symbolTransactions.remove(i);
+                    break;
+                }
+            }
+            if (symbolTransactions.isEmpty()) {
+                transactionsBySymbol.remove(transaction.getSymbol());
+            }
+        }
+    }
+
+    /**
+     * Inserts a transaction in date order, after any transactions on the same date.
+     *
+     * @param transaction
+     *            The transaction.
+     */
+    private void insertTransaction(Transaction transaction) {
+        transactions.add(upperBound(transaction.getDate()), transaction);
+    }
+
+    /**
+     * Removes a specific transaction instance from the sorted list.
+     *
+     * @param transaction
+     *            The transaction.
+     *
+     * @return {@code true} if the transaction was removed, otherwise {@code false}.
+     */
+    private boolean removeTransaction(Transaction transaction) {
+        // Look among the transactions on the same date first
+        for (int i = upperBound(transaction.getDate()) - 1; i >= 0 && transactions.get(i).getDate() == transaction.getDate(); i--) {
+            if (transactions.get(i) == transaction) {
+                transactions.remove(i);
+                return true;
+            }
+        }
+
+        // Date was changed in-place; search all transactions
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            if (transactions.get(i) == transaction) {
+                transactions.remove(i);
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Returns the index of the first transaction after the specified date.
+     *
+     * @param date
+     *            The date.
+     *
+     * @return The index.
+     */
+    private int upperBound(long date) {
+        int low = 0;
+        int high = transactions.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (transactions.get(mid).getDate() <= date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns whether a position (open or closed) exists for the specified stock.
+     *
+     * @param stock
+     *            The stock.
+     *
+     * @return {@code true} is a position exists, otherwise {@code false}.
+     */
+    public synchronized boolean hasPosition(Stock stock) {
+        indexTransactions();
+        return transactionsBySymbol.containsKey(stock.getSymbol());
+    }
+
     /**
      * Returns whether to round monetary totals values (do not display cents).
      *
@@ -336,73 +722,402 @@ public class Configuration {
      * @param deductIncomeTax
      *            Whether to deduct income tax.
      */
-    public void setDeductIncomeTax(boolean deductIncomeTax) {
-        this.deductIncomeTax = deductIncomeTax;
+    public synchronized void setDeductIncomeTax(boolean deductIncomeTax) {
+        if (deductIncomeTax != this.deductIncomeTax) {
+            this.deductIncomeTax = deductIncomeTax;
+            // Received dividends are recorded after tax deduction
+            invalidatePortfolio();
+        }
     }
 
     /**
-     * Loads the configuration from database or file (fallback).
+     * Loads the configuration from the last snapshot file, replaying the change log (if any) on top of it.
      *
      * @return The configuration.
      */
     private static Configuration load() {
-        config = new Configuration();
-        
+        Configuration loaded = null;
+
         if (DATA_DIR.isDirectory() && PORTFOLIO_FILE.isFile()) {
-            Gson gson = new GsonBuilder().create();
-            try (Reader reader = new BufferedReader(new FileReader(PORTFOLIO_FILE))) {
-                Configuration loaded = gson.fromJson(reader, Configuration.class);
-                if (loaded != null) {
-                    config = loaded;
-                    LOGGER.debug("Configuration loaded from JSON file");
-                    return config;
-                }
-            } catch (IOException e) {
+            try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(PORTFOLIO_FILE), StandardCharsets.UTF_8))) {
+                loaded = read(new JsonReader(reader));
+                LOGGER.debug("Configuration loaded from JSON file");
+            } catch (IOException | IllegalStateException | JsonParseException e) {
                 LOGGER.debug("Could not read JSON data file: " + PORTFOLIO_FILE.getAbsolutePath(), e);
+                loaded = null;
+            }
+        }
+
+        if (loaded == null) {
+            loaded = new Configuration();
+        }
+
+        // Build the transaction indexes now rather than on the first request
+        loaded.indexTransactions();
+
+        if (CHANGE_LOG.exists()) {
+            // Skip records left behind by a crash right after writing a newer snapshot
+            List<ChangeSet> records = CHANGE_LOG.read(loaded.generation);
+            for (ChangeSet changes : records) {
+                loaded.apply(changes);
+                loaded.generation = changes.getGeneration();
+            }
+            LOGGER.debug("Replayed " + records.size() + " change log records");
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Reads a configuration snapshot in a single streaming pass. <br />
+     * <br />
+     *
+     * Only one stock or transaction is parsed at a time, instead of building the whole JSON tree in memory first.
+     *
+     * @param reader
+     *            The JSON reader.
+     *
+     * @return The configuration.
+     *
+     * @throws IOException
+     *             If the snapshot could not be read.
+     */
+    private static Configuration read(JsonReader reader) throws IOException {
+        TypeAdapter<Stock> stockAdapter = GSON.getAdapter(Stock.class);
+        TypeAdapter<Transaction> transactionAdapter = GSON.getAdapter(Transaction.class);
+        Configuration loaded = new Configuration();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("roundTotals")) {
+                loaded.roundTotals = reader.nextBoolean();
+            } else if (name.equals("showClosedPositions")) {
+                loaded.showClosedPositions = reader.nextBoolean();
+            } else if (name.equals("deductIncomeTax")) {
+                loaded.deductIncomeTax = reader.nextBoolean();
+            } else if (name.equals("generation")) {
+                loaded.generation = reader.nextLong();
+            } else if (name.equals("stocks")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    Stock stock = stockAdapter.read(reader);
+                    if (stock != null && stock.getSymbol() != null) {
+                        loaded.stocks.put(stock.getSymbol(), stock);
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("transactions")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Transaction transaction = transactionAdapter.read(reader);
+                    if (transaction != null) {
+                        loaded.transactions.add(transaction);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
             }
         }
+        reader.endObject();
+        return loaded;
+    }
 
-        LOGGER.debug("Created new/default configuration");
-        return config;
+    /**
+     * Applies a change log record.
+     *
+     * @param changes
+     *            The changes.
+     */
+    private synchronized void apply(ChangeSet changes) {
+        roundTotals = changes.isRoundTotals();
+        showClosedPositions = changes.isShowClosedPositions();
+        deductIncomeTax = changes.isDeductIncomeTax();
+        for (String symbol : changes.getDeletedStocks()) {
+            Stock stock = stocks.get(symbol);
+            if (stock != null) {
+                deleteStock(stock);
+            }
+        }
+        for (Stock stock : changes.getStocks()) {
+            stocks.put(stock.getSymbol(), stock);
+            deletedStocks.remove(stock.getSymbol());
+            changedStocks.add(stock.getSymbol());
+        }
+        for (Transaction key : changes.getDeletedTransactions()) {
+            // Only this transaction, not others on the same symbol and date
+            Transaction existing = getTransaction(key.getId());
+            if (existing != null) {
+                deleteTransaction(existing);
+            }
+        }
+        for (Transaction transaction : changes.getTransactions()) {
+            Transaction existing = getTransaction(transaction.getId());
+            if (existing != null) {
+                deleteTransaction(existing);
+            }
+            addTransaction(transaction);
+        }
+        invalidatePortfolio();
     }
 
+    /**
+     * Fills an empty configuration (no data file yet) with the stocks and transactions from the database. <br />
+     * <br />
+     *
+     * The transactions are expected in date order, so the per-symbol index is built in a single pass.
+     *
+     * @param stocks
+     *            The stocks.
+     * @param transactions
+     *            The transactions, in date order.
+     *
+     * @return {@code true} if the configuration was filled, or {@code false} if it already has stocks or transactions, or
+     *         there is nothing to import.
+     */
+    public synchronized boolean importFrom(Collection<Stock> stocks, Collection<Transaction> transactions) {
+        if (!this.stocks.isEmpty() || !this.transactions.isEmpty() || (stocks.isEmpty() && transactions.isEmpty())) {
+            return false;
+        }
+
+        for (Stock stock : stocks) {
+            this.stocks.put(stock.getSymbol(), stock);
+        }
+        this.transactions.addAll(transactions);
+        transactionsById = null;
+        indexTransactions();
+        invalidatePortfolio();
+
+        // Already in the database, so only the data file needs to be written
+        save();
+        return true;
+    }
+
+    /**
+     * Sets the database to save the changes to. <br />
+     * <br />
+     *
+     * The whole configuration is saved to the database on the next save, also if it is still being loaded.
+     *
+     * @param service
+     *            The database service.
+     */
     public static void setDatabaseService(org.ozsoft.portfoliomanager.service.DatabaseService service) {
         databaseService = service;
+        Configuration instance = config;
+        if (instance != null) {
+            instance.markAllChanged();
+        }
+    }
+
+    /**
+     * Marks all stocks and transactions as changed, to bring the database in sync with the configuration on the next save.
+     */
+    private synchronized void markAllChanged() {
+        changedStocks.addAll(stocks.keySet());
+        for (Transaction transaction : getTransactions()) {
+            changedTransactions.put(transaction.getId(), transaction);
+        }
+    }
+
+    /**
+     * Sets the window within which save requests are coalesced into a single write.
+     *
+     * @param windowMillis
+     *            The window in milliseconds (0 to write as soon as possible).
+     */
+    public static void setSaveWindow(long windowMillis) {
+        SAVE_QUEUE.setWindow(windowMillis);
+    }
+
+    /**
+     * Sets whether saves append the changes to the change log instead of writing a full snapshot. <br />
+     * <br />
+     *
+     * A full snapshot is still written when the change log grows too long, when a save has many changes, or when a save has no tracked
+     * changes (e.g. settings or in-place edits of stocks that were not marked as changed).
+     *
+     * @param enabled
+     *            Whether to use the change log.
+     */
+    public static void setChangeLogEnabled(boolean enabled) {
+        changeLogEnabled = enabled;
     }
 
     /**
-     * Saves the configuration to database (preferred) or file (fallback).
+     * Requests the configuration to be saved. <br />
+     * <br />
+     *
+     * Returns immediately; the configuration is written in the background, coalescing the requests made within the save window.
      */
     public static void save() {
+        SAVE_QUEUE.request();
+    }
+
+    /**
+     * Writes any pending save right away and waits until it has completed.
+     *
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The time unit of the timeout.
+     *
+     * @return {@code true} if saved, otherwise {@code false} (timeout).
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    public static boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        return SAVE_QUEUE.flush(timeout, unit);
+    }
+
+    /**
+     * Writes the configuration to file (as a snapshot or a change log record) and its changes to the database (if available).
+     */
+    private static void write() {
+        if (config == null) {
+            return;
+        }
+
         if (!DATA_DIR.exists()) {
             DATA_DIR.mkdirs();
         }
 
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        try (Writer writer = new BufferedWriter(new FileWriter(PORTFOLIO_FILE))) {
-            gson.toJson(config, writer);
-            LOGGER.debug("Configuration saved to JSON file");
-        } catch (IOException e) {
-            LOGGER.error("Could not write data file: " + PORTFOLIO_FILE.getAbsolutePath(), e);
+        // Serialize a consistent state, but write it to disk without blocking changes
+        ChangeSet changes;
+        String record = null;
+        synchronized (config) {
+            changes = config.takeChanges();
+            changes.setGeneration(++config.generation);
+            if (!snapshotRequired && changeLogEnabled && !changes.isEmpty() && changes.size() <= MAX_LOG_CHANGES
+                    && CHANGE_LOG.getRecordCount() < MAX_LOG_RECORDS) {
+                record = GSON.toJson(changes);
+            }
         }
 
-        if (databaseService != null) {
-            try {
-                if (config != null) {
-                    for (Stock stock : config.stocks.values()) {
-                        databaseService.saveStock(stock);
-                    }
-                    for (Transaction transaction : config.transactions) {
-                        databaseService.saveTransaction(transaction);
-                    }
-                    LOGGER.debug("Configuration saved to database");
+        // If nothing could be written, the changes are only in memory, and the next save must write all of them
+        snapshotRequired = !writeFiles(PORTFOLIO_FILE, CHANGE_LOG, record, new Supplier<String>() {
+            @Override
+            public String get() {
+                synchronized (config) {
+                    return GSON.toJson(config);
                 }
+            }
+        });
+
+        if (databaseService != null && !changes.isEmpty()) {
+            try {
+                databaseService.saveChanges(changes.getStocks(), changes.getDeletedStocks(), changes.getTransactions(),
+                        changes.getDeletedTransactions());
+                LOGGER.debug("Configuration changes saved to database");
             } catch (Exception e) {
                 LOGGER.error("Could not save configuration to database", e);
+                synchronized (config) {
+                    config.restoreChanges(changes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes changes to file, either by appending a change log record, or by writing a snapshot and clearing the change log. <br />
+     * <br />
+     *
+     * If the record could not be appended, a snapshot is written instead.
+     *
+     * @param snapshotFile
+     *            The snapshot file.
+     * @param changeLog
+     *            The change log.
+     * @param record
+     *            The change log record, or {@code null} to write a snapshot.
+     * @param snapshot
+     *            Serializes the snapshot.
+     *
+     * @return {@code true} if the changes were written, otherwise {@code false}.
+     */
+    static boolean writeFiles(File snapshotFile, ChangeLog changeLog, String record, Supplier<String> snapshot) {
+        if (record != null) {
+            try {
+                changeLog.append(record);
+                LOGGER.debug("Configuration changes appended to change log");
+                return true;
+            } catch (IOException e) {
+                LOGGER.error("Could not append to change log, writing a snapshot instead", e);
             }
         }
+
+        try {
+            AtomicFile.write(snapshotFile, snapshot.get().getBytes(StandardCharsets.UTF_8));
+            changeLog.clear();
+            LOGGER.debug("Configuration saved to JSON file");
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Could not write data file: " + snapshotFile.getAbsolutePath(), e);
+            return false;
+        }
     }
 
+    /**
+     * Returns the stocks and transactions changed since the last save, and starts tracking anew.
+     *
+     * @return The changes.
+     */
+    private ChangeSet takeChanges() {
+        ChangeSet changes = new ChangeSet(roundTotals, showClosedPositions, deductIncomeTax);
+        for (String symbol : changedStocks) {
+            Stock stock = stocks.get(symbol);
+            if (stock != null) {
+                changes.getStocks().add(stock);
+            }
+        }
+        changes.getDeletedStocks().addAll(deletedStocks);
+        changes.getTransactions().addAll(changedTransactions.values());
+        changes.getDeletedTransactions().addAll(deletedTransactions);
+        changedStocks.clear();
+        deletedStocks.clear();
+        changedTransactions.clear();
+        deletedTransactions.clear();
+        return changes;
+    }
+
+    /**
+     * Merges changes that could not be saved back into the pending changes, without overriding newer ones.
+     *
+     * @param changes
+     *            The changes.
+     */
+    private void restoreChanges(ChangeSet changes) {
+        for (String symbol : changes.getDeletedStocks()) {
+            if (!stocks.containsKey(symbol)) {
+                deletedStocks.add(symbol);
+            }
+        }
+        for (Stock stock : changes.getStocks()) {
+            if (stocks.get(stock.getSymbol()) == stock) {
+                changedStocks.add(stock.getSymbol());
+            }
+        }
+        // Deletes are applied before upserts, so older deletes must come first
+        List<Transaction> deletedKeys = new ArrayList<Transaction>(changes.getDeletedTransactions());
+        deletedKeys.addAll(deletedTransactions);
+        deletedTransactions = deletedKeys;
+        for (Transaction transaction : changes.getTransactions()) {
+            if (transactionsById.get(transaction.getId()) == transaction) {
+                changedTransactions.put(transaction.getId(), transaction);
+            }
+        }
+    }
+
+    /**
+     * Creates a daily backup of the last snapshot. <br />
+     * <br />
+     *
+     * Snapshots are always replaced by a rename, never modified in place, so the backup is a hard link where supported instead of a copy.
+     */
     private static void createDailyBackup() {
         if (PORTFOLIO_FILE.exists()) {
             String timestamp = DATE_FORMAT.format(new Date());
@@ -410,7 +1125,11 @@ public class Configuration {
             File backupFile = new File(DATA_DIR, backupFileName);
             if (!backupFile.exists()) {
                 try {
-                    Files.copy(PORTFOLIO_FILE.toPath(), backupFile.toPath());
+                    try {
+                        Files.createLink(backupFile.toPath(), PORTFOLIO_FILE.toPath());
+                    } catch (UnsupportedOperationException | IOException e) {
+                        Files.copy(PORTFOLIO_FILE.toPath(), backupFile.toPath());
+                    }
                     LOGGER.debug("Daily backup created");
                     cleanBackups();
                 } catch (IOException e) {
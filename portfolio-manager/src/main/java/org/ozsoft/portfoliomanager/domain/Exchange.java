@@ -18,19 +18,164 @@
 
 package org.ozsoft.portfoliomanager.domain;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Set;
+
 /**
- * Stock exchange.
+ * Stock exchange, with its regular trading hours.
  * 
  * @author Oscar Stigter
  */
 public enum Exchange {
 
     /** New York Stock Exchange (NYSE) in New York. */
-    NYSE,
+    NYSE("America/New_York", "09:30", "16:00"),
 
     /** NASDAQ Stock Exchange in New York. */
-    NASDAQ,
+    NASDAQ("America/New_York", "09:30", "16:00"),
+
+    /** National Stock Exchange of India (NSE) in Mumbai. */
+    NSE("Asia/Kolkata", "09:15", "15:30"),
+
+    /** Bombay Stock Exchange (BSE) in Mumbai. */
+    BSE("Asia/Kolkata", "09:15", "15:30"),
 
     /** Unknown. */
-    UNKNOWN,
+    UNKNOWN(null, null, null),
+
+    ;
+
+    private final ZoneId timeZone;
+
+    private final LocalTime openTime;
+
+    private final LocalTime closeTime;
+
+    /**
+     * Constructor.
+     * 
+     * @param timeZone
+     *            The time zone ID, or {@code null} if unknown.
+     * @param openTime
+     *            The opening time (local time), or {@code null} if unknown.
+     * @param closeTime
+     *            The closing time (local time), or {@code null} if unknown.
+     */
+    private Exchange(String timeZone, String openTime, String closeTime) {
+        this.timeZone = (timeZone != null) ? ZoneId.of(timeZone) : null;
+        this.openTime = (openTime != null) ? LocalTime.parse(openTime) : null;
+        this.closeTime = (closeTime != null) ? LocalTime.parse(closeTime) : null;
+    }
+
+    /**
+     * Returns the exchange matching a name or acronym (e.g. "NSE" or marketstack's "XNSE").
+     * 
+     * @param name
+     *            The name or acronym.
+     * 
+     * @return The exchange, or {@link #UNKNOWN} if not recognized.
+     */
+    public static Exchange fromName(String name) {
+        if (name != null) {
+            String key = name.trim().toUpperCase();
+            for (Exchange exchange : values()) {
+                if (exchange.name().equals(key) || ("X" + exchange.name()).equals(key)) {
+                    return exchange;
+                }
+            }
+            if (key.equals("XNYS")) {
+                return NYSE;
+            } else if (key.equals("XNAS")) {
+                return NASDAQ;
+            } else if (key.equals("XBOM")) {
+                return BSE;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns whether the trading hours of this exchange are known.
+     * 
+     * @return {@code true} if the trading hours are known, otherwise {@code false}.
+     */
+    public boolean hasTradingHours() {
+        return timeZone != null;
+    }
+
+    /**
+     * Returns the time zone of this exchange.
+     * 
+     * @return The time zone, or {@code null} if unknown.
+     */
+    public ZoneId getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * Returns whether a (local) date is a trading day, i.e. neither a weekend day nor a holiday.
+     * 
+     * @param date
+     *            The date (in the exchange's time zone).
+     * @param holidays
+     *            The exchange's holidays.
+     * 
+     * @return {@code true} if the date is a trading day, otherwise {@code false}.
+     */
+    public boolean isTradingDay(LocalDate date, Set<LocalDate> holidays) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY && !holidays.contains(date);
+    }
+
+    /**
+     * Returns whether this exchange is open at a specific moment. Exchanges with unknown trading hours are considered always open.
+     * 
+     * @param time
+     *            The moment.
+     * @param holidays
+     *            The exchange's holidays.
+     * 
+     * @return {@code true} if the exchange is open, otherwise {@code false}.
+     */
+    public boolean isOpen(ZonedDateTime time, Set<LocalDate> holidays) {
+        if (!hasTradingHours()) {
+            return true;
+        }
+        ZonedDateTime localTime = time.withZoneSameInstant(timeZone);
+        if (!isTradingDay(localTime.toLocalDate(), holidays)) {
+            return false;
+        }
+        LocalTime timeOfDay = localTime.toLocalTime();
+        return !timeOfDay.isBefore(openTime) && timeOfDay.isBefore(closeTime);
+    }
+
+    /**
+     * Returns the most recent closing moment of this exchange at or before a specific moment.
+     * 
+     * @param time
+     *            The moment.
+     * @param holidays
+     *            The exchange's holidays.
+     * 
+     * @return The last close, or {@code null} if the trading hours are unknown.
+     */
+    public ZonedDateTime getLastClose(ZonedDateTime time, Set<LocalDate> holidays) {
+        if (!hasTradingHours()) {
+            return null;
+        }
+        ZonedDateTime localTime = time.withZoneSameInstant(timeZone);
+        LocalDate date = localTime.toLocalDate();
+        if (localTime.toLocalTime().isBefore(closeTime)) {
+            date = date.minusDays(1);
+        }
+        // Holidays rarely exceed a couple of weeks; give up after a generous bound
+        for (int i = 0; i < 30 && !isTradingDay(date, holidays); i++) {
+            date = date.minusDays(1);
+        }
+        return ZonedDateTime.of(date, closeTime, timeZone);
+    }
 }
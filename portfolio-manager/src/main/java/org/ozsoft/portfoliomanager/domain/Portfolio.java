@@ -19,17 +19,24 @@
 package org.ozsoft.portfoliomanager.domain;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.function.Function;
 
 import org.ozsoft.portfoliomanager.util.MathUtils;
 
 /**
- * Stock portfolio, with transactions and (open/closed) positions.
+ * Stock portfolio, with transactions and (open/closed) positions. <br />
+ * <br />
+ *
+ * Once attached to a stock lookup by {@link #update(Configuration)} or {@link #update(Function)}, the portfolio is maintained incrementally: adding or removing a
+ * transaction only updates the affected position and adjusts the cost-side totals by the position's difference. Market-value totals
+ * (current value, annual income and everything derived from them) depend on live stock prices and are summed over the positions when read.
  *
  * @author Oscar Stigter
  */
@@ -37,28 +44,32 @@ public class Portfolio {
 
     private final List<Transaction> transactions;
 
-    private final Map<Stock, Position> positions;
+    /** Transactions per symbol, sorted by date. */
+    private final Map<String, List<Transaction>> transactionsBySymbol;
 
-    private BigDecimal currentCost;
+    private final Map<String, Position> positions;
 
-    private BigDecimal currentValue;
+    /** Resolves symbols to stocks; {@code null} while not attached. */
+    private Function<String, Stock> stockLookup;
 
-    private BigDecimal totalCost;
+    private BigDecimal currentCost;
 
-    private BigDecimal annualIncome;
+    private BigDecimal totalCost;
 
     private BigDecimal totalIncome;
 
     private BigDecimal realizedResult;
 
-    private BigDecimal totalReturn;
+    /** Realized result plus total income (the part of the total return that does not depend on current prices). */
+    private BigDecimal realizedReturn;
 
     /**
      * Constructor.
      */
     public Portfolio() {
         transactions = new ArrayList<Transaction>();
-        positions = new TreeMap<Stock, Position>();
+        transactionsBySymbol = new HashMap<String, List<Transaction>>();
+        positions = new HashMap<String, Position>();
         clear();
     }
 
@@ -67,27 +78,134 @@ public class Portfolio {
      *
      * @return The transactions.
      */
-    public List<Transaction> getTransactions() {
-        return Collections.unmodifiableList(transactions);
+    public synchronized List<Transaction> getTransactions() {
+        return Collections.unmodifiableList(new ArrayList<Transaction>(transactions));
     }
 
     /**
-     * Adds a transaction.
+     * Adds a transaction. <br />
+     * <br />
+     *
+     * If the portfolio is attached, the affected position is updated right away.
      *
      * @param transaction
      *            The transaction.
+     *
+     * @throws IllegalArgumentException
+     *             If the transaction is not valid for the position (e.g. selling more shares than owned), in which case it is not added.
      */
-    public void addTransaction(Transaction transaction) {
+    public synchronized void addTransaction(Transaction transaction) {
         transactions.add(transaction);
+        String symbol = transaction.getSymbol();
+        List<Transaction> symbolTransactions = transactionsBySymbol.get(symbol);
+        if (symbolTransactions == null) {
+            symbolTransactions = new ArrayList<Transaction>();
+            transactionsBySymbol.put(symbol, symbolTransactions);
+        }
+        boolean inOrder = symbolTransactions.isEmpty() || transaction.getDate() >= symbolTransactions.get(symbolTransactions.size() - 1).getDate();
+        insertSorted(symbolTransactions, transaction);
+
+        if (stockLookup != null) {
+            try {
+                Position position = positions.get(symbol);
+                if (inOrder && position != null) {
+                    // Appended at the end: apply to the existing position only
+                    subtractTotals(position);
+                    try {
+                        position.addTransaction(transaction);
+                    } finally {
+                        addTotals(position);
+                    }
+                } else {
+                    updatePosition(symbol);
+                }
+            } catch (IllegalArgumentException e) {
+                removeTransaction(transaction);
+                throw e;
+            }
+        }
     }
 
     /**
-     * Returns all positions of currently or previously owned stocks.
+     * Removes a transaction, updating the affected position if the portfolio is attached.
+     *
+     * @param transaction
+     *            The transaction.
+     *
+     * @throws IllegalArgumentException
+     *             If the position is not valid without the transaction (e.g. a later sale of the shares it bought), in which case it is
+     *             not removed.
+     */
+    public synchronized void removeTransaction(Transaction transaction) {
+        int index = indexOfInstance(transactions, transaction);
+        if (index < 0) {
+            return;
+        }
+        String symbol = transaction.getSymbol();
+        List<Transaction> symbolTransactions = transactionsBySymbol.get(symbol);
+        int symbolIndex = (symbolTransactions != null) ? indexOfInstance(symbolTransactions, transaction) : -1;
+        transactions.remove(index);
+        if (symbolIndex >= 0) {
+            symbolTransactions.remove(symbolIndex);
+            if (symbolTransactions.isEmpty()) {
+                transactionsBySymbol.remove(symbol);
+            }
+        }
+
+        if (stockLookup != null) {
+            try {
+                updatePosition(symbol);
+            } catch (IllegalArgumentException e) {
+                // The position was left unchanged; put the transaction back where it was
+                transactions.add(index, transaction);
+                if (symbolIndex >= 0) {
+                    symbolTransactions.add(symbolIndex, transaction);
+                    transactionsBySymbol.put(symbol, symbolTransactions);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Recalculates the position in a stock from its transactions, e.g. after the stock was added or deleted.
+     *
+     * @param symbol
+     *            The stock's symbol.
+     *
+     * @throws IllegalArgumentException
+     *             If the transactions are not valid for the position, in which case the position is left unchanged.
+     */
+    public synchronized void updatePosition(String symbol) {
+        List<Transaction> symbolTransactions = transactionsBySymbol.get(symbol);
+        Stock stock = (stockLookup != null) ? stockLookup.apply(symbol) : null;
+        Position position = null;
+        if (stock != null && symbolTransactions != null && !symbolTransactions.isEmpty()) {
+            position = new Position(stock);
+            for (Transaction transaction : symbolTransactions) {
+                position.addTransaction(transaction);
+            }
+        }
+
+        Position oldPosition = positions.remove(symbol);
+        if (oldPosition != null) {
+            subtractTotals(oldPosition);
+        }
+        if (position != null) {
+            positions.put(symbol, position);
+            addTotals(position);
+        }
+    }
+
+    /**
+     * Returns all positions of currently or previously owned stocks, sorted by stock.
      *
      * @return The positions.
      */
-    public Collection<Position> getPositions() {
-        return positions.values();
+    public synchronized Collection<Position> getPositions() {
+        List<Position> sortedPositions = new ArrayList<Position>(positions.values());
+        Collections.sort(sortedPositions);
+        return sortedPositions;
     }
 
     /**
@@ -98,8 +216,20 @@ public class Portfolio {
      *
      * @return The position if any, otherwise {@code null}.
      */
-    public Position getPosition(Stock stock) {
-        return positions.get(stock);
+    public synchronized Position getPosition(Stock stock) {
+        return positions.get(stock.getSymbol());
+    }
+
+    /**
+     * Returns the position in a specific stock.
+     *
+     * @param symbol
+     *            The stock's symbol.
+     *
+     * @return The position if any, otherwise {@code null}.
+     */
+    public synchronized Position getPosition(String symbol) {
+        return positions.get(symbol);
     }
 
     /**
@@ -107,7 +237,7 @@ public class Portfolio {
      *
      * @return The current costbase.
      */
-    public BigDecimal getCurrentCost() {
+    public synchronized BigDecimal getCurrentCost() {
         return currentCost;
     }
 
@@ -116,7 +246,11 @@ public class Portfolio {
      *
      * @return The current market value.
      */
-    public BigDecimal getCurrentValue() {
+    public synchronized BigDecimal getCurrentValue() {
+        BigDecimal currentValue = BigDecimal.ZERO;
+        for (Position position : positions.values()) {
+            currentValue = currentValue.add(position.getCurrentValue());
+        }
         return currentValue;
     }
 
@@ -125,8 +259,8 @@ public class Portfolio {
      *
      * @return
      */
-    public BigDecimal getCurrentResult() {
-        return currentValue.subtract(currentCost);
+    public synchronized BigDecimal getCurrentResult() {
+        return getCurrentValue().subtract(currentCost);
     }
 
     /**
@@ -134,7 +268,7 @@ public class Portfolio {
      *
      * @return
      */
-    public BigDecimal getCurrentResultPercentage() {
+    public synchronized BigDecimal getCurrentResultPercentage() {
         return MathUtils.perc(getCurrentResult(), currentCost);
     }
 
@@ -143,7 +277,7 @@ public class Portfolio {
      *
      * @return The total costbase.
      */
-    public BigDecimal getTotalCost() {
+    public synchronized BigDecimal getTotalCost() {
         return totalCost;
     }
 
@@ -152,7 +286,11 @@ public class Portfolio {
      *
      * @return The annual income.
      */
-    public BigDecimal getAnnualIncome() {
+    public synchronized BigDecimal getAnnualIncome() {
+        BigDecimal annualIncome = BigDecimal.ZERO;
+        for (Position position : positions.values()) {
+            annualIncome = annualIncome.add(position.getAnnualIncome());
+        }
         return annualIncome;
     }
 
@@ -161,7 +299,7 @@ public class Portfolio {
      *
      * @return The total received income.
      */
-    public BigDecimal getTotalIncome() {
+    public synchronized BigDecimal getTotalIncome() {
         return totalIncome;
     }
 
@@ -170,8 +308,8 @@ public class Portfolio {
      *
      * @return
      */
-    public BigDecimal getYieldOnCost() {
-        return MathUtils.perc(annualIncome, currentCost);
+    public synchronized BigDecimal getYieldOnCost() {
+        return MathUtils.perc(getAnnualIncome(), currentCost);
     }
 
     /**
@@ -179,7 +317,7 @@ public class Portfolio {
      *
      * @return The realized result.
      */
-    public BigDecimal getRealizedResult() {
+    public synchronized BigDecimal getRealizedResult() {
         return realizedResult;
     }
 
@@ -191,8 +329,8 @@ public class Portfolio {
      *
      * @return The total return.
      */
-    public BigDecimal getTotalReturn() {
-        return totalReturn;
+    public synchronized BigDecimal getTotalReturn() {
+        return getCurrentResult().add(realizedReturn);
     }
 
     /**
@@ -200,57 +338,112 @@ public class Portfolio {
      *
      * @return The total return percentage.
      */
-    public BigDecimal getTotalReturnPercentage() {
+    public synchronized BigDecimal getTotalReturnPercentage() {
         // FIXME: Total return based on average costbase instead of total costbase.
         return MathUtils.perc(getTotalReturn(), totalCost);
     }
 
     /**
-     * Updates the portfolio based on the specified configuration (stocks and positions).
+     * Rebuilds the portfolio based on the specified configuration (stocks and positions) and attaches it to the configuration, so that
+     * further changes are applied incrementally.
      *
      * @param config
      *            The configuration.
      */
-    public void update(Configuration config) {
-        clear();
-
-        // Update positions based on transactions.
-        for (Transaction transaction : transactions) {
-            String symbol = transaction.getSymbol();
-            Stock stock = config.getStock(symbol);
-            if (stock != null) {
-                Position position = positions.get(stock);
-                if (position == null) {
-                    position = new Position(stock);
-                    positions.put(stock, position);
-                }
-                position.addTransaction(transaction);
-            }
-        }
+    public synchronized void update(Configuration config) {
+        update(config::getStock);
+    }
 
-        // Update totals based on positions.
-        for (Position pos : positions.values()) {
-            currentCost = currentCost.add(pos.getCurrentCost());
-            currentValue = currentValue.add(pos.getCurrentValue());
-            totalCost = totalCost.add(pos.getTotalCost());
-            annualIncome = annualIncome.add(pos.getAnnualIncome());
-            totalIncome = totalIncome.add(pos.getTotalIncome());
-            realizedResult = realizedResult.add(pos.getRealizedResult());
-            totalReturn = totalReturn.add(pos.getTotalReturn());
+    /**
+     * Rebuilds the portfolio using the specified stock lookup and attaches it to that lookup, so that further changes are applied
+     * incrementally. <br />
+     * <br />
+     *
+     * Transactions for symbols that the lookup does not resolve are kept, but have no position.
+     *
+     * @param stockLookup
+     *            Resolves a symbol to its stock, or {@code null} if unknown.
+     */
+    public synchronized void update(Function<String, Stock> stockLookup) {
+        this.stockLookup = stockLookup;
+        clear();
+        for (String symbol : transactionsBySymbol.keySet()) {
+            updatePosition(symbol);
         }
     }
 
     /**
-     * Clears the portfolio.
+     * Clears the positions and totals.
      */
     private void clear() {
         positions.clear();
         currentCost = BigDecimal.ZERO;
-        currentValue = BigDecimal.ZERO;
         totalCost = BigDecimal.ZERO;
-        annualIncome = BigDecimal.ZERO;
         totalIncome = BigDecimal.ZERO;
         realizedResult = BigDecimal.ZERO;
-        totalReturn = BigDecimal.ZERO;
+        realizedReturn = BigDecimal.ZERO;
+    }
+
+    /**
+     * Adds the cost-side values of a position to the totals.
+     *
+     * @param position
+     *            The position.
+     */
+    private void addTotals(Position position) {
+        currentCost = currentCost.add(position.getCurrentCost());
+        totalCost = totalCost.add(position.getTotalCost());
+        totalIncome = totalIncome.add(position.getTotalIncome());
+        realizedResult = realizedResult.add(position.getRealizedResult());
+        realizedReturn = realizedReturn.add(position.getRealizedReturn(), MathContext.UNLIMITED);
+    }
+
+    /**
+     * Subtracts the cost-side values of a position from the totals.
+     *
+     * @param position
+     *            The position.
+     */
+    private void subtractTotals(Position position) {
+        currentCost = currentCost.subtract(position.getCurrentCost());
+        totalCost = totalCost.subtract(position.getTotalCost());
+        totalIncome = totalIncome.subtract(position.getTotalIncome());
+        realizedResult = realizedResult.subtract(position.getRealizedResult());
+        realizedReturn = realizedReturn.subtract(position.getRealizedReturn(), MathContext.UNLIMITED);
+    }
+
+    /**
+     * Inserts a transaction into a list sorted by date, after any transactions on the same date.
+     *
+     * @param list
+     *            The list.
+     * @param transaction
+     *            The transaction.
+     */
+    private static void insertSorted(List<Transaction> list, Transaction transaction) {
+        int index = list.size();
+        while (index > 0 && list.get(index - 1).getDate() > transaction.getDate()) {
+            index--;
+        }
+        list.add(index, transaction);
+    }
+
+    /**
+     * Returns the index of a specific transaction instance in a list (transactions are equal by symbol and date only).
+     *
+     * @param list
+     *            The list.
+     * @param transaction
+     *            The transaction.
+     *
+     * @return The index, or -1 if not found.
+     */
+    private static int indexOfInstance(List<Transaction> list, Transaction transaction) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (list.get(i) == transaction) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
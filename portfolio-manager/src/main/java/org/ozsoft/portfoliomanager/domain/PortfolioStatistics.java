@@ -0,0 +1,270 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.ozsoft.portfoliomanager.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ozsoft.portfoliomanager.domain.ValuationSeries.Granularity;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries.Period;
+import org.ozsoft.portfoliomanager.util.MathUtils;
+
+/**
+ * Portfolio statistics over time: average cost basis, income and realized result per month, quarter and year, and overall. <br />
+ * <br />
+ *
+ * Computed by sweeping the transactions in date order. The cost basis only changes on days with transactions, so each run of days
+ * between two transactions is added to the periods it overlaps as cost basis times number of days, without visiting the days
+ * themselves. The periods are those of the {@link ValuationSeries}, without market values.
+ */
+public class PortfolioStatistics {
+
+    private static final double DAYS_PER_YEAR = 365.0;
+
+    private final List<Period> months;
+
+    private final List<Period> quarters;
+
+    private final List<Period> years;
+
+    private final Period overall;
+
+    private PortfolioStatistics(List<Period> months, List<Period> quarters, List<Period> years, Period overall) {
+        this.months = months;
+        this.quarters = quarters;
+        this.years = years;
+        this.overall = overall;
+    }
+
+    /**
+     * Computes the statistics of a list of transactions.
+     *
+     * @param transactions
+     *            The transactions.
+     * @param lastDate
+     *            The last day to include (normally today).
+     * @param zone
+     *            The time zone of the transaction dates.
+     *
+     * @return The statistics.
+     */
+    public static PortfolioStatistics compute(List<Transaction> transactions, LocalDate lastDate, ZoneId zone) {
+        List<Transaction> sorted = new ArrayList<Transaction>(transactions);
+        Collections.sort(sorted);
+        if (sorted.isEmpty()) {
+            List<Period> empty = Collections.emptyList();
+            return new PortfolioStatistics(empty, empty, empty, null);
+        }
+
+        LocalDate firstDate = toDate(sorted.get(0), zone);
+        LocalDate endDate = toDate(sorted.get(sorted.size() - 1), zone);
+        if (lastDate.isAfter(endDate)) {
+            endDate = lastDate;
+        }
+        Sweep monthly = new Sweep(Granularity.MONTH, firstDate);
+        Sweep quarterly = new Sweep(Granularity.QUARTER, firstDate);
+        Sweep annual = new Sweep(Granularity.YEAR, firstDate);
+        Sweep total = new Sweep(null, firstDate);
+        Sweep[] sweeps = { monthly, quarterly, annual, total };
+
+        Map<String, Position> positions = new HashMap<String, Position>();
+        BigDecimal cost = BigDecimal.ZERO;
+        for (Transaction tx : sorted) {
+            LocalDate date = toDate(tx, zone);
+            for (Sweep sweep : sweeps) {
+                sweep.advance(date, cost);
+            }
+            Position position = positions.get(tx.getSymbol());
+            if (position == null) {
+                position = new Position(new Stock(tx.getSymbol(), tx.getSymbol()));
+                positions.put(tx.getSymbol(), position);
+            }
+            BigDecimal previousCost = position.getCurrentCost();
+            BigDecimal previousIncome = position.getTotalIncome();
+            BigDecimal previousRealized = position.getRealizedResult();
+            try {
+                position.addTransaction(tx);
+            } catch (IllegalArgumentException e) {
+                // Invalid transaction (e.g. selling more shares than owned); it has no effect on the portfolio either
+                continue;
+            }
+            cost = cost.add(position.getCurrentCost().subtract(previousCost));
+            BigDecimal income = position.getTotalIncome().subtract(previousIncome);
+            BigDecimal realized = position.getRealizedResult().subtract(previousRealized);
+            for (Sweep sweep : sweeps) {
+                sweep.add(income, realized);
+            }
+        }
+        for (Sweep sweep : sweeps) {
+            sweep.finish(endDate, cost);
+        }
+        return new PortfolioStatistics(monthly.periods, quarterly.periods, annual.periods, total.periods.get(0));
+    }
+
+    /**
+     * Returns the statistics per month.
+     *
+     * @return The months, in chronological order.
+     */
+    public List<Period> getMonths() {
+        return months;
+    }
+
+    /**
+     * Returns the statistics per quarter.
+     *
+     * @return The quarters, in chronological order.
+     */
+    public List<Period> getQuarters() {
+        return quarters;
+    }
+
+    /**
+     * Returns the statistics per year.
+     *
+     * @return The years, in chronological order.
+     */
+    public List<Period> getYears() {
+        return years;
+    }
+
+    /**
+     * Returns the statistics from the first transaction until the last day, or {@code null} if there are no transactions.
+     *
+     * @return The overall statistics.
+     */
+    public Period getOverall() {
+        return overall;
+    }
+
+    /**
+     * Returns the compound annual growth rate (CAGR) of a total return relative to the overall average cost basis. Periods shorter than
+     * a year count as one year, to not extrapolate short-term results. A loss of the whole average cost basis or more is -100%.
+     *
+     * @param totalReturn
+     *            The total return.
+     *
+     * @return The CAGR as a percentage.
+     */
+    public double getAnnualizedReturn(BigDecimal totalReturn) {
+        if (overall == null) {
+            return 0.0;
+        }
+        double years = Math.max(1.0, overall.getDays() / DAYS_PER_YEAR);
+        double growth = MathUtils.divide(totalReturn, overall.getAverageCost()).add(BigDecimal.ONE).doubleValue();
+        if (growth <= 0.0) {
+            // No real root of a negative growth factor
+            return -100.0;
+        }
+        return (Math.pow(growth, 1.0 / years) - 1.0) * 100.0;
+    }
+
+    private static LocalDate toDate(Transaction tx, ZoneId zone) {
+        return Instant.ofEpochMilli(tx.getDate()).atZone(zone).toLocalDate();
+    }
+
+    /**
+     * Accumulates the periods of one granularity during the sweep.
+     */
+    private static class Sweep {
+
+        private final Granularity granularity;
+
+        private final List<Period> periods = new ArrayList<Period>();
+
+        private LocalDate startDate;
+
+        private LocalDate endDate;
+
+        /** Sum of the daily cost basis of the current period. */
+        private BigDecimal costDays = BigDecimal.ZERO;
+
+        private BigDecimal cost = BigDecimal.ZERO;
+
+        private BigDecimal income = BigDecimal.ZERO;
+
+        private BigDecimal realized = BigDecimal.ZERO;
+
+        /** The first day not yet added to a period. */
+        private LocalDate day;
+
+        private Sweep(Granularity granularity, LocalDate firstDate) {
+            this.granularity = granularity;
+            this.day = firstDate;
+            startPeriod(firstDate);
+        }
+
+        /**
+         * Adds the days before a date with a constant cost basis, closing the periods that end before it.
+         */
+        private void advance(LocalDate date, BigDecimal cost) {
+            while (day.isBefore(date)) {
+                LocalDate next = endDate.isBefore(date) ? endDate.plusDays(1) : date;
+                costDays = costDays.add(cost.multiply(BigDecimal.valueOf(next.toEpochDay() - day.toEpochDay())));
+                this.cost = cost;
+                day = next;
+                if (day.isAfter(endDate)) {
+                    closePeriod();
+                    startPeriod(day);
+                }
+            }
+        }
+
+        /**
+         * Adds the income and realized result of a transaction on the current day.
+         */
+        private void add(BigDecimal income, BigDecimal realized) {
+            this.income = this.income.add(income);
+            this.realized = this.realized.add(realized);
+        }
+
+        /**
+         * Adds the days up to and including the last day, and closes the last (partial) period.
+         */
+        private void finish(LocalDate lastDate, BigDecimal cost) {
+            LocalDate end = lastDate.plusDays(1);
+            advance(end, cost);
+            if (startDate.isBefore(end)) {
+                endDate = lastDate;
+                closePeriod();
+            }
+        }
+
+        private void startPeriod(LocalDate date) {
+            startDate = date;
+            endDate = (granularity != null) ? granularity.getPeriodEnd(date) : LocalDate.MAX;
+            costDays = BigDecimal.ZERO;
+            income = BigDecimal.ZERO;
+            realized = BigDecimal.ZERO;
+        }
+
+        private void closePeriod() {
+            long days = endDate.toEpochDay() - startDate.toEpochDay() + 1;
+            BigDecimal averageCost = MathUtils.divide(costDays, BigDecimal.valueOf(days));
+            periods.add(new Period(startDate, endDate, averageCost, cost, null, income, realized));
+        }
+    }
+}
@@ -173,6 +173,15 @@ public class Position implements Comparable<Position> {
         return getCurrentResult().add(totalReturn);
     }
 
+    /**
+     * Returns the part of the total return that does not depend on the current price (realized result plus total income).
+     *
+     * @return The realized return.
+     */
+    BigDecimal getRealizedReturn() {
+        return totalReturn;
+    }
+
     public BigDecimal getTotalReturnPercentage() {
         if (totalCost.signum() > 0) {
             // FIXME: Total return based on average costbase instead of total costbase.
@@ -0,0 +1,528 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.ozsoft.portfoliomanager.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Daily valuation of a portfolio: cost basis, market value, income and realized result at the end of each day. <br />
+ * <br />
+ *
+ * The days are contiguous from the first day, and each figure is kept in cents in its own primitive array indexed by day,
+ * so range queries are plain array scans without rounding errors. Income and realized result are cumulative, so the
+ * amount of a period is the difference between its last day and the day before it. The market value is unknown
+ * ({@code null}) for days that were rebuilt from transactions rather than recorded on the day itself.
+ */
+public class ValuationSeries {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private static final int COLUMNS = 4;
+
+    /** Leading byte of serialized series, with the figures in cents. */
+    private static final byte FORMAT_CENTS = 1;
+
+    /** Market value of days that were not recorded. */
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private LocalDate firstDate;
+
+    private int size;
+
+    private long[] cost = new long[0];
+
+    private long[] value = new long[0];
+
+    private long[] income = new long[0];
+
+    private long[] realized = new long[0];
+
+    /**
+     * Period granularity for range queries.
+     */
+    public enum Granularity {
+
+        DAY,
+
+        MONTH,
+
+        QUARTER,
+
+        YEAR,
+
+        ;
+
+        /**
+         * Returns the last day of the period a day belongs to.
+         *
+         * @param date
+         *            The day.
+         *
+         * @return The last day of its period.
+         */
+        public LocalDate getPeriodEnd(LocalDate date) {
+            switch (this) {
+                case MONTH:
+                    return date.withDayOfMonth(date.lengthOfMonth());
+                case QUARTER:
+                    int lastMonth = ((date.getMonthValue() - 1) / 3 + 1) * 3;
+                    LocalDate month = date.withMonth(lastMonth);
+                    return month.withDayOfMonth(month.lengthOfMonth());
+                case YEAR:
+                    return date.withDayOfYear(date.lengthOfYear());
+                default:
+                    return date;
+            }
+        }
+    }
+
+    /**
+     * Returns the first day, or {@code null} if the series is empty.
+     *
+     * @return The first day.
+     */
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    /**
+     * Returns the last day, or {@code null} if the series is empty.
+     *
+     * @return The last day.
+     */
+    public LocalDate getLastDate() {
+        return (size > 0) ? firstDate.plusDays(size - 1) : null;
+    }
+
+    /**
+     * Returns the number of days.
+     *
+     * @return The number of days.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the cost basis at the end of a day.
+     *
+     * @param date
+     *            The day.
+     *
+     * @return The cost basis.
+     */
+    public BigDecimal getCost(LocalDate date) {
+        return fromCents(cost[indexOf(date)]);
+    }
+
+    /**
+     * Returns the market value at the end of a day, or {@code null} if unknown.
+     *
+     * @param date
+     *            The day.
+     *
+     * @return The market value.
+     */
+    public BigDecimal getValue(LocalDate date) {
+        return fromCents(value[indexOf(date)]);
+    }
+
+    /**
+     * Appends (or, for the last day, replaces) the valuation of a day. <br />
+     * <br />
+     *
+     * Missing days in between are filled with the previous day's cost basis, income and realized result, and an unknown
+     * market value.
+     *
+     * @param date
+     *            The day.
+     * @param cost
+     *            The cost basis.
+     * @param value
+     *            The market value, or {@code null} if unknown.
+     * @param totalIncome
+     *            The income received so far.
+     * @param totalRealized
+     *            The realized result so far.
+     *
+     * @throws IllegalArgumentException
+     *             If the day is before the last day.
+     */
+    public void append(LocalDate date, BigDecimal cost, BigDecimal value, BigDecimal totalIncome, BigDecimal totalRealized) {
+        append(date, toCents(cost), (value != null) ? toCents(value) : UNKNOWN, toCents(totalIncome), toCents(totalRealized));
+    }
+
+    private void append(LocalDate date, long cost, long value, long totalIncome, long totalRealized) {
+        if (size == 0) {
+            firstDate = date;
+        }
+        int index = (int) (date.toEpochDay() - firstDate.toEpochDay());
+        if (index < size - 1) {
+            throw new IllegalArgumentException("Cannot append " + date + " before last day " + getLastDate());
+        }
+        if (index >= size && size > 0) {
+            int last = size - 1;
+            fill(index, this.cost[last], UNKNOWN, this.income[last], this.realized[last]);
+        }
+        fill(index + 1, cost, value, totalIncome, totalRealized);
+        this.cost[index] = cost;
+        this.value[index] = value;
+        this.income[index] = totalIncome;
+        this.realized[index] = totalRealized;
+    }
+
+    /**
+     * Copies the known market values of another series for the days both series have.
+     *
+     * @param other
+     *            The other series.
+     */
+    public void copyValues(ValuationSeries other) {
+        if (size == 0 || other.size == 0) {
+            return;
+        }
+        long offset = other.firstDate.toEpochDay() - firstDate.toEpochDay();
+        for (int i = 0; i < other.size; i++) {
+            long index = offset + i;
+            if (index >= 0 && index < size && other.value[i] != UNKNOWN) {
+                value[(int) index] = other.value[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the valuation per period within a date range.
+     *
+     * @param from
+     *            The first day (inclusive), or {@code null} for the first day of the series.
+     * @param to
+     *            The last day (inclusive), or {@code null} for the last day of the series.
+     * @param granularity
+     *            The period granularity.
+     *
+     * @return The periods, in chronological order.
+     */
+    public List<Period> query(LocalDate from, LocalDate to, Granularity granularity) {
+        List<Period> periods = new ArrayList<Period>();
+        if (size == 0) {
+            return periods;
+        }
+        int start = Math.max(0, (from != null) ? offsetOf(from) : 0);
+        int end = Math.min(size - 1, (to != null) ? offsetOf(to) : size - 1);
+        while (start <= end) {
+            LocalDate periodEnd = granularity.getPeriodEnd(firstDate.plusDays(start));
+            int last = Math.min(end, offsetOf(periodEnd));
+            periods.add(summarize(start, last));
+            start = last + 1;
+        }
+        return periods;
+    }
+
+    /**
+     * Returns the valuation over a date range as a single period.
+     *
+     * @param from
+     *            The first day (inclusive), or {@code null} for the first day of the series.
+     * @param to
+     *            The last day (inclusive), or {@code null} for the last day of the series.
+     *
+     * @return The period, or {@code null} if the range holds no days.
+     */
+    public Period summarize(LocalDate from, LocalDate to) {
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.max(0, (from != null) ? offsetOf(from) : 0);
+        int end = Math.min(size - 1, (to != null) ? offsetOf(to) : size - 1);
+        return (start <= end) ? summarize(start, end) : null;
+    }
+
+    /**
+     * Serializes the series column by column, in cents.
+     *
+     * @return The serialized columns.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + size * COLUMNS * Long.BYTES);
+        buffer.put(FORMAT_CENTS);
+        for (long[] column : new long[][] { cost, value, income, realized }) {
+            for (int i = 0; i < size; i++) {
+                buffer.putLong(column[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Deserializes a series written by {@link #toBytes()}.
+     *
+     * @param firstDate
+     *            The first day.
+     * @param data
+     *            The serialized columns.
+     *
+     * @return The series.
+     *
+     * @throws IllegalArgumentException
+     *             If the data is not a serialized series.
+     */
+    public static ValuationSeries fromBytes(LocalDate firstDate, byte[] data) {
+        ValuationSeries series = new ValuationSeries();
+        if (data.length == 0) {
+            return series;
+        }
+        if (data[0] != FORMAT_CENTS || (data.length - 1) % (COLUMNS * Long.BYTES) != 0) {
+            throw new IllegalArgumentException("Invalid valuation series data (" + data.length + " bytes)");
+        }
+        int size = (data.length - 1) / (COLUMNS * Long.BYTES);
+        if (size == 0) {
+            return series;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 1, data.length - 1);
+        series.firstDate = firstDate;
+        series.size = size;
+        series.cost = readColumn(buffer, size);
+        series.value = readColumn(buffer, size);
+        series.income = readColumn(buffer, size);
+        series.realized = readColumn(buffer, size);
+        return series;
+    }
+
+    /**
+     * Rebuilds the series from transactions, with unknown market values. <br />
+     * <br />
+     *
+     * Only the days with transactions are processed; the days in between are filled in bulk.
+     *
+     * @param transactions
+     *            The transactions, sorted by date.
+     * @param lastDate
+     *            The last day to include.
+     * @param zone
+     *            The time zone of the transaction dates.
+     *
+     * @return The series.
+     */
+    public static ValuationSeries fromTransactions(List<Transaction> transactions, LocalDate lastDate, ZoneId zone) {
+        ValuationSeries series = new ValuationSeries();
+        Map<String, Position> positions = new HashMap<String, Position>();
+        BigDecimal cost = BigDecimal.ZERO;
+        BigDecimal income = BigDecimal.ZERO;
+        BigDecimal realized = BigDecimal.ZERO;
+        LocalDate day = null;
+        for (Transaction tx : transactions) {
+            LocalDate date = Instant.ofEpochMilli(tx.getDate()).atZone(zone).toLocalDate();
+            if (day != null && date.isAfter(day)) {
+                series.append(day, cost, null, income, realized);
+            }
+            day = date;
+            Position position = positions.get(tx.getSymbol());
+            if (position == null) {
+                position = new Position(new Stock(tx.getSymbol(), tx.getSymbol()));
+                positions.put(tx.getSymbol(), position);
+            }
+            BigDecimal previousCost = position.getCurrentCost();
+            BigDecimal previousIncome = position.getTotalIncome();
+            BigDecimal previousRealized = position.getRealizedResult();
+            try {
+                position.addTransaction(tx);
+            } catch (IllegalArgumentException e) {
+                // Invalid transaction (e.g. selling more shares than owned); it has no effect on the portfolio either
+                continue;
+            }
+            cost = cost.add(position.getCurrentCost().subtract(previousCost));
+            income = income.add(position.getTotalIncome().subtract(previousIncome));
+            realized = realized.add(position.getRealizedResult().subtract(previousRealized));
+        }
+        if (day != null) {
+            series.append(day, cost, null, income, realized);
+            if (lastDate.isAfter(day)) {
+                series.append(lastDate, cost, null, income, realized);
+            }
+        }
+        return series;
+    }
+
+    private Period summarize(int start, int end) {
+        long costSum = 0L;
+        for (int i = start; i <= end; i++) {
+            costSum += cost[i];
+        }
+        int days = end - start + 1;
+        long previousIncome = (start > 0) ? income[start - 1] : 0L;
+        long previousRealized = (start > 0) ? realized[start - 1] : 0L;
+        BigDecimal averageCost = BigDecimal.valueOf(costSum, 2).divide(BigDecimal.valueOf(days), 2, RoundingMode.HALF_UP);
+        return new Period(firstDate.plusDays(start), firstDate.plusDays(end), averageCost, fromCents(cost[end]),
+                fromCents(value[end]), fromCents(income[end] - previousIncome), fromCents(realized[end] - previousRealized));
+    }
+
+    private void fill(int toIndex, long cost, long value, long income, long realized) {
+        if (toIndex <= size) {
+            return;
+        }
+        ensureCapacity(toIndex);
+        Arrays.fill(this.cost, size, toIndex, cost);
+        Arrays.fill(this.value, size, toIndex, value);
+        Arrays.fill(this.income, size, toIndex, income);
+        Arrays.fill(this.realized, size, toIndex, realized);
+        size = toIndex;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > cost.length) {
+            int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, cost.length * 2));
+            cost = Arrays.copyOf(cost, newCapacity);
+            value = Arrays.copyOf(value, newCapacity);
+            income = Arrays.copyOf(income, newCapacity);
+            realized = Arrays.copyOf(realized, newCapacity);
+        }
+    }
+
+    private int indexOf(LocalDate date) {
+        int index = (size > 0) ? offsetOf(date) : -1;
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Day not in series: " + date);
+        }
+        return index;
+    }
+
+    private int offsetOf(LocalDate date) {
+        long offset = date.toEpochDay() - firstDate.toEpochDay();
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, offset));
+    }
+
+    private static long[] readColumn(ByteBuffer buffer, int size) {
+        long[] column = new long[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = buffer.getLong();
+        }
+        return column;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return (cents != UNKNOWN) ? BigDecimal.valueOf(cents, 2) : null;
+    }
+
+    /**
+     * Valuation over a period.
+     */
+    public static class Period {
+
+        private final LocalDate startDate;
+
+        private final LocalDate endDate;
+
+        private final BigDecimal averageCost;
+
+        private final BigDecimal cost;
+
+        private final BigDecimal value;
+
+        private final BigDecimal income;
+
+        private final BigDecimal realizedResult;
+
+        Period(LocalDate startDate, LocalDate endDate, BigDecimal averageCost, BigDecimal cost, BigDecimal value,
+                BigDecimal income, BigDecimal realizedResult) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.averageCost = averageCost;
+            this.cost = cost;
+            this.value = value;
+            this.income = income;
+            this.realizedResult = realizedResult;
+        }
+
+        public LocalDate getStartDate() {
+            return startDate;
+        }
+
+        public LocalDate getEndDate() {
+            return endDate;
+        }
+
+        /**
+         * Returns the number of days in the period.
+         *
+         * @return The number of days.
+         */
+        public int getDays() {
+            return (int) (endDate.toEpochDay() - startDate.toEpochDay()) + 1;
+        }
+
+        /**
+         * Returns the average daily cost basis.
+         *
+         * @return The average cost basis.
+         */
+        public BigDecimal getAverageCost() {
+            return averageCost;
+        }
+
+        /**
+         * Returns the cost basis at the end of the period.
+         *
+         * @return The cost basis.
+         */
+        public BigDecimal getCost() {
+            return cost;
+        }
+
+        /**
+         * Returns the market value at the end of the period, or {@code null} if unknown.
+         *
+         * @return The market value.
+         */
+        public BigDecimal getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the income received during the period.
+         *
+         * @return The income.
+         */
+        public BigDecimal getIncome() {
+            return income;
+        }
+
+        /**
+         * Returns the result realized during the period.
+         *
+         * @return The realized result.
+         */
+        public BigDecimal getRealizedResult() {
+            return realizedResult;
+        }
+    }
+}
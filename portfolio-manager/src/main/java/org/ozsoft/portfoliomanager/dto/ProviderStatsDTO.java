@@ -0,0 +1,89 @@
+package org.ozsoft.portfoliomanager.dto;
+
+public class ProviderStatsDTO {
+
+    private String name;
+    private String circuitState;
+    private long requestCount;
+    private long failureCount;
+    private long shortCircuitCount;
+    private long hedgeCount;
+    private double errorRate;
+    private long p50Millis;
+    private long p95Millis;
+
+    public ProviderStatsDTO() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCircuitState() {
+        return circuitState;
+    }
+
+    public void setCircuitState(String circuitState) {
+        this.circuitState = circuitState;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(long requestCount) {
+        this.requestCount = requestCount;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(long failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public long getShortCircuitCount() {
+        return shortCircuitCount;
+    }
+
+    public void setShortCircuitCount(long shortCircuitCount) {
+        this.shortCircuitCount = shortCircuitCount;
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount;
+    }
+
+    public void setHedgeCount(long hedgeCount) {
+        this.hedgeCount = hedgeCount;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public long getP50Millis() {
+        return p50Millis;
+    }
+
+    public void setP50Millis(long p50Millis) {
+        this.p50Millis = p50Millis;
+    }
+
+    public long getP95Millis() {
+        return p95Millis;
+    }
+
+    public void setP95Millis(long p95Millis) {
+        this.p95Millis = p95Millis;
+    }
+}
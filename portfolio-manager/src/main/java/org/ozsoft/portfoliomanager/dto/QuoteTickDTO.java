@@ -0,0 +1,97 @@
+package org.ozsoft.portfoliomanager.dto;
+
+import java.math.BigDecimal;
+
+public class QuoteTickDTO {
+
+    private String symbol;
+    private String name;
+    private BigDecimal price;
+    private BigDecimal previousClose;
+    private boolean stale;
+    private BigDecimal noOfShares;
+    private BigDecimal currentValue;
+    private long timestamp;
+
+    public QuoteTickDTO() {
+    }
+
+    public static QuoteTickDTO fromQuote(StockPriceDTO quote, BigDecimal noOfShares) {
+        QuoteTickDTO dto = new QuoteTickDTO();
+        dto.setSymbol(quote.getSymbol());
+        dto.setName(quote.getName());
+        dto.setPrice(quote.getPrice());
+        dto.setPreviousClose(quote.getPreviousClose());
+        dto.setStale(quote.isStale());
+        dto.setNoOfShares(noOfShares);
+        if (noOfShares != null && quote.getPrice() != null) {
+            dto.setCurrentValue(noOfShares.multiply(quote.getPrice()));
+        }
+        dto.setTimestamp(System.currentTimeMillis());
+        return dto;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public BigDecimal getPreviousClose() {
+        return previousClose;
+    }
+
+    public void setPreviousClose(BigDecimal previousClose) {
+        this.previousClose = previousClose;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    public BigDecimal getNoOfShares() {
+        return noOfShares;
+    }
+
+    public void setNoOfShares(BigDecimal noOfShares) {
+        this.noOfShares = noOfShares;
+    }
+
+    public BigDecimal getCurrentValue() {
+        return currentValue;
+    }
+
+    public void setCurrentValue(BigDecimal currentValue) {
+        this.currentValue = currentValue;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,47 @@
+package org.ozsoft.portfoliomanager.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.ozsoft.portfoliomanager.domain.PortfolioStatistics;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries;
+
+public class StatisticsDTO {
+
+    private List<ValuationSeries.Period> months;
+    private List<ValuationSeries.Period> quarters;
+    private List<ValuationSeries.Period> years;
+    private ValuationSeries.Period overall;
+    private BigDecimal totalReturn;
+    private double annualizedReturn;
+
+    public StatisticsDTO() {
+    }
+
+    public StatisticsDTO(PortfolioStatistics statistics, BigDecimal totalReturn) {
+        this.months = statistics.getMonths();
+        this.quarters = statistics.getQuarters();
+        this.years = statistics.getYears();
+        this.overall = statistics.getOverall();
+        this.totalReturn = totalReturn;
+        this.annualizedReturn = statistics.getAnnualizedReturn(totalReturn);
+    }
+
+    public List<ValuationSeries.Period> getMonths() { return months; }
+    public void setMonths(List<ValuationSeries.Period> months) { this.months = months; }
+
+    public List<ValuationSeries.Period> getQuarters() { return quarters; }
+    public void setQuarters(List<ValuationSeries.Period> quarters) { this.quarters = quarters; }
+
+    public List<ValuationSeries.Period> getYears() { return years; }
+    public void setYears(List<ValuationSeries.Period> years) { this.years = years; }
+
+    public ValuationSeries.Period getOverall() { return overall; }
+    public void setOverall(ValuationSeries.Period overall) { this.overall = overall; }
+
+    public BigDecimal getTotalReturn() { return totalReturn; }
+    public void setTotalReturn(BigDecimal totalReturn) { this.totalReturn = totalReturn; }
+
+    public double getAnnualizedReturn() { return annualizedReturn; }
+    public void setAnnualizedReturn(double annualizedReturn) { this.annualizedReturn = annualizedReturn; }
+}
@@ -17,10 +17,30 @@ public class StockPriceDTO {
     private BigDecimal previousClose;
     private Long volume;
     private BigDecimal dividendYield;
+    private boolean stale;
+    private boolean synthetic;
 
     public StockPriceDTO() {
     }
 
+    public StockPriceDTO(StockPriceDTO other) {
+        this.symbol = other.symbol;
+        this.name = other.name;
+        this.price = other.price;
+        this.bid = other.bid;
+        this.ask = other.ask;
+        this.open = other.open;
+        this.dayHigh = other.dayHigh;
+        this.dayLow = other.dayLow;
+        this.yearHigh = other.yearHigh;
+        this.yearLow = other.yearLow;
+        this.previousClose = other.previousClose;
+        this.volume = other.volume;
+        this.dividendYield = other.dividendYield;
+        this.stale = other.stale;
+        this.synthetic = other.synthetic;
+    }
+
     public String getSymbol() {
         return symbol;
     }
@@ -124,4 +144,20 @@ public class StockPriceDTO {
     public void setDividendYield(BigDecimal dividendYield) {
         this.dividendYield = dividendYield;
     }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    public boolean isSynthetic() {
+        return synthetic;
+    }
+
+    public void setSynthetic(boolean synthetic) {
+        this.synthetic = synthetic;
+    }
 }
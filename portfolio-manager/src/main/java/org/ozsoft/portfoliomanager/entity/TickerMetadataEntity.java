@@ -0,0 +1,72 @@
+package org.ozsoft.portfoliomanager.entity;
+
+import java.time.LocalDateTime;
+import javax.persistence.*;
+
+@Entity
+@Table(name = "ticker_metadata")
+public class TickerMetadataEntity {
+
+    @Id
+    @Column(name = "symbol", length = 20)
+    private String symbol;
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "exchange", length = 20)
+    private String exchange;
+
+    @Column(name = "currency", length = 10)
+    private String currency;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public TickerMetadataEntity() {
+    }
+
+    public TickerMetadataEntity(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public void setExchange(String exchange) {
+        this.exchange = exchange;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
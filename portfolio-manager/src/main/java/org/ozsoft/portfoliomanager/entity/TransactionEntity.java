@@ -4,7 +4,10 @@ import java.math.BigDecimal;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_user_date_id", columnList = "user_id, date, id"),
+        @Index(name = "idx_transactions_user_symbol", columnList = "user_id, symbol"),
+        @Index(name = "idx_transactions_user_config_id", columnList = "user_id, config_id") })
 public class TransactionEntity {
 
     @Id
@@ -15,6 +18,10 @@ public class TransactionEntity {
     @Column(name = "user_id")
     private Long userId;
 
+    /** ID of the transaction in the configuration (transactions without a user only). */
+    @Column(name = "config_id")
+    private Integer configId;
+
     @Column(name = "date", nullable = false)
     private Long date;
 
@@ -56,6 +63,14 @@ public class TransactionEntity {
         this.userId = userId;
     }
 
+    public Integer getConfigId() {
+        return configId;
+    }
+
+    public void setConfigId(Integer configId) {
+        this.configId = configId;
+    }
+
     public Long getDate() {
         return date;
     }
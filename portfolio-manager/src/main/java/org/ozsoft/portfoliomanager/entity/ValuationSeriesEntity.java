@@ -0,0 +1,98 @@
+package org.ozsoft.portfoliomanager.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import javax.persistence.*;
+
+/**
+ * A user's daily valuation series, stored as one row with the days packed column by column.
+ */
+@Entity
+@Table(name = "valuation_series")
+public class ValuationSeriesEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false, unique = true)
+    private Long userId;
+
+    @Column(name = "first_date")
+    private LocalDate firstDate;
+
+    @Lob
+    @Column(name = "data")
+    private byte[] data;
+
+    /** Set when the user's transactions changed, so the series must be rebuilt before its next use. */
+    @Column(name = "stale", nullable = false)
+    private boolean stale;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    @Version
+    @Column(name = "version")
+    private long version;
+
+    public ValuationSeriesEntity() {
+    }
+
+    public ValuationSeriesEntity(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    public void setFirstDate(LocalDate firstDate) {
+        this.firstDate = firstDate;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -4,9 +4,12 @@ import org.ozsoft.portfoliomanager.entity.PortfolioEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PortfolioRepository extends JpaRepository<PortfolioEntity, Long> {
     Optional<PortfolioEntity> findByUserId(Long userId);
+    List<PortfolioEntity> findByUserIdIn(Collection<Long> userIds);
 }
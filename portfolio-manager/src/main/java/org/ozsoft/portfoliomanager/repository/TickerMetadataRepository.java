@@ -0,0 +1,9 @@
+package org.ozsoft.portfoliomanager.repository;
+
+import org.ozsoft.portfoliomanager.entity.TickerMetadataEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TickerMetadataRepository extends JpaRepository<TickerMetadataEntity, String> {
+}
@@ -2,17 +2,25 @@ package org.ozsoft.portfoliomanager.repository;
 
 import org.ozsoft.portfoliomanager.entity.TransactionEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<TransactionEntity, Integer> {
+public interface TransactionRepository extends JpaRepository<TransactionEntity, Integer>, TransactionRepositoryCustom {
     List<TransactionEntity> findBySymbol(String symbol);
     List<TransactionEntity> findAllByOrderByDateAsc();
     List<TransactionEntity> findByUserIdOrderByDateAsc(Long userId);
     List<TransactionEntity> findByUserIdAndSymbol(Long userId, String symbol);
     List<TransactionEntity> findByUserId(Long userId);
     Optional<TransactionEntity> findByIdAndUserId(Integer id, Long userId);
+
+    @Query("SELECT DISTINCT t.symbol FROM TransactionEntity t")
+    List<String> findDistinctSymbols();
+
+    @Query("SELECT DISTINCT t.userId FROM TransactionEntity t WHERE t.userId IS NOT NULL")
+    List<Long> findUserIds();
+
 }
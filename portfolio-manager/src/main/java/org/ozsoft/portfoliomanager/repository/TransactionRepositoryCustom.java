@@ -0,0 +1,19 @@
+package org.ozsoft.portfoliomanager.repository;
+
+import org.ozsoft.portfoliomanager.entity.TransactionEntity;
+
+import java.util.List;
+
+/**
+ * Transaction queries built from the filters that are actually given.
+ */
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Returns a page of a user's transactions in (date, id) order. Null filters are left out of the query. If a
+     * position (date and ID) is given, the page starts after that transaction, seeking through the (user_id, date,
+     * id) index instead of skipping rows, so deep pages are as fast as the first one.
+     */
+    List<TransactionEntity> findPage(Long userId, String symbol, String type, Long fromDate, Long toDate,
+            Long afterDate, Integer afterId, int offset, int size);
+}
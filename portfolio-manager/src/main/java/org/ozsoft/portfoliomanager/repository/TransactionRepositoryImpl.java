@@ -0,0 +1,52 @@
+package org.ozsoft.portfoliomanager.repository;
+
+import org.ozsoft.portfoliomanager.entity.TransactionEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionEntity> findPage(Long userId, String symbol, String type, Long fromDate, Long toDate,
+            Long afterDate, Integer afterId, int offset, int size) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionEntity> query = cb.createQuery(TransactionEntity.class);
+        Root<TransactionEntity> t = query.from(TransactionEntity.class);
+        Path<Long> date = t.get("date");
+        Path<Integer> id = t.get("id");
+
+        // Only plain predicates on the given filters, so the planner can pick the (user_id, symbol) index
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(t.get("userId"), userId));
+        if (symbol != null) {
+            predicates.add(cb.equal(t.get("symbol"), symbol));
+        }
+        if (type != null) {
+            predicates.add(cb.equal(t.get("type"), type));
+        }
+        if (fromDate != null) {
+            predicates.add(cb.greaterThanOrEqualTo(date, fromDate));
+        }
+        if (toDate != null) {
+            predicates.add(cb.lessThanOrEqualTo(date, toDate));
+        }
+        if (afterDate != null && afterId != null) {
+            predicates.add(cb.or(cb.greaterThan(date, afterDate),
+                    cb.and(cb.equal(date, afterDate), cb.greaterThan(id, afterId))));
+        }
+        query.where(predicates.toArray(new Predicate[0])).orderBy(cb.asc(date), cb.asc(id));
+
+        return entityManager.createQuery(query).setFirstResult(offset).setMaxResults(size).getResultList();
+    }
+}
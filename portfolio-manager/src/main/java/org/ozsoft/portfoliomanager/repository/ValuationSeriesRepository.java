@@ -0,0 +1,24 @@
+package org.ozsoft.portfoliomanager.repository;
+
+import org.ozsoft.portfoliomanager.entity.ValuationSeriesEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface ValuationSeriesRepository extends JpaRepository<ValuationSeriesEntity, Long> {
+    Optional<ValuationSeriesEntity> findByUserId(Long userId);
+
+    /**
+     * Marks a user's series for rebuilding. Bumps the version, so that a concurrent save of the old series fails.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ValuationSeriesEntity v SET v.stale = true, v.version = v.version + 1 WHERE v.userId = :userId")
+    int markStale(@Param("userId") Long userId);
+}
@@ -0,0 +1,56 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-to-live policy for cached upstream data.
+ * 
+ * Entries younger than the soft TTL are fresh. Between the soft and hard TTL they are stale: still served,
+ * but due for a background refresh. Past the hard TTL they are expired and must be reloaded. Negative
+ * entries (lookups that produced no real data) use their own, typically much shorter, TTL and are never
+ * served stale.
+ */
+public class CachePolicy {
+
+    public enum State {
+        FRESH, STALE, EXPIRED
+    }
+
+    private final long softTtlMillis;
+    private final long hardTtlMillis;
+    private final long negativeTtlMillis;
+
+    public CachePolicy(long softTtl, long hardTtl, long negativeTtl, TimeUnit unit) {
+        if (softTtl < 0 || hardTtl < softTtl || negativeTtl < 0) {
+            throw new IllegalArgumentException("Invalid cache TTLs: soft=" + softTtl + ", hard=" + hardTtl + ", negative=" + negativeTtl);
+        }
+        this.softTtlMillis = unit.toMillis(softTtl);
+        this.hardTtlMillis = unit.toMillis(hardTtl);
+        this.negativeTtlMillis = unit.toMillis(negativeTtl);
+    }
+
+    public State getState(long timestamp, boolean negative) {
+        long age = System.currentTimeMillis() - timestamp;
+        if (negative) {
+            return age > negativeTtlMillis ? State.EXPIRED : State.FRESH;
+        } else if (age <= softTtlMillis) {
+            return State.FRESH;
+        } else if (age <= hardTtlMillis) {
+            return State.STALE;
+        } else {
+            return State.EXPIRED;
+        }
+    }
+
+    public long getSoftTtlMillis() {
+        return softTtlMillis;
+    }
+
+    public long getHardTtlMillis() {
+        return hardTtlMillis;
+    }
+
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+}
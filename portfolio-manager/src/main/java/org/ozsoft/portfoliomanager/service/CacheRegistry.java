@@ -0,0 +1,79 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.util.CacheStats;
+import org.ozsoft.portfoliomanager.util.LruCache;
+
+/**
+ * Creates the application's in-memory caches, sweeps their expired entries in the background and exposes
+ * their statistics.
+ */
+@Service
+public class CacheRegistry {
+
+    private static final Logger LOGGER = LogManager.getLogger(CacheRegistry.class);
+
+    @Value("${cache.sweep-interval-seconds:60}")
+    private long sweepIntervalSeconds;
+
+    private final Map<String, LruCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    public <K, V> LruCache<K, V> createCache(String name, int maxSize) {
+        LruCache<K, V> cache = new LruCache<>(name, maxSize);
+        if (caches.putIfAbsent(name, cache) != null) {
+            throw new IllegalStateException("Duplicate cache name: " + name);
+        }
+        return cache;
+    }
+
+    public Map<String, CacheStats> getStats() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        for (LruCache<?, ?> cache : caches.values()) {
+            stats.put(cache.getName(), cache.getStats());
+        }
+        return stats;
+    }
+
+    void sweep() {
+        List<LruCache<?, ?>> snapshot = new ArrayList<>(caches.values());
+        for (LruCache<?, ?> cache : snapshot) {
+            try {
+                int removed = cache.cleanUp();
+                if (removed > 0) {
+                    LOGGER.debug("Removed " + removed + " expired entries from cache '" + cache.getName() + "'");
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Error sweeping cache '" + cache.getName() + "'", e);
+            }
+        }
+    }
+}
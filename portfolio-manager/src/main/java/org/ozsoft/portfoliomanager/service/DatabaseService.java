@@ -7,184 +7,328 @@ import org.ozsoft.portfoliomanager.domain.Transaction;
 import org.ozsoft.portfoliomanager.domain.TransactionType;
 import org.ozsoft.portfoliomanager.domain.CreditRating;
 import org.ozsoft.portfoliomanager.domain.StockLevel;
-import org.ozsoft.portfoliomanager.entity.StockEntity;
-import org.ozsoft.portfoliomanager.entity.TransactionEntity;
-import org.ozsoft.portfoliomanager.repository.StockRepository;
-import org.ozsoft.portfoliomanager.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.PostConstruct;
 
 @Service
 public class DatabaseService {
 
     private static final Logger LOGGER = LogManager.getLogger(DatabaseService.class);
 
-    @Autowired
-    private StockRepository stockRepository;
+    private static final String SELECT_TRANSACTIONS = "SELECT id, config_id, date, symbol, type, number_of_shares, price, cost "
+            + "FROM transactions WHERE user_id IS NULL ORDER BY date, id";
+
+    private static final Map<String, TransactionType> TRANSACTION_TYPES = lookup(TransactionType.class);
+    private static final Map<String, CreditRating> CREDIT_RATINGS = lookup(CreditRating.class);
+    private static final Map<String, StockLevel> STOCK_LEVELS = lookup(StockLevel.class);
 
     @Autowired
-    private TransactionRepository transactionRepository;
+    private JdbcTemplate jdbcTemplate;
 
-    public void saveStock(Stock stock) {
-        try {
-            StockEntity entity = new StockEntity(stock.getSymbol(), stock.getName());
-            entity.setPrice(stock.getPrice());
-            entity.setChangePerc(stock.getChangePerc());
-            entity.setTargetPrice(stock.getTargetPrice());
-            entity.setDivRate(stock.getDivRate());
-            entity.setDivGrowth(stock.getDivGrowth());
-            entity.setYearsDivGrowth(stock.getYearsDivGrowth());
-            entity.setCreditRating(stock.getCreditRating() != null ? stock.getCreditRating().toString() : CreditRating.NA.toString());
-            entity.setComment(stock.getComment());
-            entity.setLevel(stock.getLevel() != null ? stock.getLevel().toString() : StockLevel.WATCH.toString());
-            
-            stockRepository.save(entity);
-            LOGGER.debug("Stock saved to database: " + stock.getSymbol());
-        } catch (Exception e) {
-            LOGGER.error("Error saving stock to database", e);
-            throw new RuntimeException("Failed to save stock to database", e);
-        }
-    }
+    @Value("${database.load.fetch-size:1000}")
+    private int fetchSize;
 
-    public void updateStock(Stock stock) {
-        try {
-            @SuppressWarnings("null")
-            StockEntity entity = stockRepository.findById(stock.getSymbol()).orElse(null);
-            if (null != entity) {
-                entity.setName(stock.getName());
-                entity.setPrice(stock.getPrice());
-                entity.setChangePerc(stock.getChangePerc());
-                entity.setTargetPrice(stock.getTargetPrice());
-                entity.setDivRate(stock.getDivRate());
-                entity.setDivGrowth(stock.getDivGrowth());
-                entity.setYearsDivGrowth(stock.getYearsDivGrowth());
-                entity.setCreditRating(stock.getCreditRating() != null ? stock.getCreditRating().toString() : CreditRating.NA.toString());
-                entity.setComment(stock.getComment());
-                entity.setLevel(stock.getLevel() != null ? stock.getLevel().toString() : StockLevel.WATCH.toString());
-                
-                stockRepository.save(entity);
-                LOGGER.debug("Stock updated in database: " + stock.getSymbol());
-            }
-        } catch (Exception e) {
-            LOGGER.error("Error updating stock in database", e);
-            throw new RuntimeException("Failed to update stock in database", e);
-        }
-    }
+    /** Read-only template for bulk loads, streaming rows with a larger fetch size. */
+    private JdbcTemplate bulkJdbcTemplate;
 
-    public void deleteStock(String symbol) {
-        try {
-            stockRepository.deleteById((symbol != null ? symbol : ""));
-            LOGGER.debug("Stock deleted from database: " + symbol);
-        } catch (Exception e) {
-            LOGGER.error("Error deleting stock from database", e);
-            throw new RuntimeException("Failed to delete stock from database", e);
-        }
+    @PostConstruct
+    public void init() {
+        bulkJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        bulkJdbcTemplate.setFetchSize(fetchSize);
     }
 
+    /**
+     * Reads all stocks with plain JDBC, straight into domain objects, without loading JPA entities into the
+     * persistence context.
+     */
     public List<Stock> loadAllStocks() {
         try {
-            List<StockEntity> entities = stockRepository.findAll();
             List<Stock> stocks = new ArrayList<>();
-            for (StockEntity entity : entities) {
-                try {
-                    stocks.add(entityToDomain(entity));
-                } catch (Exception e) {
-                    LOGGER.warn("Error converting stock entity to domain: " + entity.getSymbol(), e);
-                }
-            }
+            bulkJdbcTemplate.query("SELECT symbol, name, price, change_percentage, target_price, dividend_rate, dividend_growth, "
+                    + "years_div_growth, credit_rating, comment, level FROM stocks", (RowCallbackHandler) rs -> {
+                        Stock stock = mapStock(rs);
+                        if (stock != null) {
+                            stocks.add(stock);
+                        }
+                    });
             LOGGER.info("Loaded " + stocks.size() + " stocks from database");
             return stocks;
-        } catch (Exception e) {
+        } catch (DataAccessException e) {
             LOGGER.warn("Error loading stocks from database, will use JSON fallback", e);
             return new ArrayList<>();
         }
     }
 
-    public void saveTransaction(Transaction transaction) {
+    /**
+     * Reads all transactions without a user (the ones saved by {@link #saveChanges}) in date order with plain JDBC,
+     * straight into domain objects. <br />
+     * <br />
+     *
+     * Rows without a configuration ID were written by the former per-row save, which inserted a new row on every
+     * save of a transaction. Of such rows with the same symbol, date, type, shares, price and cost only one is read,
+     * and none if a row with a configuration ID has the same values (the copy that was claimed by {@link #saveChanges}).
+     */
+    public List<Transaction> loadAllTransactions() {
         try {
-            TransactionEntity entity = new TransactionEntity();
-            entity.setDate(transaction.getDate());
-            entity.setSymbol(transaction.getSymbol());
-            entity.setType(transaction.getType().toString());
-            entity.setNoOfShares(transaction.getNoOfShares());
-            entity.setPrice(transaction.getPrice());
-            entity.setCost(transaction.getCost());
-            
-            transactionRepository.save(entity);
-            LOGGER.debug("Transaction saved to database");
-        } catch (Exception e) {
-            LOGGER.error("Error saving transaction to database", e);
-            throw new RuntimeException("Failed to save transaction to database", e);
+            List<Transaction> transactions = new ArrayList<>();
+            // Transactions are equal by symbol and date only, so these sets are by identity
+            Set<Transaction> legacyTransactions = Collections.newSetFromMap(new IdentityHashMap<>());
+            bulkJdbcTemplate.query(SELECT_TRANSACTIONS, (RowCallbackHandler) rs -> {
+                boolean legacy = rs.getObject("config_id") == null;
+                Transaction transaction = mapTransaction(rs);
+                if (transaction != null) {
+                    transactions.add(transaction);
+                    if (legacy) {
+                        legacyTransactions.add(transaction);
+                    }
+                }
+            });
+            if (!legacyTransactions.isEmpty()) {
+                Set<String> keys = new HashSet<>();
+                for (Transaction transaction : transactions) {
+                    if (!legacyTransactions.contains(transaction)) {
+                        keys.add(contentKey(transaction));
+                    }
+                }
+                Set<Transaction> duplicates = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (Transaction transaction : legacyTransactions) {
+                    if (!keys.add(contentKey(transaction))) {
+                        duplicates.add(transaction);
+                    }
+                }
+                if (!duplicates.isEmpty()) {
+                    transactions.removeIf(duplicates::contains);
+                    LOGGER.warn("Skipped " + duplicates.size() + " duplicate transaction rows without configuration ID");
+                }
+            }
+            LOGGER.info("Loaded " + transactions.size() + " transactions from database");
+            return transactions;
+        } catch (DataAccessException e) {
+            LOGGER.warn("Error loading transactions from database, will use JSON fallback", e);
+            return new ArrayList<>();
         }
     }
 
-    public void deleteTransaction(Integer id) {
-        try {
-            if (id != null) {
-                transactionRepository.deleteById(id);
+    /**
+     * Writes only the changed stocks and transactions, in JDBC batches within a single database transaction.
+     * Rows are upserted: updated by key, and inserted if no row was updated. Transactions without a user are
+     * keyed by their ID in the configuration (the config_id column), since several transactions can share a
+     * symbol and date. A row written before that column existed is claimed by the first transaction with its
+     * symbol and date (preferably one with the same values), instead of inserting a duplicate; the remaining copies
+     * of the claimed row are deleted.
+     */
+    @Transactional
+    public void saveChanges(Collection<Stock> stocks, Collection<String> deletedSymbols,
+                            Collection<Transaction> transactions, Collection<Transaction> deletedTransactions) {
+        if (!deletedSymbols.isEmpty()) {
+            List<Object[]> args = new ArrayList<>();
+            for (String symbol : deletedSymbols) {
+                args.add(new Object[] { symbol });
             }
-            LOGGER.debug("Transaction deleted from database: " + id);
-        } catch (Exception e) {
-            LOGGER.error("Error deleting transaction from database", e);
-            throw new RuntimeException("Failed to delete transaction from database", e);
+            jdbcTemplate.batchUpdate("DELETE FROM stocks WHERE symbol = ?", args);
         }
-    }
 
-    public List<Transaction> loadAllTransactions() {
-        try {
-            List<TransactionEntity> entities = transactionRepository.findAllByOrderByDateAsc();
-            if (entities == null) {
-                return new ArrayList<>();
+        if (!stocks.isEmpty()) {
+            List<Stock> stockList = new ArrayList<>(stocks);
+            List<Object[]> args = new ArrayList<>();
+            for (Stock stock : stockList) {
+                args.add(stockValues(stock));
             }
-            List<Transaction> transactions = new ArrayList<>();
-            for (TransactionEntity entity : entities) {
-                try {
-                    transactions.add(entityToDomain(entity));
-                } catch (Exception e) {
-                    LOGGER.warn("Error converting transaction entity to domain: " + entity.getId(), e);
+            int[] counts = jdbcTemplate.batchUpdate("UPDATE stocks SET name = ?, price = ?, change_percentage = ?, target_price = ?, "
+                    + "dividend_rate = ?, dividend_growth = ?, years_div_growth = ?, credit_rating = ?, comment = ?, level = ? "
+                    + "WHERE symbol = ?", args);
+            List<Object[]> inserts = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    inserts.add(args.get(i));
+                }
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO stocks (name, price, change_percentage, target_price, dividend_rate, "
+                        + "dividend_growth, years_div_growth, credit_rating, comment, level, symbol) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", inserts);
+            }
+        }
+
+        if (!deletedTransactions.isEmpty()) {
+            List<Object[]> args = new ArrayList<>();
+            for (Transaction transaction : deletedTransactions) {
+                args.add(new Object[] { transaction.getId() });
+            }
+            jdbcTemplate.batchUpdate("DELETE FROM transactions WHERE user_id IS NULL AND config_id = ?", args);
+        }
+
+        if (!transactions.isEmpty()) {
+            List<Transaction> transactionList = new ArrayList<>(transactions);
+            List<Object[]> args = new ArrayList<>();
+            for (Transaction transaction : transactionList) {
+                args.add(new Object[] { transaction.getDate(), transaction.getSymbol(), transaction.getType().toString(),
+                        transaction.getNoOfShares(), transaction.getPrice(), transaction.getCost(), transaction.getId() });
+            }
+            int[] counts = jdbcTemplate.batchUpdate("UPDATE transactions SET date = ?, symbol = ?, type = ?, number_of_shares = ?, "
+                    + "price = ?, cost = ? WHERE user_id IS NULL AND config_id = ?", args);
+            List<Object[]> claims = new ArrayList<>();
+            List<Object[]> copies = new ArrayList<>();
+            List<Object[]> missing = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    Transaction transaction = transactionList.get(i);
+                    String type = transaction.getType().toString();
+                    claims.add(new Object[] { transaction.getId(), type, transaction.getNoOfShares(), transaction.getPrice(),
+                            transaction.getCost(), transaction.getSymbol(), transaction.getDate(), type,
+                            transaction.getNoOfShares(), transaction.getPrice(), transaction.getCost() });
+                    copies.add(new Object[] { transaction.getSymbol(), transaction.getDate(), type, transaction.getNoOfShares(),
+                            transaction.getPrice(), transaction.getCost() });
+                    missing.add(args.get(i));
+                }
+            }
+            if (!claims.isEmpty()) {
+                // Prefers a row with the same values, of which the former per-row save may have left several copies
+                counts = jdbcTemplate.batchUpdate("UPDATE transactions SET config_id = ?, type = ?, number_of_shares = ?, price = ?, "
+                        + "cost = ? WHERE id = (SELECT id FROM transactions WHERE user_id IS NULL AND config_id IS NULL "
+                        + "AND symbol = ? AND date = ? ORDER BY CASE WHEN type = ? AND number_of_shares = ? AND price = ? "
+                        + "AND cost = ? THEN 0 ELSE 1 END, id LIMIT 1)", claims);
+                List<Object[]> inserts = new ArrayList<>();
+                List<Object[]> claimed = new ArrayList<>();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        inserts.add(missing.get(i));
+                    } else {
+                        claimed.add(copies.get(i));
+                    }
+                }
+                if (!claimed.isEmpty()) {
+                    jdbcTemplate.batchUpdate("DELETE FROM transactions WHERE user_id IS NULL AND config_id IS NULL AND symbol = ? "
+                            + "AND date = ? AND type = ? AND number_of_shares = ? AND price = ? AND cost = ?", claimed);
+                }
+                if (!inserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate("INSERT INTO transactions (date, symbol, type, number_of_shares, price, cost, config_id) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?)", inserts);
                 }
             }
-            LOGGER.info("Loaded " + transactions.size() + " transactions from database");
-            return transactions;
-        } catch (Exception e) {
-            LOGGER.warn("Error loading transactions from database, will use JSON fallback", e);
-            return new ArrayList<>();
         }
+
+        LOGGER.debug("Saved " + stocks.size() + " stocks and " + transactions.size() + " transactions to database, deleted "
+                + deletedSymbols.size() + " stocks and " + deletedTransactions.size() + " transactions");
     }
 
-    private Stock entityToDomain(StockEntity entity) {
-        Stock stock = new Stock(entity.getSymbol(), entity.getName());
-        stock.setPrice(entity.getPrice() != null ? entity.getPrice() : BigDecimal.ZERO);
-        stock.setChangePerc(entity.getChangePerc() != null ? entity.getChangePerc() : BigDecimal.ZERO);
-        stock.setTargetPrice(entity.getTargetPrice() != null ? entity.getTargetPrice() : BigDecimal.ZERO);
-        stock.setDivRate(entity.getDivRate() != null ? entity.getDivRate() : BigDecimal.ZERO);
-        stock.setDivGrowth(entity.getDivGrowth() != null ? entity.getDivGrowth() : BigDecimal.ZERO);
-        if (entity.getYearsDivGrowth() != null) {
-            stock.setYearsDivGrowth(entity.getYearsDivGrowth());
+    private static Object[] stockValues(Stock stock) {
+        return new Object[] {
+                stock.getName(),
+                stock.getPrice(),
+                stock.getChangePerc(),
+                stock.getTargetPrice(),
+                stock.getDivRate(),
+                stock.getDivGrowth(),
+                stock.getYearsDivGrowth(),
+                stock.getCreditRating() != null ? stock.getCreditRating().toString() : CreditRating.NA.toString(),
+                stock.getComment(),
+                stock.getLevel() != null ? stock.getLevel().toString() : StockLevel.WATCH.toString(),
+                stock.getSymbol() };
+    }
+
+    private static Stock mapStock(ResultSet rs) throws SQLException {
+        String symbol = rs.getString("symbol");
+        if (symbol == null) {
+            return null;
+        }
+        Stock stock = new Stock(symbol, rs.getString("name"));
+        stock.setPrice(orZero(rs.getBigDecimal("price")));
+        stock.setChangePerc(orZero(rs.getBigDecimal("change_percentage")));
+        stock.setTargetPrice(orZero(rs.getBigDecimal("target_price")));
+        stock.setDivRate(orZero(rs.getBigDecimal("dividend_rate")));
+        stock.setDivGrowth(orZero(rs.getBigDecimal("dividend_growth")));
+        int yearsDivGrowth = rs.getInt("years_div_growth");
+        if (!rs.wasNull()) {
+            stock.setYearsDivGrowth(yearsDivGrowth);
         }
-        if (entity.getCreditRating() != null) {
-            stock.setCreditRating(CreditRating.valueOf(entity.getCreditRating()));
+        String creditRating = rs.getString("credit_rating");
+        if (creditRating != null) {
+            CreditRating rating = CREDIT_RATINGS.get(creditRating);
+            if (rating != null) {
+                stock.setCreditRating(rating);
+            } else {
+                LOGGER.warn("Unknown credit rating for stock " + symbol + ": " + creditRating);
+            }
         }
-        stock.setComment(entity.getComment());
-        if (entity.getLevel() != null) {
-            stock.setLevel(StockLevel.valueOf(entity.getLevel()));
+        stock.setComment(rs.getString("comment"));
+        String level = rs.getString("level");
+        if (level != null) {
+            StockLevel stockLevel = STOCK_LEVELS.get(level);
+            if (stockLevel != null) {
+                stock.setLevel(stockLevel);
+            } else {
+                LOGGER.warn("Unknown level for stock " + symbol + ": " + level);
+            }
         }
         return stock;
     }
 
-    private Transaction entityToDomain(TransactionEntity entity) {
+    private static Transaction mapTransaction(ResultSet rs) throws SQLException {
+        // Rows written before transactions were keyed by their configuration ID use the row ID instead
+        int id = rs.getInt("config_id");
+        if (rs.wasNull()) {
+            id = rs.getInt("id");
+        }
+        String typeName = rs.getString("type");
+        TransactionType type = (typeName != null) ? TRANSACTION_TYPES.get(typeName) : null;
+        if (type == null) {
+            LOGGER.warn("Skipping transaction " + id + " with unknown type: " + typeName);
+            return null;
+        }
         Transaction transaction = new Transaction();
-        transaction.setId(entity.getId());
-        transaction.setDate(entity.getDate());
-        transaction.setSymbol(entity.getSymbol());
-        transaction.setType(TransactionType.valueOf(entity.getType()));
-        transaction.setNoOfShares(entity.getNoOfShares());
-        transaction.setPrice(entity.getPrice());
-        transaction.setCost(entity.getCost());
+        transaction.setId(id);
+        transaction.setDate(rs.getLong("date"));
+        transaction.setSymbol(rs.getString("symbol"));
+        transaction.setType(type);
+        transaction.setNoOfShares(rs.getBigDecimal("number_of_shares"));
+        transaction.setPrice(rs.getBigDecimal("price"));
+        transaction.setCost(rs.getBigDecimal("cost"));
         return transaction;
     }
+
+    private static String contentKey(Transaction transaction) {
+        return transaction.getSymbol() + '|' + transaction.getDate() + '|' + transaction.getType() + '|' + plain(transaction.getNoOfShares())
+                + '|' + plain(transaction.getPrice()) + '|' + plain(transaction.getCost());
+    }
+
+    private static String plain(BigDecimal value) {
+        return (value != null) ? value.stripTrailingZeros().toPlainString() : null;
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return (value != null) ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * Maps both the constant names and the display names of an enum to its constants, so either form stored in
+     * the database can be parsed without exceptions.
+     */
+    private static <E extends Enum<E>> Map<String, E> lookup(Class<E> type) {
+        Map<String, E> constants = new HashMap<>();
+        for (E constant : type.getEnumConstants()) {
+            constants.put(constant.toString(), constant);
+            constants.put(constant.name(), constant);
+        }
+        return constants;
+    }
 }
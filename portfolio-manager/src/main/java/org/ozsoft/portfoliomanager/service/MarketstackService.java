@@ -1,14 +1,29 @@
 package org.ozsoft.portfoliomanager.service;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.util.LruCache;
+import org.ozsoft.portfoliomanager.util.SingleFlight;
+import org.ozsoft.portfoliomanager.util.HttpClient;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
@@ -18,6 +33,7 @@ public class MarketstackService {
 
     private static final Logger LOGGER = LogManager.getLogger(MarketstackService.class);
     private static final int CACHE_DURATION_MINUTES = 15;
+    private static final int MAX_SYMBOLS_PER_REQUEST = 100;
     
     @Value("${marketstack.api.key}")
     private String apiKey;
@@ -25,103 +41,160 @@ public class MarketstackService {
     @Value("${marketstack.api.url}")
     private String apiUrl;
     
-    private static class CacheEntry {
-        StockPriceDTO data;
-        long timestamp;
-        
-        CacheEntry(StockPriceDTO data) {
-            this.data = data;
-            this.timestamp = System.currentTimeMillis();
-        }
-        
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > TimeUnit.MINUTES.toMillis(CACHE_DURATION_MINUTES);
-        }
-    }
+    @Autowired
+    private TickerMetadataService tickerMetadataService;
+    
+    @Value("${marketstack.cache.max-size:5000}")
+    private int maxCacheSize;
+    
+    @Autowired
+    private CacheRegistry cacheRegistry;
     
-    private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private LruCache<String, StockPriceDTO> cache;
+    private final SingleFlight<String, StockPriceDTO> inFlight = new SingleFlight<>();
+
+    @PostConstruct
+    public void init() {
+        cache = cacheRegistry.createCache("marketstack-prices", maxCacheSize);
+    }
 
     public StockPriceDTO getStockPrice(String symbol) {
+        try {
+            return fetchStockPrice(symbol);
+        } catch (Exception e) {
+            LOGGER.error("Error fetching stock from marketstack API: " + symbol, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the price of a stock like {@link #getStockPrice(String)}, but reports failures instead of returning null.
+     * 
+     * @return The price, or {@code null} if marketstack does not know the symbol.
+     * 
+     * @throws Exception If marketstack could not be reached or returned an error.
+     */
+    public StockPriceDTO fetchStockPrice(String symbol) throws Exception {
         if (symbol == null || symbol.isEmpty()) {
             return null;
         }
 
+        symbol = symbol.trim().toUpperCase();
+
+        StockPriceDTO cached = cache.get(symbol);
+        if (cached != null) {
+            LOGGER.debug("Returning cached marketstack data for: " + symbol);
+            return cached;
+        }
+
+        final String key = symbol;
+        return inFlight.execute(key, () -> loadStockPrice(key));
+    }
+    
+    private StockPriceDTO loadStockPrice(String symbol) throws IOException {
+        // Another caller may have completed a load between our cache check and joining the flight
+        StockPriceDTO cached = cache.get(symbol);
+        if (cached != null) {
+            return cached;
+        }
+
+        LOGGER.debug("Fetching fresh marketstack data for: " + symbol);
+        long startTime = System.nanoTime();
+        StockPriceDTO result = null;
         try {
-            symbol = symbol.trim().toUpperCase();
-            
-            CacheEntry cached = cache.get(symbol);
-            if (cached != null && !cached.isExpired()) {
-                LOGGER.debug("Returning cached marketstack data for: " + symbol);
-                return cached.data;
+            result = fetchFromMarketstack(symbol);
+        } finally {
+            cache.recordLoad(System.nanoTime() - startTime, result != null);
+        }
+        
+        if (result != null) {
+            cache.put(symbol, result, CACHE_DURATION_MINUTES, TimeUnit.MINUTES);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Fetches the latest end-of-day prices of several stocks in bulk (up to 100 symbols per request), regardless of the cached prices,
+     * and caches them. These are closing prices, so they are not suitable for intraday (live) quotes. Bars of trading days before the
+     * given date are skipped, as the closing price of that day is not published yet.
+     * 
+     * @return The prices by symbol; symbols that could not be fetched, or only with an older bar, are missing.
+     */
+    public Map<String, StockPriceDTO> refreshEndOfDayPrices(Collection<String> symbols, LocalDate since) {
+        Set<String> pending = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            if (symbol != null && !symbol.trim().isEmpty()) {
+                pending.add(symbol.trim().toUpperCase());
             }
-            
-            LOGGER.debug("Fetching fresh marketstack data for: " + symbol);
-            StockPriceDTO result = fetchFromMarketstack(symbol);
-            
-            if (result != null) {
-                cache.put(symbol, new CacheEntry(result));
+        }
+
+        Map<String, StockPriceDTO> results = new LinkedHashMap<>();
+        if (!pending.isEmpty()) {
+            LOGGER.debug("Fetching end-of-day marketstack data for " + pending.size() + " symbols");
+            List<String> list = new ArrayList<>(pending);
+            for (int i = 0; i < list.size(); i += MAX_SYMBOLS_PER_REQUEST) {
+                List<String> chunk = list.subList(i, Math.min(i + MAX_SYMBOLS_PER_REQUEST, list.size()));
+                long startTime = System.nanoTime();
+                Map<String, StockPriceDTO> fetched = fetchBatchFromMarketstack(chunk, since);
+                cache.recordLoad(System.nanoTime() - startTime, !fetched.isEmpty());
+                for (Map.Entry<String, StockPriceDTO> entry : fetched.entrySet()) {
+                    cache.put(entry.getKey(), entry.getValue(), CACHE_DURATION_MINUTES, TimeUnit.MINUTES);
+                    results.put(entry.getKey(), entry.getValue());
+                }
             }
-            
-            return result;
-        } catch (Exception e) {
-            LOGGER.error("Error fetching stock from marketstack API: " + symbol, e);
-            return null;
         }
+
+        return results;
     }
-    
-    private StockPriceDTO fetchFromMarketstack(String symbol) {
+
+    private Map<String, StockPriceDTO> fetchBatchFromMarketstack(List<String> symbols, LocalDate since) {
         try {
-            String url = apiUrl + "/eod/latest?access_key=" + apiKey + "&symbols=" + symbol;
-            LOGGER.debug("Calling marketstack API for symbol: " + symbol);
-            
+            String url = apiUrl + "/eod/latest?access_key=" + apiKey + "&symbols=" + String.join(",", symbols) + "&limit=" + symbols.size();
+            LOGGER.debug("Calling marketstack API for " + symbols.size() + " symbols");
+
             String response = makeHttpRequest(url);
-            
-            if (response == null || response.isEmpty()) {
-                LOGGER.warn("Empty response from marketstack API for symbol: " + symbol);
-                return null;
+
+            if (response.isEmpty()) {
+                LOGGER.warn("Empty response from marketstack API for symbols: " + symbols);
+                return new LinkedHashMap<>();
             }
 
-            return parseMarketstackResponse(response, symbol);
+            return parseMarketstackBatchResponse(response, since);
         } catch (Exception e) {
-            LOGGER.error("Marketstack API failed for " + symbol, e);
-            return null;
+            LOGGER.error("Marketstack API failed for symbols: " + symbols, e);
+            return new LinkedHashMap<>();
         }
     }
 
-    @SuppressWarnings("deprecation")
-    private String makeHttpRequest(String urlString) throws Exception {
-        java.net.URL url = new java.net.URL(urlString);
-        java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(5000);
-        conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64)");
-
-        int responseCode = conn.getResponseCode();
-        if (responseCode == 200) {
-            try (java.io.BufferedReader in = new java.io.BufferedReader(
-                new java.io.InputStreamReader(conn.getInputStream())
-            )) {
-                StringBuilder response = new StringBuilder();
-                String inputLine;
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                return response.toString();
-            }
+    private StockPriceDTO fetchFromMarketstack(String symbol) throws IOException {
+        String url = apiUrl + "/eod/latest?access_key=" + apiKey + "&symbols=" + symbol;
+        LOGGER.debug("Calling marketstack API for symbol: " + symbol);
+
+        String response = makeHttpRequest(url);
+
+        if (response.isEmpty()) {
+            throw new IOException("Empty response from marketstack API for symbol: " + symbol);
+        }
+
+        return parseMarketstackResponse(response, symbol);
+    }
+
+    private String makeHttpRequest(String url) throws IOException {
+        HttpClient.Response response = HttpClient.getDefault().get(url);
+        if (response.getStatusCode() == 200) {
+            return response.getBody();
         } else {
-            LOGGER.warn("Marketstack API returned status code: " + responseCode);
-            return null;
+            throw new IOException("Marketstack API returned status code: " + response.getStatusCode());
         }
     }
 
-    private StockPriceDTO parseMarketstackResponse(String jsonResponse, String symbol) {
+    StockPriceDTO parseMarketstackResponse(String jsonResponse, String symbol) throws IOException {
         try {
             JsonObject json = JsonParser.parseString(jsonResponse).getAsJsonObject();
             
             if (json.has("error")) {
-                LOGGER.warn("Error in marketstack response: " + json.get("error"));
-                return null;
+                throw new IOException("Error in marketstack response: " + json.get("error"));
             }
 
             JsonArray dataArray = json.getAsJsonArray("data");
@@ -131,80 +204,123 @@ public class MarketstackService {
             }
 
             JsonObject stockData = dataArray.get(0).getAsJsonObject();
-            
-            StockPriceDTO dto = new StockPriceDTO();
-            dto.setSymbol(symbol);
-            String companyName = fetchCompanyName(symbol);
-            dto.setName(companyName != null ? companyName : symbol);
-            
-            if (stockData.has("open")) {
-                dto.setOpen(new BigDecimal(stockData.get("open").getAsString()));
-            }
-            
-            if (stockData.has("close")) {
-                dto.setPrice(new BigDecimal(stockData.get("close").getAsString()));
+            String companyName = tickerMetadataService.getCompanyName(symbol);
+            StockPriceDTO dto = parseStockData(stockData, symbol, companyName != null ? companyName : symbol);
+            if (dto.getPrice() == null) {
+                LOGGER.warn("No closing price in marketstack data for: " + symbol);
+                return null;
             }
-            
-            if (stockData.has("high")) {
-                dto.setDayHigh(new BigDecimal(stockData.get("high").getAsString()));
+
+            LOGGER.info("Successfully parsed marketstack data for: " + symbol);
+            return dto;
+        } catch (IllegalStateException | NumberFormatException | JsonSyntaxException e) {
+            throw new IOException("Invalid marketstack response for symbol: " + symbol, e);
+        }
+    }
+    
+    Map<String, StockPriceDTO> parseMarketstackBatchResponse(String jsonResponse, LocalDate since) {
+        Map<String, StockPriceDTO> results = new LinkedHashMap<>();
+        try {
+            JsonObject json = JsonParser.parseString(jsonResponse).getAsJsonObject();
+
+            if (json.has("error")) {
+                LOGGER.warn("Error in marketstack response: " + json.get("error"));
+                return results;
             }
-            
-            if (stockData.has("low")) {
-                dto.setDayLow(new BigDecimal(stockData.get("low").getAsString()));
+
+            JsonArray dataArray = json.getAsJsonArray("data");
+            if (dataArray == null) {
+                return results;
             }
-            
-            if (stockData.has("volume")) {
+
+            for (int i = 0; i < dataArray.size(); i++) {
+                JsonObject stockData = dataArray.get(i).getAsJsonObject();
+                if (!stockData.has("symbol") || stockData.get("symbol").isJsonNull()) {
+                    continue;
+                }
+                String symbol = stockData.get("symbol").getAsString().toUpperCase();
+                if (results.containsKey(symbol)) {
+                    continue;
+                }
+                if (since != null) {
+                    LocalDate date = getDate(stockData);
+                    if (date == null || date.isBefore(since)) {
+                        LOGGER.debug("No end-of-day marketstack data since " + since + " for: " + symbol);
+                        continue;
+                    }
+                }
                 try {
-                    dto.setVolume(stockData.get("volume").getAsLong());
+                    String companyName = tickerMetadataService.getCompanyName(symbol);
+                    StockPriceDTO dto = parseStockData(stockData, symbol, companyName != null ? companyName : symbol);
+                    if (dto.getPrice() == null) {
+                        LOGGER.warn("No closing price in marketstack data for: " + symbol);
+                        continue;
+                    }
+                    // A single bar has no previous close; leave the stock's daily change as it is
+                    dto.setPreviousClose(null);
+                    results.put(symbol, dto);
                 } catch (NumberFormatException e) {
-                    LOGGER.debug("Could not parse volume");
+                    LOGGER.warn("Could not parse marketstack data for: " + symbol);
                 }
             }
-            
-            dto.setAsk(dto.getPrice());
-            dto.setBid(dto.getPrice());
-            dto.setYearHigh(dto.getDayHigh());
-            dto.setYearLow(dto.getDayLow());
-            dto.setPreviousClose(dto.getPrice());
 
-            LOGGER.info("Successfully parsed marketstack data for: " + symbol);
-            return dto;
-        } catch (NumberFormatException | JsonSyntaxException e) {
+            LOGGER.info("Successfully parsed marketstack data for " + results.size() + " symbols");
+        } catch (IllegalStateException | JsonSyntaxException e) {
             LOGGER.error("Error parsing marketstack response", e);
-            return null;
         }
+        return results;
     }
-    
-    private String fetchCompanyName(String symbol) {
-        try {
-            String url = apiUrl + "/tickers/" + symbol + "?access_key=" + apiKey;
-            LOGGER.debug("Fetching company name for symbol: " + symbol);
-            
-            String response = makeHttpRequest(url);
-            
-            if (response == null || response.isEmpty()) {
-                LOGGER.debug("Empty response when fetching company name for: " + symbol);
-                return null;
-            }
 
-            JsonObject json = JsonParser.parseString(response).getAsJsonObject();
-            
-            if (json.has("data")) {
-                JsonObject data = json.getAsJsonObject("data");
-                if (data.has("name")) {
-                    String name = data.get("name").getAsString();
-                    LOGGER.debug("Company name found: " + name);
-                    return name;
-                }
+    private StockPriceDTO parseStockData(JsonObject stockData, String symbol, String companyName) {
+        StockPriceDTO dto = new StockPriceDTO();
+        dto.setSymbol(symbol);
+        dto.setName(companyName);
+        
+        dto.setOpen(getDecimal(stockData, "open"));
+        dto.setPrice(getDecimal(stockData, "close"));
+        dto.setDayHigh(getDecimal(stockData, "high"));
+        dto.setDayLow(getDecimal(stockData, "low"));
+        
+        if (stockData.has("volume") && !stockData.get("volume").isJsonNull()) {
+            try {
+                dto.setVolume(stockData.get("volume").getAsLong());
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Could not parse volume");
             }
-            
+        }
+        
+        dto.setAsk(dto.getPrice());
+        dto.setBid(dto.getPrice());
+        dto.setYearHigh(dto.getDayHigh());
+        dto.setYearLow(dto.getDayLow());
+        dto.setPreviousClose(dto.getPrice());
+        return dto;
+    }
+
+    /**
+     * Returns a numeric field, or null if it is missing or null (Marketstack sends null for unknown values).
+     */
+    private static BigDecimal getDecimal(JsonObject json, String field) {
+        JsonElement element = json.get(field);
+        return (element != null && !element.isJsonNull()) ? new BigDecimal(element.getAsString()) : null;
+    }
+
+    /**
+     * Returns the trading day of a bar (sent as an ISO timestamp, e.g. "2024-04-30T00:00:00+0000"), or null if it is missing or invalid.
+     */
+    private static LocalDate getDate(JsonObject json) {
+        JsonElement element = json.get("date");
+        if (element == null || element.isJsonNull()) {
             return null;
-        } catch (Exception e) {
-            LOGGER.debug("Error fetching company name for symbol: " + symbol, e);
+        }
+        String value = element.getAsString();
+        try {
+            return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value);
+        } catch (DateTimeParseException e) {
             return null;
         }
     }
-    
+
     public void clearCache() {
         cache.clear();
         LOGGER.info("Marketstack cache cleared");
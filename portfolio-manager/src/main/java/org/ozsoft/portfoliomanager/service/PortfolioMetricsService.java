@@ -0,0 +1,225 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.domain.Position;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.repository.TransactionRepository;
+
+/**
+ * Keeps the metrics stored with each user's portfolio up to date. Transaction writes and price updates mark the
+ * affected users, and their metrics are saved in batches each flush interval, so reading the summary is a single row.
+ * After a transaction write the metrics are recomputed from the user's portfolio; after a price update only the
+ * value-dependent metrics are updated, from the open positions recorded at the last recomputation.
+ */
+@Service
+public class PortfolioMetricsService {
+
+    private static final Logger LOGGER = LogManager.getLogger(PortfolioMetricsService.class);
+
+    @Value("${portfolio.metrics.flush-seconds:5}")
+    private long flushSeconds;
+
+    @Value("${portfolio.metrics.batch-size:100}")
+    private int batchSize;
+
+    @Autowired
+    private UserPortfolioService userPortfolioService;
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private QuoteBus quoteBus;
+
+    /** Users whose metrics must be recomputed. */
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    /** Users whose value must be updated after a price change. */
+    private final Set<Long> repricedUsers = ConcurrentHashMap.newKeySet();
+
+    /** Users with an open position in each symbol. */
+    private final Map<String, Set<Long>> holders = new ConcurrentHashMap<>();
+
+    /** Number of shares of each user's open positions, as last computed. */
+    private final Map<Long, Map<String, BigDecimal>> userHoldings = new ConcurrentHashMap<>();
+
+    /** Last known price of each held symbol. */
+    private final Map<String, BigDecimal> prices = new ConcurrentHashMap<>();
+
+    private final Consumer<StockPriceDTO> quoteListener = this::onQuote;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "portfolio-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        // Listens to all quotes without subscribing, so the held symbols are not streamed because of this
+        quoteBus.addListener(quoteListener);
+        scheduler.execute(this::markAllUsers);
+        scheduler.scheduleWithFixedDelay(this::flush, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        quoteBus.removeListener(quoteListener);
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Marks a user's metrics for recomputation after one of their transactions was written.
+     */
+    @EventListener
+    public void onTransactionsChanged(TransactionsChangedEvent event) {
+        dirtyUsers.add(event.getUserId());
+    }
+
+    /**
+     * Saves the metrics of the marked users, one batch of users at a time. Recomputed portfolios are only peeked at,
+     * so this does not keep them in memory; repriced users do not need their portfolio at all.
+     */
+    void flush() {
+        List<Long> userIds = new ArrayList<>(dirtyUsers);
+        dirtyUsers.removeAll(userIds);
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            List<Long> batch = userIds.subList(from, Math.min(from + batchSize, userIds.size()));
+            try {
+                Map<Long, Portfolio> portfolios = new LinkedHashMap<>();
+                for (Long userId : batch) {
+                    // Recomputed anyway
+                    repricedUsers.remove(userId);
+                    Portfolio portfolio = userPortfolioService.peekPortfolio(userId);
+                    updateHoldings(userId, portfolio);
+                    portfolios.put(userId, portfolio);
+                }
+                portfolioService.updatePortfolioMetrics(portfolios);
+                LOGGER.debug("Updated portfolio metrics of " + batch.size() + " users");
+            } catch (Exception e) {
+                LOGGER.error("Could not update portfolio metrics", e);
+                dirtyUsers.addAll(batch);
+            }
+        }
+
+        userIds = new ArrayList<>(repricedUsers);
+        repricedUsers.removeAll(userIds);
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            List<Long> batch = userIds.subList(from, Math.min(from + batchSize, userIds.size()));
+            try {
+                Map<Long, BigDecimal> values = new LinkedHashMap<>();
+                for (Long userId : batch) {
+                    Map<String, BigDecimal> holdings = userHoldings.get(userId);
+                    if (holdings != null) {
+                        values.put(userId, getValue(holdings));
+                    } else {
+                        // Not computed yet
+                        dirtyUsers.add(userId);
+                    }
+                }
+                if (!values.isEmpty()) {
+                    portfolioService.updatePortfolioValues(values);
+                    LOGGER.debug("Updated portfolio values of " + values.size() + " users");
+                }
+            } catch (Exception e) {
+                LOGGER.error("Could not update portfolio values", e);
+                repricedUsers.addAll(batch);
+            }
+        }
+    }
+
+    private void markAllUsers() {
+        try {
+            // Bring all stored metrics up to date once, which also records the users' open positions
+            dirtyUsers.addAll(transactionRepository.findUserIds());
+            LOGGER.info("Tracking portfolio metrics for " + dirtyUsers.size() + " users");
+        } catch (Exception e) {
+            LOGGER.error("Could not read the users with transactions", e);
+        }
+    }
+
+    private void onQuote(StockPriceDTO quote) {
+        String symbol = quote.getSymbol().trim().toUpperCase();
+        Set<Long> users = holders.get(symbol);
+        if (users != null && quote.getPrice() != null) {
+            prices.put(symbol, quote.getPrice());
+            repricedUsers.addAll(users);
+        }
+    }
+
+    private BigDecimal getValue(Map<String, BigDecimal> holdings) {
+        BigDecimal value = BigDecimal.ZERO;
+        for (Map.Entry<String, BigDecimal> entry : holdings.entrySet()) {
+            BigDecimal price = prices.get(entry.getKey());
+            if (price != null) {
+                value = value.add(entry.getValue().multiply(price, MathContext.DECIMAL64));
+            }
+        }
+        return value;
+    }
+
+    private void updateHoldings(Long userId, Portfolio portfolio) {
+        Map<String, BigDecimal> holdings = new HashMap<>();
+        for (Position position : portfolio.getPositions()) {
+            if (position.getNoOfShares().signum() > 0) {
+                // Keyed like the quotes, since older transactions may have lower-case or padded symbols
+                String symbol = position.getStock().getSymbol().trim().toUpperCase();
+                holdings.merge(symbol, position.getNoOfShares(), BigDecimal::add);
+                BigDecimal price = position.getStock().getPrice();
+                if (price != null && price.signum() > 0) {
+                    prices.put(symbol, price);
+                }
+            }
+        }
+        Map<String, BigDecimal> previous = userHoldings.put(userId, holdings);
+        if (previous != null) {
+            for (String symbol : previous.keySet()) {
+                if (!holdings.containsKey(symbol)) {
+                    removeHolder(symbol, userId);
+                }
+            }
+        }
+        for (String symbol : holdings.keySet()) {
+            addHolder(symbol, userId);
+        }
+    }
+
+    private void addHolder(String symbol, Long userId) {
+        holders.computeIfAbsent(symbol, key -> ConcurrentHashMap.newKeySet()).add(userId);
+    }
+
+    private void removeHolder(String symbol, Long userId) {
+        holders.computeIfPresent(symbol, (key, users) -> {
+            users.remove(userId);
+            if (users.isEmpty()) {
+                prices.remove(key);
+                return null;
+            }
+            return users;
+        });
+    }
+}
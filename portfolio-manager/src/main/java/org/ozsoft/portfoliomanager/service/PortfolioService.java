@@ -2,14 +2,22 @@ package org.ozsoft.portfoliomanager.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
 import org.ozsoft.portfoliomanager.entity.PortfolioEntity;
 import org.ozsoft.portfoliomanager.repository.PortfolioRepository;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class PortfolioService {
 
+    private static final String DEFAULT_NAME = "Default Portfolio";
+
     @Autowired
     private PortfolioRepository portfolioRepository;
 
@@ -24,7 +32,7 @@ public class PortfolioService {
     }
 
     private PortfolioEntity createDefaultPortfolio(Long userId) {
-        PortfolioEntity portfolio = new PortfolioEntity(userId, "Default Portfolio");
+        PortfolioEntity portfolio = new PortfolioEntity(userId, DEFAULT_NAME);
         return portfolioRepository.save(portfolio);
     }
 
@@ -43,6 +51,52 @@ public class PortfolioService {
         return portfolioRepository.save(portfolio);
     }
 
+    /**
+     * Stores the metrics of several users' portfolios, reading and writing their rows in one batch.
+     */
+    @Transactional
+    public void updatePortfolioMetrics(Map<Long, Portfolio> portfolios) {
+        Map<Long, PortfolioEntity> entities = new HashMap<>();
+        for (PortfolioEntity entity : portfolioRepository.findByUserIdIn(portfolios.keySet())) {
+            entities.put(entity.getUserId(), entity);
+        }
+        List<PortfolioEntity> changed = new ArrayList<>();
+        for (Map.Entry<Long, Portfolio> entry : portfolios.entrySet()) {
+            PortfolioEntity entity = entities.get(entry.getKey());
+            if (entity == null) {
+                entity = new PortfolioEntity(entry.getKey(), DEFAULT_NAME);
+            }
+            Portfolio portfolio = entry.getValue();
+            entity.setCurrentCost(portfolio.getCurrentCost());
+            entity.setCurrentValue(portfolio.getCurrentValue());
+            entity.setTotalCost(portfolio.getTotalCost());
+            entity.setAnnualIncome(portfolio.getAnnualIncome());
+            entity.setTotalIncome(portfolio.getTotalIncome());
+            entity.setRealizedResult(portfolio.getRealizedResult());
+            entity.setTotalReturn(portfolio.getTotalReturn());
+            changed.add(entity);
+        }
+        portfolioRepository.saveAll(changed);
+    }
+
+    /**
+     * Stores the current value of several users' portfolios after a price change, adjusting their total return
+     * (which includes the current value) by the same amount. Users without stored metrics are skipped.
+     */
+    @Transactional
+    public void updatePortfolioValues(Map<Long, BigDecimal> values) {
+        List<PortfolioEntity> changed = new ArrayList<>();
+        for (PortfolioEntity entity : portfolioRepository.findByUserIdIn(values.keySet())) {
+            BigDecimal value = values.get(entity.getUserId());
+            BigDecimal previousValue = (entity.getCurrentValue() != null) ? entity.getCurrentValue() : BigDecimal.ZERO;
+            BigDecimal totalReturn = (entity.getTotalReturn() != null) ? entity.getTotalReturn() : BigDecimal.ZERO;
+            entity.setTotalReturn(totalReturn.add(value.subtract(previousValue)));
+            entity.setCurrentValue(value);
+            changed.add(entity);
+        }
+        portfolioRepository.saveAll(changed);
+    }
+
     public PortfolioEntity updatePortfolioName(Long userId, String name) {
         PortfolioEntity portfolio = getUserPortfolio(userId);
         portfolio.setName(name);
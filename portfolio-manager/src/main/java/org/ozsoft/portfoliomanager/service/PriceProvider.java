@@ -0,0 +1,20 @@
+package org.ozsoft.portfoliomanager.service;
+
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+
+/**
+ * Upstream source of stock prices.
+ */
+public interface PriceProvider {
+
+    String getName();
+
+    /**
+     * Fetches the current price of a stock.
+     * 
+     * @return The price, or {@code null} if the provider does not know the symbol.
+     * 
+     * @throws Exception If the provider could not be reached or returned an error.
+     */
+    StockPriceDTO fetch(String symbol) throws Exception;
+}
@@ -0,0 +1,305 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.domain.Configuration;
+import org.ozsoft.portfoliomanager.domain.Exchange;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.entity.TickerMetadataEntity;
+import org.ozsoft.portfoliomanager.repository.TransactionRepository;
+
+/**
+ * Keeps the prices of all tracked and owned stocks warm in the background.
+ * 
+ * Every cycle refreshes the symbols whose exchange is currently open, plus any symbol that has not been
+ * refreshed since its exchange last closed (so the closing price is picked up once). Outside trading
+ * hours, on weekends and on configured holidays nothing is fetched. Symbols due only for their closing price
+ * are fetched in bulk as end-of-day prices through {@link MarketstackService#refreshEndOfDayPrices}, grouped
+ * by trading day; the others (and closing prices not yet published) are fetched as real-time quotes through
+ * {@link StockAPIService#refreshStockPrices(java.util.Collection)}. A symbol that
+ * could not be fetched is retried with an exponentially growing delay, so failing symbols are not fetched on
+ * every cycle. Updated tracked stocks are marked as changed, so they are included in the next save of the
+ * configuration (prices are fetched again after a restart anyway).
+ */
+@Service
+public class PriceRefreshService {
+
+    private static final Logger LOGGER = LogManager.getLogger(PriceRefreshService.class);
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    @Value("${refresh.enabled:true}")
+    private boolean enabled;
+
+    @Value("${refresh.interval-minutes:5}")
+    private long intervalMinutes;
+
+    @Value("${refresh.default-exchange:NSE}")
+    private String defaultExchangeName;
+
+    @Value("${refresh.holidays:}")
+    private String holidaysProperty;
+
+    @Value("${refresh.max-backoff-minutes:60}")
+    private long maxBackoffMinutes;
+
+    @Autowired
+    private StockAPIService stockAPIService;
+
+    @Autowired
+    private MarketstackService marketstackService;
+
+    @Autowired
+    private TickerMetadataService tickerMetadataService;
+
+    @Autowired
+    private QuoteBus quoteBus;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private final Map<String, ZonedDateTime> lastRefreshTimes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> failureCounts = new ConcurrentHashMap<>();
+    private final Map<String, Integer> cyclesToSkip = new ConcurrentHashMap<>();
+    private final Map<Exchange, Set<LocalDate>> holidays = new EnumMap<>(Exchange.class);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "price-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Exchange defaultExchange;
+
+    @PostConstruct
+    public void init() {
+        defaultExchange = Exchange.fromName(defaultExchangeName);
+        parseHolidays(holidaysProperty);
+        if (enabled) {
+            scheduler.scheduleAtFixedRate(this::refresh, 0L, intervalMinutes, TimeUnit.MINUTES);
+            LOGGER.info("Background price refresh scheduled every " + intervalMinutes + " minutes");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    void refresh() {
+        try {
+            ZonedDateTime now = ZonedDateTime.now();
+            List<String> dueSymbols = new ArrayList<>();
+            for (String symbol : getSymbols()) {
+                if (isDue(symbol, now)) {
+                    dueSymbols.add(symbol);
+                }
+            }
+            if (dueSymbols.isEmpty()) {
+                LOGGER.debug("No stock prices due for refresh");
+                return;
+            }
+
+            Configuration config = Configuration.getInstance();
+            Map<String, StockPriceDTO> prices = fetchPrices(dueSymbols, now);
+            ZonedDateTime refreshTime = ZonedDateTime.now();
+            int updatedCount = 0;
+            for (String symbol : dueSymbols) {
+                StockPriceDTO price = prices.get(symbol.trim().toUpperCase());
+                if (price == null || price.isSynthetic() || price.isStale()) {
+                    backOff(symbol);
+                    continue;
+                }
+                lastRefreshTimes.put(symbol, refreshTime);
+                failureCounts.remove(symbol);
+                cyclesToSkip.remove(symbol);
+                quoteBus.publish(price);
+                // The stocks are shared with the UI and web threads, which read them under the configuration's lock
+                synchronized (config) {
+                    Stock stock = config.getStock(symbol);
+                    if (updateStock(stock, price)) {
+                        config.updateStock(stock);
+                        updatedCount++;
+                    }
+                }
+            }
+            LOGGER.info("Background refresh: " + prices.size() + " of " + dueSymbols.size() + " symbols fetched, " + updatedCount
+                    + " tracked stocks updated");
+        } catch (Exception e) {
+            LOGGER.error("Error during background price refresh", e);
+        }
+    }
+
+    /**
+     * Fetches the prices of the due symbols, those of closed exchanges as end-of-day prices in bulk.
+     */
+    private Map<String, StockPriceDTO> fetchPrices(List<String> symbols, ZonedDateTime now) {
+        Map<LocalDate, List<String>> closingSymbols = new TreeMap<>();
+        List<String> liveSymbols = new ArrayList<>();
+        for (String symbol : symbols) {
+            LocalDate closingDate = getClosingDate(symbol, now);
+            if (closingDate != null) {
+                closingSymbols.computeIfAbsent(closingDate, date -> new ArrayList<>()).add(symbol);
+            } else {
+                liveSymbols.add(symbol);
+            }
+        }
+
+        Map<String, StockPriceDTO> prices = new HashMap<>();
+        for (Map.Entry<LocalDate, List<String>> entry : closingSymbols.entrySet()) {
+            prices.putAll(marketstackService.refreshEndOfDayPrices(entry.getValue(), entry.getKey()));
+            for (String symbol : entry.getValue()) {
+                if (!prices.containsKey(symbol.trim().toUpperCase())) {
+                    liveSymbols.add(symbol);
+                }
+            }
+        }
+        if (!liveSymbols.isEmpty()) {
+            prices.putAll(stockAPIService.refreshStockPrices(liveSymbols));
+        }
+        return prices;
+    }
+
+    private Set<String> getSymbols() {
+        Set<String> symbols = new TreeSet<>();
+        for (Stock stock : Configuration.getInstance().getStocks()) {
+            symbols.add(stock.getSymbol());
+        }
+        try {
+            for (String symbol : transactionRepository.findDistinctSymbols()) {
+                if (symbol != null && !symbol.trim().isEmpty()) {
+                    symbols.add(symbol.trim().toUpperCase());
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not read owned symbols from database", e);
+        }
+        return symbols;
+    }
+
+    private boolean isDue(String symbol, ZonedDateTime now) {
+        Integer skip = cyclesToSkip.get(symbol);
+        if (skip != null && skip > 0) {
+            cyclesToSkip.put(symbol, skip - 1);
+            return false;
+        }
+        Exchange exchange = getExchange(symbol);
+        Set<LocalDate> exchangeHolidays = getHolidays(exchange);
+        if (exchange.isOpen(now, exchangeHolidays)) {
+            return true;
+        }
+        ZonedDateTime lastRefresh = lastRefreshTimes.get(symbol);
+        if (lastRefresh == null) {
+            return true;
+        }
+        ZonedDateTime lastClose = exchange.getLastClose(now, exchangeHolidays);
+        return lastClose != null && lastRefresh.isBefore(lastClose);
+    }
+
+    /**
+     * Returns the trading day whose closing price a symbol is due for, or null if its exchange is open.
+     */
+    private LocalDate getClosingDate(String symbol, ZonedDateTime now) {
+        Exchange exchange = getExchange(symbol);
+        Set<LocalDate> exchangeHolidays = getHolidays(exchange);
+        if (exchange.isOpen(now, exchangeHolidays)) {
+            return null;
+        }
+        ZonedDateTime lastClose = exchange.getLastClose(now, exchangeHolidays);
+        return (lastClose != null) ? lastClose.toLocalDate() : null;
+    }
+
+    /**
+     * Delays the next attempt for a symbol that could not be fetched. The delay starts at one cycle and
+     * doubles with every consecutive failure, up to the maximum backoff.
+     */
+    private void backOff(String symbol) {
+        int failures = failureCounts.merge(symbol, 1, Integer::sum);
+        long maxCycles = Math.max(maxBackoffMinutes / Math.max(intervalMinutes, 1L), 1L);
+        long cycles = Math.min(1L << Math.min(failures - 1, 16), maxCycles);
+        cyclesToSkip.put(symbol, (int) cycles - 1);
+        LOGGER.debug("Could not refresh " + symbol + " (" + failures + " consecutive failures), retrying in " + cycles + " cycles");
+    }
+
+    private Exchange getExchange(String symbol) {
+        TickerMetadataEntity metadata = tickerMetadataService.getMetadata(symbol);
+        if (metadata != null) {
+            Exchange exchange = Exchange.fromName(metadata.getExchange());
+            if (exchange != Exchange.UNKNOWN) {
+                return exchange;
+            }
+        }
+        return defaultExchange;
+    }
+
+    private Set<LocalDate> getHolidays(Exchange exchange) {
+        Set<LocalDate> exchangeHolidays = holidays.get(exchange);
+        return (exchangeHolidays != null) ? exchangeHolidays : Collections.emptySet();
+    }
+
+    private static boolean updateStock(Stock stock, StockPriceDTO price) {
+        if (stock == null || price.getPrice() == null || price.getPrice().compareTo(stock.getPrice()) == 0) {
+            return false;
+        }
+        stock.setPrice(price.getPrice());
+        BigDecimal previousClose = price.getPreviousClose();
+        if (previousClose != null && previousClose.signum() > 0) {
+            stock.setChangePerc(price.getPrice().subtract(previousClose).multiply(HUNDRED).divide(previousClose, 2, RoundingMode.HALF_UP));
+        }
+        return true;
+    }
+
+    /**
+     * Parses holidays as a comma-separated list of ISO dates, each optionally prefixed with an exchange
+     * (e.g. "NSE:2026-01-26,2026-12-25"); dates without prefix apply to all exchanges.
+     */
+    private void parseHolidays(String value) {
+        for (Exchange exchange : Exchange.values()) {
+            holidays.put(exchange, new HashSet<>());
+        }
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            try {
+                int p = entry.indexOf(':');
+                if (p > 0) {
+                    holidays.get(Exchange.fromName(entry.substring(0, p))).add(LocalDate.parse(entry.substring(p + 1).trim()));
+                } else {
+                    LocalDate date = LocalDate.parse(entry);
+                    for (Set<LocalDate> exchangeHolidays : holidays.values()) {
+                        exchangeHolidays.add(date);
+                    }
+                }
+            } catch (DateTimeParseException e) {
+                LOGGER.warn("Ignoring invalid holiday: " + entry);
+            }
+        }
+    }
+}
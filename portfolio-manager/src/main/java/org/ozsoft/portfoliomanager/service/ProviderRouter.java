@@ -0,0 +1,238 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ozsoft.portfoliomanager.dto.ProviderStatsDTO;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.util.CircuitBreaker;
+import org.ozsoft.portfoliomanager.util.LatencyStats;
+
+/**
+ * Routes price lookups to a primary provider with a fallback.
+ * 
+ * Each provider has a circuit breaker, so a provider that keeps failing is skipped without waiting for
+ * its timeouts, and rolling latency statistics. If the primary has not answered within its p95 latency,
+ * the fallback is started as a hedge and the first real answer wins. When the thread pool is saturated
+ * the providers are called one after the other on the caller's thread, without hedging (a hedge that cannot be started calls
+ * the fallback on the caller's thread as well).
+ */
+public class ProviderRouter {
+
+    private static final Logger LOGGER = LogManager.getLogger(ProviderRouter.class);
+    private static final int STATS_WINDOW_SIZE = 200;
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    private final Route primary;
+    private final Route fallback;
+    private final long minHedgeDelayMillis;
+    private final long maxHedgeDelayMillis;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+
+    public ProviderRouter(PriceProvider primary, PriceProvider fallback, int failureThreshold, long openDurationSeconds,
+            long minHedgeDelayMillis, long maxHedgeDelayMillis, long timeoutMillis, int threadCount) {
+        this.primary = new Route(primary, failureThreshold, openDurationSeconds);
+        this.fallback = new Route(fallback, failureThreshold, openDurationSeconds);
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        this.maxHedgeDelayMillis = maxHedgeDelayMillis;
+        this.timeoutMillis = timeoutMillis;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "price-provider-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * Fetches the current price of a stock from the first provider that knows it.
+     * 
+     * @return The price, or {@code null} if no provider returned one.
+     */
+    public StockPriceDTO fetch(String symbol) {
+        if (!primary.breaker.allowRequest()) {
+            primary.shortCircuitCount.incrementAndGet();
+            LOGGER.debug("Circuit for " + primary.getName() + " is open, using " + fallback.getName() + " for: " + symbol);
+            return fetchFallback(symbol);
+        }
+
+        CompletableFuture<StockPriceDTO> primaryResult;
+        try {
+            primaryResult = call(primary, symbol);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("No thread available, calling " + primary.getName() + " without hedge for: " + symbol);
+            StockPriceDTO result = invokeQuietly(primary, symbol);
+            return (result != null) ? result : fetchFallback(symbol);
+        }
+        try {
+            StockPriceDTO result = primaryResult.get(getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+            return (result != null) ? result : fetchFallback(symbol);
+        } catch (ExecutionException e) {
+            return fetchFallback(symbol);
+        } catch (TimeoutException e) {
+            LOGGER.debug(primary.getName() + " is slow, hedging with " + fallback.getName() + " for: " + symbol);
+            return hedge(symbol, primaryResult);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    public List<ProviderStatsDTO> getStats() {
+        List<ProviderStatsDTO> stats = new ArrayList<>();
+        stats.add(primary.getStats());
+        stats.add(fallback.getStats());
+        return stats;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private long getHedgeDelayMillis() {
+        if (primary.stats.getSampleCount() < MIN_HEDGE_SAMPLES) {
+            return maxHedgeDelayMillis;
+        }
+        long p95 = primary.stats.getPercentileMillis(95.0);
+        if (p95 < 0L) {
+            return maxHedgeDelayMillis;
+        }
+        return Math.max(minHedgeDelayMillis, Math.min(maxHedgeDelayMillis, p95));
+    }
+
+    private StockPriceDTO hedge(String symbol, CompletableFuture<StockPriceDTO> primaryResult) {
+        if (!fallback.breaker.allowRequest()) {
+            fallback.shortCircuitCount.incrementAndGet();
+            return await(primaryResult);
+        }
+        fallback.hedgeCount.incrementAndGet();
+        CompletableFuture<StockPriceDTO> fallbackResult;
+        try {
+            fallbackResult = call(fallback, symbol);
+        } catch (RejectedExecutionException e) {
+            // The request was allowed, so the fallback must be called to record its outcome (and release a trial request)
+            StockPriceDTO result = invokeQuietly(fallback, symbol);
+            return (result != null) ? result : await(primaryResult);
+        }
+
+        // Complete with the first real price, or with null once both have answered without one
+        CompletableFuture<StockPriceDTO> first = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        for (CompletableFuture<StockPriceDTO> result : Arrays.asList(primaryResult, fallbackResult)) {
+            result.whenComplete((value, error) -> {
+                if (value != null) {
+                    first.complete(value);
+                } else if (remaining.decrementAndGet() == 0) {
+                    first.complete(null);
+                }
+            });
+        }
+        return await(first);
+    }
+
+    private StockPriceDTO fetchFallback(String symbol) {
+        if (!fallback.breaker.allowRequest()) {
+            fallback.shortCircuitCount.incrementAndGet();
+            return null;
+        }
+        try {
+            return await(call(fallback, symbol));
+        } catch (RejectedExecutionException e) {
+            return invokeQuietly(fallback, symbol);
+        }
+    }
+
+    private StockPriceDTO await(CompletableFuture<StockPriceDTO> result) {
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Calls a provider on the thread pool.
+     * 
+     * @throws RejectedExecutionException If the thread pool is saturated.
+     */
+    private CompletableFuture<StockPriceDTO> call(final Route route, final String symbol) {
+        return CompletableFuture.supplyAsync(() -> invoke(route, symbol), executor);
+    }
+
+    /**
+     * Calls a provider on the current thread, returning null if it failed.
+     */
+    private StockPriceDTO invokeQuietly(Route route, String symbol) {
+        try {
+            return invoke(route, symbol);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private StockPriceDTO invoke(Route route, String symbol) {
+        long startTime = System.nanoTime();
+        try {
+            StockPriceDTO result = route.provider.fetch(symbol);
+            route.stats.record(System.nanoTime() - startTime, true);
+            route.breaker.recordSuccess();
+            return result;
+        } catch (Exception e) {
+            route.stats.record(System.nanoTime() - startTime, false);
+            route.breaker.recordFailure();
+            LOGGER.warn(route.getName() + " failed for " + symbol + ": " + e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Route {
+
+        private final PriceProvider provider;
+        private final CircuitBreaker breaker;
+        private final LatencyStats stats = new LatencyStats(STATS_WINDOW_SIZE);
+        private final AtomicLong shortCircuitCount = new AtomicLong();
+        private final AtomicLong hedgeCount = new AtomicLong();
+
+        private Route(PriceProvider provider, int failureThreshold, long openDurationSeconds) {
+            this.provider = provider;
+            this.breaker = new CircuitBreaker(failureThreshold, openDurationSeconds, TimeUnit.SECONDS);
+        }
+
+        private String getName() {
+            return provider.getName();
+        }
+
+        private ProviderStatsDTO getStats() {
+            ProviderStatsDTO dto = new ProviderStatsDTO();
+            dto.setName(getName());
+            dto.setCircuitState(breaker.getState().name());
+            dto.setRequestCount(stats.getTotalCount());
+            dto.setFailureCount(stats.getTotalFailureCount());
+            dto.setShortCircuitCount(shortCircuitCount.get());
+            dto.setHedgeCount(hedgeCount.get());
+            dto.setErrorRate(stats.getErrorRate());
+            dto.setP50Millis(stats.getPercentileMillis(50.0));
+            dto.setP95Millis(stats.getPercentileMillis(95.0));
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+
+/**
+ * In-process publish/subscribe channel for price updates, keyed by symbol.
+ * 
+ * Bus-wide listeners receive the quotes of all symbols, but do not count as subscribers: only subscribed
+ * symbols are refreshed by the price streams.
+ */
+@Service
+public class QuoteBus {
+
+    private static final Logger LOGGER = LogManager.getLogger(QuoteBus.class);
+
+    private final ConcurrentHashMap<String, Set<Consumer<StockPriceDTO>>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StockPriceDTO> lastQuotes = new ConcurrentHashMap<>();
+    private final Set<Consumer<StockPriceDTO>> busListeners = new CopyOnWriteArraySet<>();
+
+    public void subscribe(String symbol, Consumer<StockPriceDTO> listener) {
+        subscribers.computeIfAbsent(normalize(symbol), key -> new CopyOnWriteArraySet<>()).add(listener);
+    }
+
+    public void unsubscribe(String symbol, Consumer<StockPriceDTO> listener) {
+        String key = normalize(symbol);
+        subscribers.computeIfPresent(key, (k, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+        if (!subscribers.containsKey(key)) {
+            lastQuotes.remove(key);
+        }
+    }
+
+    /**
+     * Adds a listener for the quotes of all symbols, without subscribing to any symbol.
+     */
+    public void addListener(Consumer<StockPriceDTO> listener) {
+        busListeners.add(listener);
+    }
+
+    public void removeListener(Consumer<StockPriceDTO> listener) {
+        busListeners.remove(listener);
+    }
+
+    public Set<String> getSubscribedSymbols() {
+        return subscribers.keySet();
+    }
+
+    public StockPriceDTO getLastQuote(String symbol) {
+        return lastQuotes.get(normalize(symbol));
+    }
+
+    /**
+     * Publishes a quote to the subscribers of its symbol and the bus-wide listeners, unless its price did not change
+     * since the last one. The last quote is only kept for subscribed symbols.
+     */
+    public void publish(StockPriceDTO quote) {
+        if (quote == null || quote.getSymbol() == null || quote.isSynthetic()) {
+            return;
+        }
+
+        String key = normalize(quote.getSymbol());
+        Set<Consumer<StockPriceDTO>> listeners = subscribers.get(key);
+        if (listeners != null) {
+            StockPriceDTO previous = lastQuotes.put(key, quote);
+            if (previous != null && previous.getPrice() != null && quote.getPrice() != null && previous.getPrice().compareTo(quote.getPrice()) == 0) {
+                return;
+            }
+            notify(listeners, quote, key);
+        }
+        notify(busListeners, quote, key);
+    }
+
+    private static void notify(Set<Consumer<StockPriceDTO>> listeners, StockPriceDTO quote, String key) {
+        for (Consumer<StockPriceDTO> listener : listeners) {
+            try {
+                listener.accept(quote);
+            } catch (Exception e) {
+                LOGGER.debug("Quote listener failed for: " + key, e);
+            }
+        }
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+}
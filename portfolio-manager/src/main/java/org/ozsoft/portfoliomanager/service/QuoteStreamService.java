@@ -0,0 +1,167 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.ozsoft.portfoliomanager.domain.Position;
+import org.ozsoft.portfoliomanager.dto.QuoteTickDTO;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+
+/**
+ * Streams price ticks and position values to clients over Server-Sent Events.
+ * 
+ * A single refresh loop fetches real-time quotes for the distinct symbols that any client subscribed to,
+ * bypassing the price cache, and publishes them on the {@link QuoteBus}, which fans them out to the subscribed streams.
+ * Upstream traffic therefore depends on the number of distinct symbols, not on the number of clients.
+ */
+@Service
+public class QuoteStreamService {
+
+    private static final Logger LOGGER = LogManager.getLogger(QuoteStreamService.class);
+
+    @Value("${stream.refresh-interval-seconds:30}")
+    private long refreshIntervalSeconds;
+
+    @Value("${stream.emitter-timeout-minutes:30}")
+    private long emitterTimeoutMinutes;
+
+    @Value("${stream.max-symbols-per-client:50}")
+    private int maxSymbolsPerClient;
+
+    @Autowired
+    private QuoteBus quoteBus;
+
+    @Autowired
+    private StockAPIService stockAPIService;
+
+    @Autowired
+    private UserPortfolioService userPortfolioService;
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quote-stream-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Opens a stream for a user. Without explicit symbols, the stream covers the user's current holdings.
+     * 
+     * @throws IllegalArgumentException If more than the maximum number of distinct symbols is requested.
+     */
+    public SseEmitter subscribe(Long userId, Collection<String> symbols) {
+        Set<String> streamSymbols = new LinkedHashSet<>();
+        if (symbols != null) {
+            for (String symbol : symbols) {
+                if (symbol != null && !symbol.trim().isEmpty()) {
+                    streamSymbols.add(symbol.trim().toUpperCase());
+                }
+            }
+            if (streamSymbols.size() > maxSymbolsPerClient) {
+                throw new IllegalArgumentException("A stream can cover at most " + maxSymbolsPerClient + " symbols");
+            }
+        }
+        Map<String, BigDecimal> holdings = getHoldings(userId);
+        if (streamSymbols.isEmpty()) {
+            streamSymbols.addAll(holdings.keySet());
+        }
+
+        final SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(emitterTimeoutMinutes));
+        final Map<String, Consumer<StockPriceDTO>> listeners = new LinkedHashMap<>();
+        final Runnable unsubscribe = () -> {
+            for (Map.Entry<String, Consumer<StockPriceDTO>> entry : listeners.entrySet()) {
+                quoteBus.unsubscribe(entry.getKey(), entry.getValue());
+            }
+        };
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        for (String symbol : streamSymbols) {
+            final BigDecimal noOfShares = holdings.get(symbol);
+            Consumer<StockPriceDTO> listener = quote -> send(emitter, QuoteTickDTO.fromQuote(quote, noOfShares));
+            listeners.put(symbol, listener);
+            quoteBus.subscribe(symbol, listener);
+        }
+        LOGGER.debug("Opened quote stream for user " + userId + " with " + listeners.size() + " symbols");
+
+        // Send the current quotes right away, from the cache where possible
+        for (String symbol : streamSymbols) {
+            StockPriceDTO quote = quoteBus.getLastQuote(symbol);
+            if (quote != null) {
+                send(emitter, QuoteTickDTO.fromQuote(quote, holdings.get(symbol)));
+            } else {
+                final BigDecimal noOfShares = holdings.get(symbol);
+                stockAPIService.getStockPriceAsync(symbol).thenAccept(price -> {
+                    if (price != null && !price.isSynthetic()) {
+                        send(emitter, QuoteTickDTO.fromQuote(price, noOfShares));
+                    }
+                });
+            }
+        }
+
+        return emitter;
+    }
+
+    void refresh() {
+        try {
+            List<String> symbols = new ArrayList<>(quoteBus.getSubscribedSymbols());
+            if (symbols.isEmpty()) {
+                return;
+            }
+            Map<String, StockPriceDTO> prices = stockAPIService.refreshStockPrices(symbols);
+            for (StockPriceDTO price : prices.values()) {
+                quoteBus.publish(price);
+            }
+            LOGGER.debug("Refreshed " + prices.size() + " of " + symbols.size() + " streamed symbols");
+        } catch (Exception e) {
+            LOGGER.warn("Error refreshing streamed quotes", e);
+        }
+    }
+
+    private Map<String, BigDecimal> getHoldings(Long userId) {
+        Map<String, BigDecimal> holdings = new LinkedHashMap<>();
+        for (Position position : userPortfolioService.getPortfolio(userId).getPositions()) {
+            if (position.getNoOfShares().signum() > 0) {
+                holdings.put(position.getStock().getSymbol(), position.getNoOfShares());
+            }
+        }
+        return holdings;
+    }
+
+    private static void send(SseEmitter emitter, QuoteTickDTO tick) {
+        try {
+            emitter.send(SseEmitter.event().name("tick").data(tick));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the completion callback unsubscribes the stream
+            emitter.completeWithError(e);
+        }
+    }
+}
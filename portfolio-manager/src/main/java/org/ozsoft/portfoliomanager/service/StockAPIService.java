@@ -1,13 +1,37 @@
 package org.ozsoft.portfoliomanager.service;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.domain.Quote;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.dto.ProviderStatsDTO;
 import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.services.QuoteRefreshEngine;
+import org.ozsoft.portfoliomanager.services.downloader.QuoteDownloader;
+import org.ozsoft.portfoliomanager.util.LruCache;
+import org.ozsoft.portfoliomanager.util.SingleFlight;
+import org.ozsoft.portfoliomanager.util.HttpClient;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
@@ -17,7 +41,46 @@ public class StockAPIService {
 
     private static final Logger LOGGER = LogManager.getLogger(StockAPIService.class);
     private static final String PRIMARY_API_URL = "http://localhost:3000/nse/get_quote_info?companyName=";
-    private static final int CACHE_DURATION_MINUTES = 15;
+    private static final String LIVE_QUOTE_PROVIDER = "live-quotes";
+    
+    @Value("${stock.cache.soft-ttl-minutes:15}")
+    private long softTtlMinutes;
+    
+    @Value("${stock.cache.hard-ttl-minutes:240}")
+    private long hardTtlMinutes;
+    
+    @Value("${stock.cache.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+    
+    @Value("${stock.cache.max-size:5000}")
+    private int maxCacheSize;
+    
+    @Value("${stock.lookup.threads:16}")
+    private int lookupThreads;
+    
+    @Value("${stock.provider.failure-threshold:5}")
+    private int failureThreshold;
+    
+    @Value("${stock.provider.open-duration-seconds:30}")
+    private long openDurationSeconds;
+    
+    @Value("${stock.provider.min-hedge-delay-ms:50}")
+    private long minHedgeDelayMillis;
+    
+    @Value("${stock.provider.max-hedge-delay-ms:1000}")
+    private long maxHedgeDelayMillis;
+    
+    @Value("${stock.provider.timeout-ms:10000}")
+    private long providerTimeoutMillis;
+    
+    @Value("${stock.refresh.max-concurrency:4}")
+    private int refreshConcurrency;
+    
+    @Value("${stock.refresh.requests-per-second:5}")
+    private double refreshRequestsPerSecond;
+    
+    @Autowired
+    private CacheRegistry cacheRegistry;
     
     @Autowired
     private MarketstackService marketstackService;
@@ -25,18 +88,79 @@ public class StockAPIService {
     private static class CacheEntry {
         StockPriceDTO data;
         long timestamp;
+        boolean negative;
         
-        CacheEntry(StockPriceDTO data) {
+        CacheEntry(StockPriceDTO data, boolean negative) {
             this.data = data;
             this.timestamp = System.currentTimeMillis();
-        }
-        
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > TimeUnit.MINUTES.toMillis(CACHE_DURATION_MINUTES);
+            this.negative = negative;
         }
     }
     
-    private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private LruCache<String, CacheEntry> cache;
+    private final SingleFlight<String, StockPriceDTO> inFlight = new SingleFlight<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor revalidator = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(1000), runnable -> {
+                Thread thread = new Thread(runnable, "stock-price-revalidator");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+    private ThreadPoolExecutor lookupExecutor;
+    private ProviderRouter providerRouter;
+    private QuoteRefreshEngine refreshEngine;
+    private CachePolicy cachePolicy;
+
+    @PostConstruct
+    public void init() {
+        cachePolicy = new CachePolicy(TimeUnit.MINUTES.toSeconds(softTtlMinutes), TimeUnit.MINUTES.toSeconds(hardTtlMinutes),
+                negativeTtlSeconds, TimeUnit.SECONDS);
+        cache = cacheRegistry.createCache("stock-prices", maxCacheSize);
+        revalidator.allowCoreThreadTimeOut(true);
+        // Lookups that miss the cache run here instead of on the web request thread; when saturated the caller runs them itself
+        lookupExecutor = new ThreadPoolExecutor(lookupThreads, lookupThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stock-price-lookup");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        lookupExecutor.allowCoreThreadTimeOut(true);
+        providerRouter = new ProviderRouter(new PriceProvider() {
+            @Override
+            public String getName() {
+                return "nse";
+            }
+
+            @Override
+            public StockPriceDTO fetch(String symbol) throws Exception {
+                return fetchFromPrimaryAPI(symbol);
+            }
+        }, new PriceProvider() {
+            @Override
+            public String getName() {
+                return "marketstack";
+            }
+
+            @Override
+            public StockPriceDTO fetch(String symbol) throws Exception {
+                return marketstackService.fetchStockPrice(symbol);
+            }
+        }, failureThreshold, openDurationSeconds, minHedgeDelayMillis, maxHedgeDelayMillis, providerTimeoutMillis, lookupThreads);
+        refreshEngine = new QuoteRefreshEngine(refreshConcurrency);
+        refreshEngine.setProviderLimits(LIVE_QUOTE_PROVIDER, refreshConcurrency, refreshRequestsPerSecond);
+    }
+
+    public List<ProviderStatsDTO> getProviderStats() {
+        return providerRouter.getStats();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        revalidator.shutdownNow();
+        lookupExecutor.shutdownNow();
+        providerRouter.shutdown();
+        refreshEngine.shutdown();
+    }
 
     public StockPriceDTO getStockPrice(String symbol) {
         if (symbol == null || symbol.isEmpty()) {
@@ -46,76 +170,186 @@ public class StockAPIService {
         try {
             symbol = symbol.trim().toUpperCase();
             
-            CacheEntry cached = cache.get(symbol);
-            if (cached != null && !cached.isExpired()) {
-                LOGGER.debug("Returning cached stock price for: " + symbol);
-                return cached.data;
-            }
-            
-            LOGGER.debug("Fetching fresh stock price for: " + symbol);
-            StockPriceDTO result = fetchFromPrimaryAPI(symbol);
-            
-            if (result == null) {
-                LOGGER.debug("Primary API returned null, trying marketstack API for: " + symbol);
-                result = marketstackService.getStockPrice(symbol);
+            StockPriceDTO cached = getCachedStockPrice(symbol);
+            if (cached != null) {
+                return cached;
             }
             
-            if (result == null) {
-                result = createDefaultStockPrice(symbol);
-            }
-            
-            if (result != null) {
-                cache.put(symbol, new CacheEntry(result));
-            }
-            
-            return result;
+            final String key = symbol;
+            return inFlight.execute(key, () -> loadStockPrice(key, false, false));
         } catch (Exception e) {
             LOGGER.error("Error fetching stock from API: " + symbol, e);
             return createDefaultStockPrice(symbol);
         }
     }
     
-    private StockPriceDTO fetchFromPrimaryAPI(String symbol) {
-        try {
-            String apiUrl = PRIMARY_API_URL + symbol;
-            LOGGER.debug("Calling primary Stock API for symbol: " + symbol);
-            String response = makeHttpRequest(apiUrl);
-            
-            if (response == null || response.isEmpty()) {
-                LOGGER.warn("Empty response from primary Stock API for symbol: " + symbol);
-                return null;
+    public CompletableFuture<StockPriceDTO> getStockPriceAsync(String symbol) {
+        if (symbol == null || symbol.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final String key = symbol.trim().toUpperCase();
+        StockPriceDTO cached = getCachedStockPrice(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        return CompletableFuture.supplyAsync(() -> getStockPrice(key), lookupExecutor);
+    }
+    
+    /**
+     * Returns the cached price of a stock without blocking, or null if there is none. A stale price is
+     * returned as such and revalidated in the background.
+     */
+    public StockPriceDTO getCachedStockPrice(String symbol) {
+        CacheEntry cached = cache.get(symbol);
+        CachePolicy.State state = (cached != null) ? cachePolicy.getState(cached.timestamp, cached.negative) : CachePolicy.State.EXPIRED;
+        if (state == CachePolicy.State.FRESH) {
+            LOGGER.debug("Returning cached stock price for: " + symbol);
+            return cached.data;
+        } else if (state == CachePolicy.State.STALE) {
+            LOGGER.debug("Returning stale stock price for: " + symbol);
+            scheduleRevalidation(symbol);
+            StockPriceDTO stale = new StockPriceDTO(cached.data);
+            stale.setStale(true);
+            return stale;
+        } else {
+            return null;
+        }
+    }
+    
+    private void scheduleRevalidation(final String symbol) {
+        if (revalidating.add(symbol)) {
+            try {
+                revalidator.execute(() -> {
+                    try {
+                        inFlight.execute(symbol, () -> loadStockPrice(symbol, true, false));
+                    } catch (Exception e) {
+                        LOGGER.warn("Could not revalidate stock price for: " + symbol, e);
+                    } finally {
+                        revalidating.remove(symbol);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                revalidating.remove(symbol);
             }
+        }
+    }
+    
+    /**
+     * Fetches the current price of a stock from the providers, regardless of the cached price, and caches it.
+     * If no provider returns a price, the last real price stays cached until it expires and is returned flagged as
+     * stale, so callers can tell that the refresh failed. A symbol that failed
+     * within the negative TTL is not fetched again; its negative entry is returned instead.
+     */
+    public StockPriceDTO refreshStockPrice(String symbol) {
+        if (symbol == null || symbol.isEmpty()) {
+            return null;
+        }
 
-            return parseStockResponse(response, symbol);
+        final String key = symbol.trim().toUpperCase();
+        try {
+            return inFlight.execute(key, () -> loadStockPrice(key, true, true));
         } catch (Exception e) {
-            LOGGER.warn("Primary API failed for " + symbol + ", attempting marketstack fallback", e);
-            return marketstackService.getStockPrice(symbol);
-        }
-    }
-
-    @SuppressWarnings("deprecation")
-    private String makeHttpRequest(String urlString) throws Exception {
-        java.net.URL url = new java.net.URL(urlString);
-        java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(5000);
-        conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64)");
-
-        int responseCode = conn.getResponseCode();
-        if (responseCode == 200) {
-            try (java.io.BufferedReader in = new java.io.BufferedReader(
-                new java.io.InputStreamReader(conn.getInputStream())
-            )) {
-                StringBuilder response = new StringBuilder();
-                String inputLine;
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                return response.toString();
+            LOGGER.warn("Could not refresh stock price for: " + key, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Fetches the current prices of several stocks, regardless of the cached prices, and caches them. Each price is fetched through the
+     * providers like {@link #refreshStockPrice(String)}, so the primary real-time quote is used whenever it is available; the
+     * {@link QuoteRefreshEngine} bounds the number of concurrent and per-second requests. Symbols that recently failed (negatively
+     * cached) are not fetched again until their negative entry expires.
+     * 
+     * @return The fetched prices by symbol; symbols that could not be fetched are missing.
+     */
+    public Map<String, StockPriceDTO> refreshStockPrices(Collection<String> symbols) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            if (symbol != null && !symbol.trim().isEmpty()) {
+                keys.add(symbol.trim().toUpperCase());
+            }
+        }
+
+        List<Stock> stocks = new ArrayList<>();
+        for (String key : keys) {
+            if (!isNegativelyCached(key)) {
+                stocks.add(new Stock(key, key));
             }
+        }
+        Map<String, StockPriceDTO> fetched = new ConcurrentHashMap<>();
+        if (!stocks.isEmpty()) {
+            refreshEngine.refresh(stocks, new LiveQuoteDownloader(fetched));
+        }
+
+        Map<String, StockPriceDTO> results = new LinkedHashMap<>();
+        for (String key : keys) {
+            StockPriceDTO price = fetched.get(key);
+            if (price != null) {
+                results.put(key, price);
+            }
+        }
+        return results;
+    }
+    
+    private boolean isNegativelyCached(String symbol) {
+        CacheEntry cached = cache.get(symbol);
+        return cached != null && cached.negative && cachePolicy.getState(cached.timestamp, true) == CachePolicy.State.FRESH;
+    }
+    
+    private StockPriceDTO loadStockPrice(String symbol, boolean revalidation, boolean force) {
+        // Another caller may have completed a load between our cache check and joining the flight
+        CacheEntry cached = cache.get(symbol);
+        if (cached != null && cachePolicy.getState(cached.timestamp, cached.negative) == CachePolicy.State.FRESH && (!force || cached.negative)) {
+            // Even a forced refresh does not retry a symbol that failed within the negative TTL
+            return cached.data;
+        }
+
+        LOGGER.debug("Fetching fresh stock price for: " + symbol);
+        long startTime = System.nanoTime();
+        StockPriceDTO result = providerRouter.fetch(symbol);
+        cache.recordLoad(System.nanoTime() - startTime, result != null);
+        
+        if (result != null) {
+            cache.put(symbol, new CacheEntry(result, false), cachePolicy.getHardTtlMillis(), TimeUnit.MILLISECONDS);
+            return result;
+        }
+        
+        if (revalidation && cached != null && !cached.negative) {
+            // Keep serving the last real quote until it passes the hard TTL, flagged so it does not pass for a fetched one
+            LOGGER.debug("Revalidation failed, keeping stale stock price for: " + symbol);
+            StockPriceDTO stale = new StockPriceDTO(cached.data);
+            stale.setStale(true);
+            return stale;
+        }
+        
+        result = createDefaultStockPrice(symbol);
+        cache.put(symbol, new CacheEntry(result, true), cachePolicy.getNegativeTtlMillis(), TimeUnit.MILLISECONDS);
+        return result;
+    }
+    
+    private StockPriceDTO fetchFromPrimaryAPI(String symbol) throws IOException {
+        String apiUrl = PRIMARY_API_URL + symbol;
+        LOGGER.debug("Calling primary Stock API for symbol: " + symbol);
+        String response = makeHttpRequest(apiUrl);
+        
+        if (response == null || response.isEmpty()) {
+            LOGGER.warn("Empty response from primary Stock API for symbol: " + symbol);
+            return null;
+        }
+
+        return parseStockResponse(response, symbol);
+    }
+
+    private String makeHttpRequest(String url) throws IOException {
+        HttpClient.Response response = HttpClient.getDefault().get(url);
+        if (response.getStatusCode() == 200) {
+            return response.getBody();
+        } else if (response.getStatusCode() >= 500) {
+            throw new IOException("Stock API returned status code: " + response.getStatusCode());
         } else {
-            LOGGER.warn("Stock API returned status code: " + responseCode);
+            LOGGER.warn("Stock API returned status code: " + response.getStatusCode());
             return null;
         }
     }
@@ -207,9 +441,48 @@ public class StockAPIService {
         dto.setYearLow(BigDecimal.ZERO);
         dto.setPreviousClose(BigDecimal.ZERO);
         dto.setVolume(0L);
+        dto.setSynthetic(true);
         return dto;
     }
     
+    /**
+     * Fetches real-time quotes for the {@link QuoteRefreshEngine}, collecting the real prices by symbol.
+     */
+    private class LiveQuoteDownloader extends QuoteDownloader {
+        
+        private final Map<String, StockPriceDTO> prices;
+        
+        LiveQuoteDownloader(Map<String, StockPriceDTO> prices) {
+            super(null);
+            this.prices = prices;
+        }
+        
+        @Override
+        public String getName() {
+            return LIVE_QUOTE_PROVIDER;
+        }
+        
+        @Override
+        public boolean updateStock(Stock stock) {
+            StockPriceDTO price = refreshStockPrice(stock.getSymbol());
+            if (price == null || price.isSynthetic() || price.isStale()) {
+                return false;
+            }
+            prices.put(stock.getSymbol(), price);
+            return true;
+        }
+        
+        @Override
+        public List<Quote> getHistoricPrices(Stock stock) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public List<Quote> getDividendPayouts(Stock stock) {
+            return Collections.emptyList();
+        }
+    }
+    
     public void clearCache() {
         cache.clear();
         LOGGER.info("Stock price cache cleared");
@@ -2,6 +2,7 @@ package org.ozsoft.portfoliomanager.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -49,4 +50,15 @@ public class StockPriceService {
         
         return stockAPIService.getStockPrice(symbol);
     }
+
+    public CompletableFuture<StockPriceDTO> getIndianStockAsync(String symbol) {
+        if (symbol == null || symbol.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        symbol = symbol.trim().toUpperCase();
+        LOGGER.debug("Fetching Indian stock: " + symbol);
+        
+        return stockAPIService.getStockPriceAsync(symbol);
+    }
 }
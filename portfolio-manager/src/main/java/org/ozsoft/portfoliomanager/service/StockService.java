@@ -52,6 +52,7 @@ public class StockService {
         if (stockDTO.getLevel() != null) {
             stock.setLevel(StockLevel.valueOf(stockDTO.getLevel()));
         }
+        config.updateStock(stock);
         Configuration.save();
     }
 
@@ -62,6 +63,7 @@ public class StockService {
 
     public void setStockLevel(Stock stock, StockLevel level) {
         stock.setLevel(level);
+        config.updateStock(stock);
         Configuration.save();
     }
 }
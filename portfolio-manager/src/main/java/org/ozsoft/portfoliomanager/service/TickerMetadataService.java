@@ -0,0 +1,243 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.entity.TickerMetadataEntity;
+import org.ozsoft.portfoliomanager.repository.TickerMetadataRepository;
+import org.ozsoft.portfoliomanager.util.HttpClient;
+import org.ozsoft.portfoliomanager.util.LruCache;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Long-lived store of ticker metadata (company name, exchange and currency).
+ * 
+ * Lookups are served from memory and never block on the network. Unknown or outdated symbols are
+ * loaded from the marketstack tickers endpoint by a single background thread and persisted to the
+ * database, so restarts start with all previously resolved names. Symbols that could not be resolved
+ * are not looked up again until the retry delay has passed.
+ * 
+ * Both the metadata and the failed symbols are kept in bounded LRU caches, so looking up many distinct
+ * (e.g. mistyped) symbols does not grow the heap; metadata evicted from memory is read back from the
+ * database. The loader's queue is bounded as well: a lookup that finds it full is dropped and
+ * scheduled again by a later lookup of the same symbol.
+ */
+@Service
+public class TickerMetadataService {
+
+    private static final Logger LOGGER = LogManager.getLogger(TickerMetadataService.class);
+
+    /** Metadata is kept until evicted, and reloaded once outdated. */
+    private static final long ENTRY_TTL_DAYS = 365L;
+
+    @Value("${marketstack.api.key}")
+    private String apiKey;
+
+    @Value("${marketstack.api.url}")
+    private String apiUrl;
+
+    @Value("${ticker.metadata.max-age-days:30}")
+    private int maxAgeDays;
+
+    @Value("${ticker.metadata.retry-minutes:60}")
+    private int retryMinutes;
+
+    @Value("${ticker.metadata.max-size:10000}")
+    private int maxSize;
+
+    @Value("${ticker.metadata.max-pending:100}")
+    private int maxPending;
+
+    @Autowired
+    private TickerMetadataRepository tickerMetadataRepository;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    private LruCache<String, TickerMetadataEntity> metadata;
+    /** Symbols that could not be resolved, until their retry delay has passed. */
+    private LruCache<String, Boolean> failedSymbols;
+    private final Set<String> pendingSymbols = ConcurrentHashMap.newKeySet();
+    private ExecutorService loader;
+
+    @PostConstruct
+    public void init() {
+        metadata = cacheRegistry.createCache("ticker-metadata", maxSize);
+        failedSymbols = cacheRegistry.createCache("ticker-metadata-failures", maxSize);
+        loader = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(maxPending), runnable -> {
+            Thread thread = new Thread(runnable, "ticker-metadata-loader");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        try {
+            int count = 0;
+            for (TickerMetadataEntity entity : tickerMetadataRepository.findAll(PageRequest.of(0, maxSize))) {
+                metadata.put(entity.getSymbol(), entity, ENTRY_TTL_DAYS, TimeUnit.DAYS);
+                count++;
+            }
+            LOGGER.info("Loaded metadata for " + count + " tickers from database");
+        } catch (Exception e) {
+            LOGGER.warn("Could not load ticker metadata from database", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * Returns the known metadata of a symbol, scheduling a background (re)load if it is unknown or outdated.
+     * 
+     * @return The metadata, or {@code null} if not (yet) known.
+     */
+    public TickerMetadataEntity getMetadata(String symbol) {
+        if (symbol == null || symbol.isEmpty()) {
+            return null;
+        }
+
+        symbol = symbol.trim().toUpperCase();
+        TickerMetadataEntity entity = metadata.get(symbol);
+        if ((entity == null || isOutdated(entity)) && !isRetryPending(symbol)) {
+            scheduleLoad(symbol);
+        }
+        return entity;
+    }
+
+    /**
+     * Returns the company name of a symbol, or {@code null} if not (yet) known.
+     */
+    public String getCompanyName(String symbol) {
+        TickerMetadataEntity entity = getMetadata(symbol);
+        return entity != null ? entity.getName() : null;
+    }
+
+    private boolean isOutdated(TickerMetadataEntity entity) {
+        return entity.getUpdatedAt() == null || entity.getUpdatedAt().isBefore(LocalDateTime.now().minusDays(maxAgeDays));
+    }
+
+    private boolean isRetryPending(String symbol) {
+        return failedSymbols.get(symbol) != null;
+    }
+
+    private void scheduleLoad(final String symbol) {
+        if (pendingSymbols.add(symbol)) {
+            try {
+                loader.execute(() -> {
+                    try {
+                        loadMetadata(symbol);
+                    } finally {
+                        pendingSymbols.remove(symbol);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pendingSymbols.remove(symbol);
+                LOGGER.debug("Metadata loader busy, dropped load for: " + symbol);
+            }
+        }
+    }
+
+    private void loadMetadata(String symbol) {
+        // Evicted from memory, but possibly still up-to-date in the database
+        TickerMetadataEntity entity = findStored(symbol);
+        if (entity != null && !isOutdated(entity)) {
+            metadata.put(symbol, entity, ENTRY_TTL_DAYS, TimeUnit.DAYS);
+            return;
+        }
+
+        entity = fetchMetadata(symbol);
+        if (entity == null) {
+            failedSymbols.put(symbol, Boolean.TRUE, retryMinutes, TimeUnit.MINUTES);
+        } else {
+            failedSymbols.remove(symbol);
+            metadata.put(symbol, entity, ENTRY_TTL_DAYS, TimeUnit.DAYS);
+            try {
+                tickerMetadataRepository.save(entity);
+            } catch (Exception e) {
+                LOGGER.warn("Could not save ticker metadata for: " + symbol, e);
+            }
+        }
+    }
+
+    private TickerMetadataEntity findStored(String symbol) {
+        if (metadata.peek(symbol) != null) {
+            return null;
+        }
+        try {
+            return tickerMetadataRepository.findById(symbol).orElse(null);
+        } catch (Exception e) {
+            LOGGER.warn("Could not read ticker metadata for: " + symbol, e);
+            return null;
+        }
+    }
+
+    private TickerMetadataEntity fetchMetadata(String symbol) {
+        try {
+            String url = apiUrl + "/tickers/" + symbol + "?access_key=" + apiKey;
+            LOGGER.debug("Fetching ticker metadata for symbol: " + symbol);
+
+            String response = makeHttpRequest(url);
+
+            if (response == null || response.isEmpty()) {
+                LOGGER.debug("Empty response when fetching ticker metadata for: " + symbol);
+                return null;
+            }
+
+            JsonObject json = JsonParser.parseString(response).getAsJsonObject();
+            JsonObject data = json.has("data") ? json.getAsJsonObject("data") : json;
+            if (!data.has("name")) {
+                return null;
+            }
+
+            TickerMetadataEntity entity = new TickerMetadataEntity(symbol);
+            entity.setName(data.get("name").getAsString());
+            if (data.has("stock_exchange") && data.get("stock_exchange").isJsonObject()) {
+                JsonObject exchange = data.getAsJsonObject("stock_exchange");
+                entity.setExchange(getString(exchange, "acronym"));
+                if (exchange.has("currency") && exchange.get("currency").isJsonObject()) {
+                    entity.setCurrency(getString(exchange.getAsJsonObject("currency"), "code"));
+                }
+            }
+            if (entity.getCurrency() == null) {
+                entity.setCurrency(getString(data, "currency"));
+            }
+            entity.setUpdatedAt(LocalDateTime.now());
+            LOGGER.debug("Ticker metadata found: " + entity.getName());
+            return entity;
+        } catch (Exception e) {
+            LOGGER.debug("Error fetching ticker metadata for symbol: " + symbol, e);
+            return null;
+        }
+    }
+
+    private static String getString(JsonObject json, String name) {
+        JsonElement element = json.get(name);
+        return (element != null && element.isJsonPrimitive()) ? element.getAsString() : null;
+    }
+
+    String makeHttpRequest(String url) throws IOException {
+        HttpClient.Response response = HttpClient.getDefault().get(url);
+        if (response.getStatusCode() == 200) {
+            return response.getBody();
+        } else {
+            LOGGER.warn("Marketstack tickers API returned status code: " + response.getStatusCode());
+            return null;
+        }
+    }
+}
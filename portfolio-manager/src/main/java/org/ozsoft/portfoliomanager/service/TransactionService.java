@@ -1,6 +1,7 @@
 package org.ozsoft.portfoliomanager.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.ozsoft.portfoliomanager.domain.Configuration;
 import org.ozsoft.portfoliomanager.domain.Transaction;
@@ -10,6 +11,7 @@ import org.ozsoft.portfoliomanager.entity.TransactionEntity;
 import org.ozsoft.portfoliomanager.repository.TransactionRepository;
 import org.ozsoft.portfoliomanager.repository.UserRepository;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -23,18 +25,19 @@ public class TransactionService {
     
     @Autowired
     protected UserRepository userRepository;
+    
+    @Autowired
+    protected UserPortfolioService userPortfolioService;
+
+    @Autowired
+    protected ApplicationEventPublisher eventPublisher;
 
     public TransactionService() {
         this.config = Configuration.getInstance();
     }
 
     public Transaction getTransactionById(int id) {
-        for (Transaction transaction : config.getTransactions()) {
-            if (transaction.getId() == id) {
-                return transaction;
-            }
-        }
-        return null;
+        return config.getTransaction(id);
     }
 
     public Transaction createTransaction(TransactionDTO transactionDTO) {
@@ -64,17 +67,42 @@ public class TransactionService {
         return transactionRepository.findByUserIdOrderByDateAsc(userId);
     }
 
+    /**
+     * Returns a page of a user's transactions in (date, id) order, filtered on symbol, type and date range
+     * (null filters are ignored). If a position is given, the page starts after that transaction's date and ID
+     * (keyset pagination); otherwise the page number is used. A page beyond the largest possible offset is empty.
+     */
+    public List<TransactionEntity> getUserTransactions(Long userId, String symbol, String type, Long fromDate,
+            Long toDate, Long afterDate, Integer afterId, int page, int size) {
+        if (page < 0 || size < 1) {
+            throw new IllegalArgumentException("Invalid page or size");
+        }
+        if (afterDate != null && afterId != null) {
+            return transactionRepository.findPage(userId, normalize(symbol), normalize(type), fromDate, toDate,
+                    afterDate, afterId, 0, size);
+        }
+        long offset = (long) page * size;
+        if (offset > Integer.MAX_VALUE) {
+            return Collections.emptyList();
+        }
+        return transactionRepository.findPage(userId, normalize(symbol), normalize(type), fromDate, toDate, null, null,
+                (int) offset, size);
+    }
+
     public TransactionEntity createUserTransaction(Long userId, TransactionDTO transactionDTO) {
         TransactionEntity entity = new TransactionEntity();
         entity.setUserId(userId);
         entity.setDate(transactionDTO.getDate());
-        entity.setSymbol(transactionDTO.getSymbol());
-        entity.setType(transactionDTO.getType());
+        entity.setSymbol(normalize(transactionDTO.getSymbol()));
+        entity.setType(normalize(transactionDTO.getType()));
         entity.setNoOfShares(transactionDTO.getNoOfShares());
         entity.setPrice(transactionDTO.getPrice());
         entity.setCost(transactionDTO.getCost());
 
-        return transactionRepository.save(entity);
+        TransactionEntity saved = transactionRepository.save(entity);
+        userPortfolioService.invalidate(userId);
+        eventPublisher.publishEvent(new TransactionsChangedEvent(this, userId));
+        return saved;
     }
 
     public TransactionEntity getUserTransactionById(Long userId, Integer transactionId) {
@@ -85,9 +113,19 @@ public class TransactionService {
     public void deleteUserTransaction(Long userId, Integer transactionId) {
         TransactionEntity entity = getUserTransactionById(userId, transactionId);
         transactionRepository.delete(Objects.requireNonNull(entity));
+        userPortfolioService.invalidate(userId);
+        eventPublisher.publishEvent(new TransactionsChangedEvent(this, userId));
     }
 
     public List<TransactionEntity> getUserTransactionsBySymbol(Long userId, String symbol) {
         return transactionRepository.findByUserIdAndSymbol(userId, symbol);
     }
+
+    /**
+     * Symbols and types are stored (and filtered) trimmed and in upper case, the way they are read back
+     * ({@link UserPortfolioService}).
+     */
+    private static String normalize(String value) {
+        return (value == null || value.trim().isEmpty()) ? null : value.trim().toUpperCase();
+    }
 }
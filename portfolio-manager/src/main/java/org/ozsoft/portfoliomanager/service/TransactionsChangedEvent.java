@@ -0,0 +1,22 @@
+package org.ozsoft.portfoliomanager.service;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published after one of a user's transactions was written (added, changed or deleted).
+ */
+public class TransactionsChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long userId;
+
+    public TransactionsChangedEvent(Object source, Long userId) {
+        super(source);
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,200 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.domain.Position;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.domain.Transaction;
+import org.ozsoft.portfoliomanager.domain.TransactionType;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.entity.TransactionEntity;
+import org.ozsoft.portfoliomanager.repository.TransactionRepository;
+import org.ozsoft.portfoliomanager.util.LruCache;
+import org.ozsoft.portfoliomanager.util.SingleFlight;
+
+/**
+ * Keeps each user's portfolio in memory, built once from their transactions and dropped when they write a
+ * transaction. The least recently used portfolios are evicted when the cache is full or they have been idle for
+ * too long.
+ */
+@Service
+public class UserPortfolioService {
+
+    private static final Logger LOGGER = LogManager.getLogger(UserPortfolioService.class);
+
+    @Value("${portfolio.cache.max-users:1000}")
+    private int maxUsers;
+
+    @Value("${portfolio.cache.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private StockAPIService stockAPIService;
+
+    @Autowired
+    private TickerMetadataService tickerMetadataService;
+
+    @Autowired
+    private QuoteBus quoteBus;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    private LruCache<Long, Portfolio> cache;
+    private final SingleFlight<Long, Portfolio> inFlight = new SingleFlight<>();
+
+    /**
+     * Stamp of each user's load in progress. Invalidating a user drops their stamp, so that a load racing with a write of that user
+     * does not cache an outdated portfolio; loads of other users are not affected.
+     */
+    private final ConcurrentHashMap<Long, Object> loadStamps = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        cache = cacheRegistry.createCache("user-portfolios", maxUsers);
+    }
+
+    /**
+     * Returns a user's portfolio, with the stock prices updated from the quote cache.
+     */
+    public Portfolio getPortfolio(Long userId) {
+        // Extends the idle timeout of a cached portfolio, without re-adding one that was invalidated meanwhile
+        Portfolio portfolio = cache.touch(userId, idleMinutes, TimeUnit.MINUTES);
+        if (portfolio == null) {
+            try {
+                portfolio = inFlight.execute(userId, () -> loadPortfolio(userId));
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not load portfolio for user: " + userId, e);
+            }
+        }
+        updatePrices(portfolio);
+        return portfolio;
+    }
+
+    /**
+     * Returns a user's portfolio for background work, without keeping it in memory: the cached portfolio without extending
+     * its idle timeout, or otherwise one built from their transactions that is not cached.
+     */
+    public Portfolio peekPortfolio(Long userId) {
+        Portfolio portfolio = cache.peek(userId);
+        if (portfolio == null) {
+            portfolio = buildPortfolio(userId);
+        }
+        updatePrices(portfolio);
+        return portfolio;
+    }
+
+    /**
+     * Drops a user's cached portfolio, e.g. after one of their transactions was written.
+     */
+    public void invalidate(Long userId) {
+        // Atomic with the caching step of a concurrent load of the same user
+        loadStamps.compute(userId, (key, stamp) -> {
+            cache.remove(key);
+            return null;
+        });
+        LOGGER.debug("Invalidated portfolio of user " + userId);
+    }
+
+    private Portfolio loadPortfolio(Long userId) {
+        Portfolio cached = cache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Object loadStamp = new Object();
+        loadStamps.put(userId, loadStamp);
+        try {
+            long startTime = System.nanoTime();
+            final Portfolio portfolio = buildPortfolio(userId);
+            cache.recordLoad(System.nanoTime() - startTime, true);
+            // Only cache if the user was not invalidated meanwhile
+            loadStamps.computeIfPresent(userId, (key, stamp) -> {
+                if (stamp == loadStamp) {
+                    cache.put(key, portfolio, idleMinutes, TimeUnit.MINUTES);
+                }
+                return null;
+            });
+            return portfolio;
+        } finally {
+            loadStamps.remove(userId, loadStamp);
+        }
+    }
+
+    private Portfolio buildPortfolio(Long userId) {
+        List<TransactionEntity> entities = transactionRepository.findByUserIdOrderByDateAsc(userId);
+        Map<String, Stock> stocks = new HashMap<>();
+        Portfolio portfolio = new Portfolio();
+        portfolio.update(symbol -> stocks.computeIfAbsent(symbol, this::createStock));
+        for (TransactionEntity entity : entities) {
+            Transaction transaction = toTransaction(entity);
+            if (transaction == null) {
+                continue;
+            }
+            try {
+                portfolio.addTransaction(transaction);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Skipping invalid transaction " + entity.getId() + " of user " + userId + ": " + e.getMessage());
+            }
+        }
+        LOGGER.debug("Loaded portfolio of user " + userId + " from " + entities.size() + " transactions");
+        return portfolio;
+    }
+
+    private Stock createStock(String symbol) {
+        String name = tickerMetadataService.getCompanyName(symbol);
+        return new Stock(symbol, (name != null) ? name : symbol);
+    }
+
+    private void updatePrices(Portfolio portfolio) {
+        for (Position position : portfolio.getPositions()) {
+            Stock stock = position.getStock();
+            StockPriceDTO quote = quoteBus.getLastQuote(stock.getSymbol());
+            if (quote == null) {
+                quote = stockAPIService.getCachedStockPrice(stock.getSymbol());
+            }
+            if (quote != null && !quote.isSynthetic() && quote.getPrice() != null) {
+                stock.setPrice(quote.getPrice());
+            }
+        }
+    }
+
+    private static Transaction toTransaction(TransactionEntity entity) {
+        if (entity.getSymbol() == null || entity.getType() == null || entity.getDate() == null
+                || entity.getNoOfShares() == null || entity.getPrice() == null) {
+            return null;
+        }
+        TransactionType type;
+        try {
+            type = TransactionType.valueOf(entity.getType().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Skipping transaction " + entity.getId() + " with unknown type: " + entity.getType());
+            return null;
+        }
+        Transaction transaction = new Transaction();
+        if (entity.getId() != null) {
+            transaction.setId(entity.getId());
+        }
+        transaction.setDate(entity.getDate());
+        transaction.setSymbol(entity.getSymbol().trim().toUpperCase());
+        transaction.setType(type);
+        transaction.setNoOfShares(entity.getNoOfShares());
+        transaction.setPrice(entity.getPrice());
+        transaction.setCost((entity.getCost() != null) ? entity.getCost() : BigDecimal.ZERO);
+        return transaction;
+    }
+}
@@ -19,6 +19,11 @@ public class UserService {
 
         if (existingUser.isPresent()) {
             User user = existingUser.get();
+            if (Objects.equals(user.getName(), name) && Objects.equals(user.getEmail(), email)
+                    && Objects.equals(user.getPicture(), picture)) {
+                // Profile unchanged; skip the write
+                return user;
+            }
             user.setName(name);
             user.setEmail(email);
             user.setPicture(picture);
@@ -0,0 +1,202 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.domain.Position;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.domain.Transaction;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.entity.ValuationSeriesEntity;
+import org.ozsoft.portfoliomanager.repository.TransactionRepository;
+import org.ozsoft.portfoliomanager.repository.ValuationSeriesRepository;
+
+/**
+ * Keeps a daily valuation series per user. Each day at the snapshot time today's valuation is appended for every
+ * user; when a user's transactions change, the series is rebuilt from them on its next use, keeping the market values
+ * recorded so far.
+ */
+@Service
+public class ValuationService {
+
+    private static final Logger LOGGER = LogManager.getLogger(ValuationService.class);
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Value("${valuation.snapshot-time:22:00}")
+    private String snapshotTime;
+
+    @Autowired
+    private UserPortfolioService userPortfolioService;
+
+    @Autowired
+    private ValuationSeriesRepository valuationSeriesRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private StockAPIService stockAPIService;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "valuation-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        LocalDateTime now = LocalDateTime.now(ZONE);
+        LocalDateTime next = now.toLocalDate().atTime(LocalTime.parse(snapshotTime));
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        long delay = Duration.between(now, next).toMinutes();
+        scheduler.scheduleAtFixedRate(this::snapshotAll, delay, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Marks a user's series for rebuilding after one of their transactions was written.
+     */
+    @EventListener
+    public void onTransactionsChanged(TransactionsChangedEvent event) {
+        valuationSeriesRepository.markStale(event.getUserId());
+    }
+
+    /**
+     * Returns a user's valuation per period within a date range (null for unbounded).
+     */
+    public List<ValuationSeries.Period> getValuation(Long userId, LocalDate from, LocalDate to,
+            ValuationSeries.Granularity granularity) {
+        return getSeries(userId).query(from, to, granularity);
+    }
+
+    /**
+     * Returns a user's valuation series, rebuilding it first if their transactions changed.
+     */
+    public ValuationSeries getSeries(Long userId) {
+        ValuationSeriesEntity entity = valuationSeriesRepository.findByUserId(userId).orElse(null);
+        if (entity != null && !entity.isStale()) {
+            return ValuationSeries.fromBytes(entity.getFirstDate(), entity.getData());
+        }
+        ValuationSeries series = rebuild(userId, entity, userPortfolioService.getPortfolio(userId));
+        save(userId, entity, series);
+        return series;
+    }
+
+    /**
+     * Appends today's valuation of all users. Their portfolios are only peeked at, so this does not keep them in memory.
+     */
+    void snapshotAll() {
+        long startTime = System.currentTimeMillis();
+        int count = 0;
+        for (Long userId : transactionRepository.findUserIds()) {
+            try {
+                snapshot(userId);
+                count++;
+            } catch (Exception e) {
+                LOGGER.error("Could not save valuation of user " + userId, e);
+            }
+        }
+        LOGGER.info("Saved valuation of " + count + " users in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * Appends (or replaces) today's valuation of a user. Its market value is unknown if an open position has no price.
+     */
+    void snapshot(Long userId) {
+        ValuationSeriesEntity entity = valuationSeriesRepository.findByUserId(userId).orElse(null);
+        Portfolio portfolio = userPortfolioService.peekPortfolio(userId);
+        ValuationSeries series;
+        if (entity != null && !entity.isStale()) {
+            series = ValuationSeries.fromBytes(entity.getFirstDate(), entity.getData());
+        } else {
+            series = rebuild(userId, entity, portfolio);
+        }
+        series.append(LocalDate.now(ZONE), portfolio.getCurrentCost(), getCurrentValue(portfolio),
+                portfolio.getTotalIncome(), portfolio.getRealizedResult());
+        save(userId, entity, series);
+    }
+
+    /**
+     * Returns the market value of a portfolio, first fetching the prices of open positions without one, or null if any
+     * of them still has no price (it would otherwise count as zero).
+     */
+    private BigDecimal getCurrentValue(Portfolio portfolio) {
+        Map<String, Stock> unpriced = new LinkedHashMap<>();
+        for (Position position : portfolio.getPositions()) {
+            Stock stock = position.getStock();
+            if (position.getNoOfShares().signum() > 0 && stock.getPrice().signum() <= 0) {
+                unpriced.put(stock.getSymbol().trim().toUpperCase(), stock);
+            }
+        }
+        if (!unpriced.isEmpty()) {
+            Map<String, StockPriceDTO> prices = stockAPIService.refreshStockPrices(unpriced.keySet());
+            for (Map.Entry<String, Stock> entry : unpriced.entrySet()) {
+                StockPriceDTO price = prices.get(entry.getKey());
+                if (price == null || price.getPrice() == null || price.getPrice().signum() <= 0) {
+                    LOGGER.debug("No price for " + entry.getKey() + ", market value unknown");
+                    return null;
+                }
+                entry.getValue().setPrice(price.getPrice());
+            }
+        }
+        return portfolio.getCurrentValue();
+    }
+
+    private ValuationSeries rebuild(Long userId, ValuationSeriesEntity entity, Portfolio portfolio) {
+        long startTime = System.currentTimeMillis();
+        List<Transaction> transactions = new ArrayList<>(portfolio.getTransactions());
+        Collections.sort(transactions);
+        ValuationSeries series = ValuationSeries.fromTransactions(transactions, LocalDate.now(ZONE), ZONE);
+        if (entity != null) {
+            series.copyValues(ValuationSeries.fromBytes(entity.getFirstDate(), entity.getData()));
+        }
+        LOGGER.debug("Rebuilt valuation of user " + userId + " (" + series.size() + " days) in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return series;
+    }
+
+    private void save(Long userId, ValuationSeriesEntity entity, ValuationSeries series) {
+        if (entity == null) {
+            entity = new ValuationSeriesEntity(userId);
+        }
+        entity.setFirstDate(series.getFirstDate());
+        entity.setData(series.toBytes());
+        entity.setStale(false);
+        entity.setUpdatedAt(LocalDateTime.now());
+        try {
+            valuationSeriesRepository.save(entity);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Transactions changed meanwhile; the series is rebuilt on its next use
+            LOGGER.debug("Valuation of user " + userId + " changed concurrently, not saved");
+        }
+    }
+}
@@ -0,0 +1,376 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.ozsoft.portfoliomanager.services;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.services.downloader.QuoteDownloader;
+import org.ozsoft.portfoliomanager.util.RateLimiter;
+
+/**
+ * Refreshes stock prices on a bounded thread pool. <br />
+ * <br />
+ *
+ * Each quote provider (identified by {@link QuoteDownloader#getName()}) has its own limit of concurrent requests and its own token bucket
+ * rate limiter, shared by all refreshes running on the same engine. Stocks are submitted only when a provider slot is free, so refreshing a
+ * large universe keeps a constant number of tasks in memory and never exceeds the provider's request rate.
+ */
+public class QuoteRefreshEngine {
+
+    /** Default maximum number of worker threads. */
+    public static final int DEFAULT_MAX_THREADS = 8;
+
+    /** Default maximum number of concurrent requests per provider. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    /** Default maximum number of requests per second per provider. */
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 5.0;
+
+    /** Idle time after which worker threads are stopped (in seconds). */
+    private static final long KEEP_ALIVE_TIME = 60L;
+
+    private static final AtomicInteger ENGINE_COUNT = new AtomicInteger();
+
+    private static final Logger LOGGER = LogManager.getLogger(QuoteRefreshEngine.class);
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, ProviderLimits> providerLimits = new ConcurrentHashMap<String, ProviderLimits>();
+
+    /**
+     * Constructor with the default number of worker threads.
+     */
+    public QuoteRefreshEngine() {
+        this(DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxThreads
+     *                       The maximum number of worker threads.
+     */
+    public QuoteRefreshEngine(int maxThreads) {
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new WorkerThreadFactory(ENGINE_COUNT.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets the limits for a quote provider.
+     *
+     * @param provider
+     *                              The provider's name.
+     * @param maxConcurrency
+     *                              The maximum number of concurrent requests.
+     * @param requestsPerSecond
+     *                              The maximum number of requests per second.
+     */
+    public void setProviderLimits(String provider, int maxConcurrency, double requestsPerSecond) {
+        providerLimits.put(provider, new ProviderLimits(maxConcurrency, requestsPerSecond));
+    }
+
+    /**
+     * Refreshes the prices of the specified stocks.
+     *
+     * @param stocks
+     *                       The stocks.
+     * @param downloader
+     *                       The quote provider.
+     *
+     * @return The refresh result.
+     */
+    public RefreshResult refresh(Collection<Stock> stocks, QuoteDownloader downloader) {
+        return refresh(stocks, downloader, null);
+    }
+
+    /**
+     * Refreshes the prices of the specified stocks, reporting each stock's outcome in completion order. <br />
+     * <br />
+     *
+     * Blocks until all stocks have been processed. If the calling thread is interrupted, updates that have already finished are reported with
+     * their real outcome, the updates in progress are cancelled and counted as cancelled, as is the stock waiting for a provider slot; stocks
+     * that have not been submitted yet are counted as skipped.
+     *
+     * @param stocks
+     *                       The stocks.
+     * @param downloader
+     *                       The quote provider.
+     * @param listener
+     *                       The listener for the per-stock outcomes (optional).
+     *
+     * @return The refresh result.
+     */
+    public RefreshResult refresh(Collection<Stock> stocks, QuoteDownloader downloader, RefreshListener listener) {
+        long startTime = System.currentTimeMillis();
+        RefreshResult result = new RefreshResult();
+        ProviderLimits limits = getProviderLimits(downloader.getName());
+        CompletionService<Outcome> completionService = new ExecutorCompletionService<Outcome>(executor);
+        Map<Future<Outcome>, UpdateTask> inFlight = new HashMap<Future<Outcome>, UpdateTask>();
+        Stock waiting = null;
+
+        Iterator<Stock> it = stocks.iterator();
+        try {
+            while (it.hasNext()) {
+                Stock stock = it.next();
+                if (stock.getSymbol() == null || stock.getSymbol().isEmpty()) {
+                    report(new Outcome(stock, RefreshStatus.SKIPPED), result, listener);
+                    continue;
+                }
+
+                // Wait for a free provider slot before submitting (bounds the number of queued tasks).
+                waiting = stock;
+                limits.concurrency.acquire();
+                waiting = null;
+                UpdateTask task = new UpdateTask(new StockUpdater(stock, downloader), limits);
+                inFlight.put(completionService.submit(task), task);
+
+                // Report any finished updates without blocking.
+                Future<Outcome> future;
+                while ((future = completionService.poll()) != null) {
+                    inFlight.remove(future);
+                    report(getOutcome(future), result, listener);
+                }
+            }
+
+            while (!inFlight.isEmpty()) {
+                Future<Outcome> future = completionService.take();
+                inFlight.remove(future);
+                report(getOutcome(future), result, listener);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Price refresh interrupted");
+            if (waiting != null) {
+                report(new Outcome(waiting, RefreshStatus.CANCELLED), result, listener);
+            }
+            // Updates that have already finished keep their real outcome
+            Future<Outcome> future;
+            while ((future = completionService.poll()) != null) {
+                UpdateTask task = inFlight.remove(future);
+                report(getCompletedOutcome(future, task), result, listener);
+            }
+            for (Map.Entry<Future<Outcome>, UpdateTask> entry : inFlight.entrySet()) {
+                UpdateTask task = entry.getValue();
+                if (!entry.getKey().cancel(true)) {
+                    // Finished in the meantime
+                    report(getCompletedOutcome(entry.getKey(), task), result, listener);
+                    continue;
+                }
+                if (task.claim()) {
+                    // Never started, so it will not release its provider slot itself
+                    limits.concurrency.release();
+                }
+                report(new Outcome(task.updater.getStock(), RefreshStatus.CANCELLED), result, listener);
+            }
+            while (it.hasNext()) {
+                report(new Outcome(it.next(), RefreshStatus.SKIPPED), result, listener);
+            }
+            Thread.currentThread().interrupt();
+        }
+
+        result.setDuration(System.currentTimeMillis() - startTime);
+        LOGGER.debug(String.format("Price refresh via %s: %s", downloader.getName(), result));
+
+        return result;
+    }
+
+    /**
+     * Stops all worker threads. Updates in progress are completed first.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the limits for a quote provider, using the default limits if none have been set.
+     *
+     * @param provider
+     *                     The provider's name.
+     *
+     * @return The provider limits.
+     */
+    private ProviderLimits getProviderLimits(String provider) {
+        ProviderLimits limits = providerLimits.get(provider);
+        if (limits == null) {
+            limits = new ProviderLimits(DEFAULT_MAX_CONCURRENCY, DEFAULT_REQUESTS_PER_SECOND);
+            ProviderLimits existing = providerLimits.putIfAbsent(provider, limits);
+            if (existing != null) {
+                limits = existing;
+            }
+        }
+        return limits;
+    }
+
+    private static Outcome getOutcome(Future<Outcome> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // Should not happen; UpdateTask handles its own failures.
+            throw new IllegalStateException("Unexpected failure of update task", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the outcome of a finished update, without blocking and regardless of the calling thread's interrupt status.
+     *
+     * @param future
+     *                   The future of the finished update.
+     * @param task
+     *                   The update task.
+     *
+     * @return The outcome.
+     */
+    private static Outcome getCompletedOutcome(Future<Outcome> future, UpdateTask task) {
+        try {
+            return future.get(0L, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // Should not happen; UpdateTask handles its own failures.
+            throw new IllegalStateException("Unexpected failure of update task", e.getCause());
+        } catch (Exception e) {
+            return new Outcome(task.updater.getStock(), RefreshStatus.CANCELLED);
+        }
+    }
+
+    private static void report(Outcome outcome, RefreshResult result, RefreshListener listener) {
+        result.add(outcome.status);
+        if (listener != null) {
+            listener.stockRefreshed(outcome.stock, outcome.status);
+        }
+    }
+
+    /**
+     * Concurrency and rate limits of a single quote provider.
+     */
+    private static class ProviderLimits {
+
+        private final Semaphore concurrency;
+
+        private final RateLimiter rateLimiter;
+
+        public ProviderLimits(int maxConcurrency, double requestsPerSecond) {
+            concurrency = new Semaphore(maxConcurrency);
+            rateLimiter = new RateLimiter(requestsPerSecond, maxConcurrency);
+        }
+    }
+
+    /**
+     * Outcome of a single stock update.
+     */
+    private static class Outcome {
+
+        private final Stock stock;
+
+        private final RefreshStatus status;
+
+        public Outcome(Stock stock, RefreshStatus status) {
+            this.stock = stock;
+            this.status = status;
+        }
+    }
+
+    /**
+     * Rate limited execution of a {@link StockUpdater}, releasing the provider slot when done.
+     */
+    private static class UpdateTask implements Callable<Outcome> {
+
+        private final StockUpdater updater;
+
+        private final ProviderLimits limits;
+
+        /** Set by whoever gets to the task first: the worker running it, or the refresh cancelling it. */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        public UpdateTask(StockUpdater updater, ProviderLimits limits) {
+            this.updater = updater;
+            this.limits = limits;
+        }
+
+        /**
+         * Claims the task, so that it will not run.
+         *
+         * @return {@code true} if claimed, or {@code false} if it is already running.
+         */
+        public boolean claim() {
+            return !claimed.getAndSet(true);
+        }
+
+        @Override
+        public Outcome call() {
+            Stock stock = updater.getStock();
+            if (!claim()) {
+                // Cancelled before it started
+                return new Outcome(stock, RefreshStatus.CANCELLED);
+            }
+            try {
+                limits.rateLimiter.acquire();
+                boolean isUpdated = updater.call();
+                return new Outcome(stock, isUpdated ? RefreshStatus.UPDATED : RefreshStatus.SKIPPED);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Outcome(stock, RefreshStatus.SKIPPED);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to update stock " + stock.getSymbol(), e);
+                return new Outcome(stock, RefreshStatus.FAILED);
+            } finally {
+                limits.concurrency.release();
+            }
+        }
+    }
+
+    /**
+     * Creates named daemon worker threads, so an idle engine never prevents the JVM from exiting.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final int engineNr;
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        public WorkerThreadFactory(int engineNr) {
+            this.engineNr = engineNr;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("quote-refresh-%d-%d", engineNr, threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.ozsoft.portfoliomanager.services;
+
+/**
+ * Summary of a price refresh of a set of stocks.
+ */
+public class RefreshResult {
+
+    private int updatedCount;
+
+    private int skippedCount;
+
+    private int failedCount;
+
+    private int cancelledCount;
+
+    private long duration;
+
+    /**
+     * Returns the number of stocks of which the price has changed.
+     *
+     * @return The number of updated stocks.
+     */
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    /**
+     * Returns the number of stocks that were not refreshed or of which the price was unchanged.
+     *
+     * @return The number of skipped stocks.
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Returns the number of stocks for which no quote could be retrieved.
+     *
+     * @return The number of failed stocks.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns the number of stocks of which the update was cancelled because the refresh was interrupted.
+     *
+     * @return The number of cancelled stocks.
+     */
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /**
+     * Returns the total number of processed stocks.
+     *
+     * @return The total number of stocks.
+     */
+    public int getTotalCount() {
+        return updatedCount + skippedCount + failedCount + cancelledCount;
+    }
+
+    /**
+     * Returns the duration of the refresh.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Records the outcome of a single stock.
+     *
+     * @param status
+     *                   The outcome.
+     */
+    void add(RefreshStatus status) {
+        switch (status) {
+            case UPDATED:
+                updatedCount++;
+                break;
+            case SKIPPED:
+                skippedCount++;
+                break;
+            case FAILED:
+                failedCount++;
+                break;
+            case CANCELLED:
+                cancelledCount++;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid refresh status");
+        }
+    }
+
+    /**
+     * Sets the duration of the refresh.
+     *
+     * @param duration
+     *                     The duration in milliseconds.
+     */
+    void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d updated, %d skipped, %d failed, %d cancelled (%d ms)", updatedCount, skippedCount, failedCount, cancelledCount,
+                duration);
+    }
+}
@@ -16,56 +16,52 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+
 package org.ozsoft.portfoliomanager.services;
 
+import java.util.concurrent.Callable;
+
 import org.ozsoft.portfoliomanager.domain.Stock;
 import org.ozsoft.portfoliomanager.services.downloader.QuoteDownloader;
-import org.ozsoft.portfoliomanager.services.downloader.StockAPIQuoteDownloader;
-import org.ozsoft.portfoliomanager.util.HttpPageReader;
-import org.ozsoft.portfoliomanager.service.StockAPIService;
 
 /**
- * Thread that updates a single stock. <br />
+ * Task that updates a single stock. <br />
  * <br />
  *
- * Gets the current stock quote from the MarketWatch and Morningstar's value rating.
+ * Gets the current stock quote from a {@link QuoteDownloader}. Executed by the {@link QuoteRefreshEngine}.
  *
  * @author Oscar Stigter
  */
-public class StockUpdater extends Thread {
+public class StockUpdater implements Callable<Boolean> {
 
     private final Stock stock;
 
     private final QuoteDownloader downloader;
 
-    private boolean isFinished = false;
+    private volatile boolean isFinished = false;
 
-    private boolean isUpdated = false;
+    private volatile boolean isUpdated = false;
 
     /**
      * Constructor.
      *
      * @param stock
-     *                           The stock.
-     * @param httpPageReader
-     *                           The {@link HttpPageReader} (possibly shared) - deprecated, not used.
+     *                       The stock.
+     * @param downloader
+     *                       The {@link QuoteDownloader} (possibly shared).
      */
-    public StockUpdater(Stock stock, HttpPageReader httpPageReader) {
+    public StockUpdater(Stock stock, QuoteDownloader downloader) {
         this.stock = stock;
-        downloader = new StockAPIQuoteDownloader();
+        this.downloader = downloader;
     }
 
     /**
-     * Constructor with StockAPIService
+     * Returns the stock.
      *
-     * @param stock
-     *                           The stock.
-     * @param stockAPIService
-     *                           The {@link StockAPIService}.
+     * @return The stock.
      */
-    public StockUpdater(Stock stock, StockAPIService stockAPIService) {
-        this.stock = stock;
-        downloader = new StockAPIQuoteDownloader();
+    public Stock getStock() {
+        return stock;
     }
 
     /**
@@ -87,8 +83,12 @@ public class StockUpdater extends Thread {
     }
 
     @Override
-    public void run() {
-        isUpdated = downloader.updateStock(stock);
-        isFinished = true;
+    public Boolean call() {
+        try {
+            isUpdated = downloader.updateStock(stock);
+        } finally {
+            isFinished = true;
+        }
+        return isUpdated;
     }
 }
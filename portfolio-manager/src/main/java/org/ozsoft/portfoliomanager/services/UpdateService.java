@@ -25,7 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigDecimal;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
@@ -41,6 +41,8 @@ import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.ss.util.CellReference;
 import org.ozsoft.portfoliomanager.domain.Configuration;
 import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.services.downloader.QuoteDownloader;
+import org.ozsoft.portfoliomanager.services.downloader.StockAPIQuoteDownloader;
 import org.ozsoft.portfoliomanager.util.HttpPageReader;
 
 /**
@@ -76,6 +78,10 @@ public class UpdateService {
 
     private final HttpPageReader httpPageReader = new HttpPageReader();
 
+    private final QuoteDownloader quoteDownloader = new StockAPIQuoteDownloader();
+
+    private final QuoteRefreshEngine refreshEngine = new QuoteRefreshEngine();
+
     /**
      * Updates all stock data.
      *
@@ -95,18 +101,8 @@ public class UpdateService {
      * @return True if the stock was updated (price changed), otherwise false.
      */
     public boolean updatePrice(Stock stock) {
-        boolean isUpdated = false;
-
-        StockUpdater stockUpdater = new StockUpdater(stock, httpPageReader);
-        stockUpdater.start();
-        try {
-            stockUpdater.join();
-            isUpdated = stockUpdater.isUpdated();
-        } catch (InterruptedException e) {
-            // Safe to ignore.
-        }
-
-        return isUpdated;
+        RefreshResult result = refreshEngine.refresh(Collections.singleton(stock), quoteDownloader);
+        return result.getUpdatedCount() > 0;
     }
 
     /**
@@ -153,6 +149,7 @@ public class UpdateService {
                                 stock.setYearsDivGrowth(yearsDivGrowth);
                                 stock.setDivRate(divRate);
                                 stock.setDivGrowth(divGrowth);
+                                config.updateStock(stock);
                                 count++;
                             }
                         }
@@ -229,8 +226,8 @@ public class UpdateService {
     /**
      * Updates real-time prices for the specified stocks. <br />
      * <br />
-     * Every stock is updated by its own {@see StockUpdater} thread for maximum performance (less total duration, at the cost of a large CPU and
-     * network I/O burst).
+     * The stocks are updated by the {@link QuoteRefreshEngine}, which runs a bounded number of concurrent {@link StockUpdater} tasks and
+     * throttles the requests to the quote provider.
      *
      * @param stocks
      *                   The stocks to update.
@@ -238,29 +235,24 @@ public class UpdateService {
      * @return The number of updated stocks.
      */
     public int updatePrices(Set<Stock> stocks) {
-        LOGGER.debug(String.format("Updating %d stock prices", stocks.size()));
+        return refreshPrices(stocks).getUpdatedCount();
+    }
 
-        Set<StockUpdater> updaters = new HashSet<>();
-        for (Stock stock : stocks) {
-            StockUpdater updater = new StockUpdater(stock, httpPageReader);
-            updaters.add(updater);
-            updater.start();
-        }
+    /**
+     * Updates real-time prices for the specified stocks, returning the detailed result.
+     *
+     * @param stocks
+     *                   The stocks to update.
+     *
+     * @return The refresh result.
+     */
+    public RefreshResult refreshPrices(Set<Stock> stocks) {
+        LOGGER.debug(String.format("Updating %d stock prices", stocks.size()));
 
-        int updatedCount = 0;
-        for (StockUpdater updater : updaters) {
-            try {
-                updater.join();
-                if (updater.isUpdated()) {
-                    updatedCount++;
-                }
-            } catch (InterruptedException e) {
-                // Safe to ignore.
-            }
-        }
+        RefreshResult result = refreshEngine.refresh(stocks, quoteDownloader);
 
-        LOGGER.info(String.format("%s stocks updated", updatedCount));
+        LOGGER.info(String.format("Stock prices refreshed: %s", result));
 
-        return updatedCount;
+        return result;
     }
 }
@@ -43,6 +43,15 @@ public abstract class QuoteDownloader {
         this.httpPageReader = httpPageReader;
     }
 
+    /**
+     * Returns the name of this quote provider, used to apply per-provider request limits.
+     *
+     * @return The provider name.
+     */
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
     /**
      * Updates a stock. <br />
      * <br />
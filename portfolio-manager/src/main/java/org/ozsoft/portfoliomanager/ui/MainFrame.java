@@ -24,6 +24,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
@@ -61,6 +62,9 @@ public class MainFrame extends JFrame {
 
     private static final int DEFAULT_HEIGHT = 600;
 
+    /** Maximum time to wait for the configuration to be saved on close (in seconds). */
+    private static final long SAVE_TIMEOUT = 30L;
+
     private static final Logger LOGGER = LogManager.getLogger(MainFrame.class);
 
     private final Configuration config;
@@ -295,6 +299,14 @@ public class MainFrame extends JFrame {
      */
     private void close() {
         Configuration.save();
+        try {
+            if (!Configuration.flush(SAVE_TIMEOUT, TimeUnit.SECONDS)) {
+                LOGGER.error("Timeout while saving configuration");
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while saving configuration");
+            Thread.currentThread().interrupt();
+        }
         LOGGER.info("Application closed");
     }
 }
@@ -237,6 +237,7 @@ public class StockTable extends DataTable {
         if (stock != null) {
             if (stock.getLevel() != StockLevel.GOAL) {
                 stock.setLevel(StockLevel.GOAL);
+                config.updateStock(stock);
                 mainFrame.updateTables();
             }
         }
@@ -250,6 +251,7 @@ public class StockTable extends DataTable {
         if (stock != null) {
             if (stock.getLevel() != StockLevel.WATCH) {
                 stock.setLevel(StockLevel.WATCH);
+                config.updateStock(stock);
                 mainFrame.updateTables();
             }
         }
@@ -263,6 +265,7 @@ public class StockTable extends DataTable {
         if (stock != null) {
             if (stock.getLevel() != StockLevel.BENCH) {
                 stock.setLevel(StockLevel.BENCH);
+                config.updateStock(stock);
                 mainFrame.updateTables();
             }
         }
@@ -275,6 +278,7 @@ public class StockTable extends DataTable {
         Stock stock = getSelectedStock();
         if (stock != null) {
             if (editStockDialog.show(stock) == Dialog.OK) {
+                config.updateStock(stock);
                 mainFrame.updateTables();
             }
         }
@@ -191,7 +191,10 @@ public class TransactionsTable extends DataTable {
     private void editTransaction() {
         Transaction transaction = getSelectedTransaction();
         if (transaction != null) {
+            String oldSymbol = transaction.getSymbol();
+            long oldDate = transaction.getDate();
             if (editTransactionDialog.show(transaction) == Dialog.OK) {
+                config.updateTransaction(transaction, oldSymbol, oldDate);
                 update();
                 mainFrame.updateOwnedPanel();
             }
@@ -224,12 +227,7 @@ public class TransactionsTable extends DataTable {
         int rowIndex = getSelectedRow();
         if (rowIndex >= 0) {
             int id = (int) getCellValue(rowIndex, 0);
-            for (Transaction tx : config.getTransactions()) {
-                if (tx.getId() == id) {
-                    transaction = tx;
-                    break;
-                }
-            }
+            transaction = config.getTransaction(id);
         }
 
         return transaction;
@@ -0,0 +1,91 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Crash-safe file writes. <br />
+ * <br />
+ *
+ * The data is written to a temporary file in the same directory, forced to disk and then renamed over the target file, so the target
+ * always holds either the old or the new content, never a partial write.
+ */
+public final class AtomicFile {
+
+    private static final String TEMP_PREFIX = ".";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AtomicFile() {
+        // Empty implementation.
+    }
+
+    /**
+     * Atomically replaces the content of a file.
+     *
+     * @param file
+     *            The file.
+     * @param data
+     *            The new content.
+     *
+     * @throws IOException
+     *             If the file could not be written.
+     */
+    public static void write(File file, byte[] data) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tempFile = new File(dir, TEMP_PREFIX + file.getName() + TEMP_SUFFIX);
+        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+            fos.write(data);
+            fos.getFD().sync();
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        syncDirectory(dir);
+    }
+
+    /**
+     * Forces a directory entry change (e.g. a rename) to disk, where supported by the platform.
+     *
+     * @param dir
+     *            The directory.
+     */
+    public static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on all platforms (e.g. Windows); the rename itself is still atomic.
+        }
+    }
+}
@@ -0,0 +1,142 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the statistics of an {@link LruCache}.
+ */
+public class CacheStats {
+
+    private final String name;
+
+    private final int size;
+
+    private final int maxSize;
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long evictionCount;
+
+    private final long expirationCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadFailureCount;
+
+    private final long totalLoadTime;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *                             The cache name.
+     * @param size
+     *                             The current number of entries.
+     * @param maxSize
+     *                             The maximum number of entries.
+     * @param hitCount
+     *                             The number of lookups that returned a value.
+     * @param missCount
+     *                             The number of lookups that found no (live) value.
+     * @param evictionCount
+     *                             The number of entries evicted because the cache was full.
+     * @param expirationCount
+     *                             The number of entries removed because they expired.
+     * @param loadSuccessCount
+     *                             The number of successful loads.
+     * @param loadFailureCount
+     *                             The number of failed loads.
+     * @param totalLoadTime
+     *                             The total load time in nanoseconds.
+     */
+    public CacheStats(String name, int size, int maxSize, long hitCount, long missCount, long evictionCount, long expirationCount,
+            long loadSuccessCount, long loadFailureCount, long totalLoadTime) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Returns the fraction of lookups that returned a value.
+     *
+     * @return The hit rate (between 0 and 1), or 1 if there were no lookups yet.
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return (requestCount == 0L) ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Returns the average load time.
+     *
+     * @return The average load time in milliseconds.
+     */
+    public double getAverageLoadTimeMillis() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return (loadCount == 0L) ? 0.0 : (double) totalLoadTime / loadCount / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,136 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker guarding calls to a remote service. <br />
+ * <br />
+ *
+ * After a number of consecutive failures the circuit opens and calls are rejected without being attempted. Once the open period has
+ * passed, a single trial call is let through (half-open); its success closes the circuit again, its failure reopens it.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Circuit state.
+     */
+    public enum State {
+        /** Calls are allowed. */
+        CLOSED,
+
+        /** Calls are rejected. */
+        OPEN,
+
+        /** A single trial call is allowed. */
+        HALF_OPEN,
+    }
+
+    private final int failureThreshold;
+
+    private final long openDuration;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private boolean trialInProgress;
+
+    /**
+     * Constructor.
+     *
+     * @param failureThreshold
+     *                             The number of consecutive failures that opens the circuit.
+     * @param openDuration
+     *                             How long the circuit stays open before a trial call is allowed.
+     * @param unit
+     *                             The time unit of the open duration.
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Invalid failure threshold: " + failureThreshold);
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDuration = unit.toNanos(openDuration);
+    }
+
+    /**
+     * Returns whether a call may be attempted now. Every allowed call must be followed by {@link #recordSuccess()} or
+     * {@link #recordFailure()}.
+     *
+     * @return {@code true} if the call is allowed, otherwise {@code false}.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt >= openDuration) {
+                    state = State.HALF_OPEN;
+                    trialInProgress = true;
+                    return true;
+                }
+                return false;
+            case HALF_OPEN:
+            default:
+                if (!trialInProgress) {
+                    trialInProgress = true;
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Records a successful call.
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInProgress = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records a failed call.
+     */
+    public synchronized void recordFailure() {
+        trialInProgress = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the current state.
+     *
+     * @return The state.
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDuration) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
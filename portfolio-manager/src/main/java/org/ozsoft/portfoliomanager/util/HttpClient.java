@@ -0,0 +1,475 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared HTTP client. <br />
+ * <br />
+ *
+ * Connections are reused through the JDK's keep-alive cache: every response body (including error bodies) is fully read and closed, so
+ * the underlying socket is returned to the pool instead of being torn down. Timeouts can be configured per host. Asynchronous requests
+ * run on a bounded pool of daemon threads, so callers such as web request handlers do not have to wait for the remote server.
+ */
+public class HttpClient {
+
+    /** Default HTTP connect timeout in milliseconds. */
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+
+    /** Default HTTP read timeout in milliseconds. */
+    private static final int DEFAULT_READ_TIMEOUT = 5000;
+
+    /** Default number of threads for asynchronous requests. */
+    public static final int DEFAULT_THREAD_COUNT = 16;
+
+    /** Maximum number of queued asynchronous requests. */
+    private static final int MAX_QUEUED_REQUESTS = 1000;
+
+    /** Buffer size for reading response bodies. */
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final HttpClient DEFAULT = new HttpClient(DEFAULT_THREAD_COUNT);
+
+    private final Map<String, Timeouts> hostTimeouts = new ConcurrentHashMap<String, Timeouts>();
+
+    private final ExecutorService executor;
+
+    private volatile Timeouts defaultTimeouts = new Timeouts(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+
+    private volatile String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64)";
+
+    /**
+     * Constructor.
+     *
+     * @param threadCount
+     *                        The maximum number of concurrent asynchronous requests.
+     */
+    public HttpClient(int threadCount) {
+        executor = createExecutor(threadCount);
+    }
+
+    /**
+     * Constructor for a client sharing the thread pool of another client.
+     *
+     * @param executor
+     *                     The thread pool for asynchronous requests.
+     */
+    private HttpClient(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    private static ExecutorService createExecutor(int threadCount) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_REQUESTS), runnable -> {
+                    Thread thread = new Thread(runnable, "http-client-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Returns the shared default instance.
+     *
+     * @return The default HTTP client.
+     */
+    public static HttpClient getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Sets the timeouts for hosts without specific timeouts.
+     *
+     * @param connectTimeout
+     *                           The connect timeout in milliseconds.
+     * @param readTimeout
+     *                           The read timeout in milliseconds.
+     */
+    public void setDefaultTimeouts(int connectTimeout, int readTimeout) {
+        defaultTimeouts = new Timeouts(connectTimeout, readTimeout);
+    }
+
+    /**
+     * Sets the timeouts for a specific host.
+     *
+     * @param host
+     *                           The host name.
+     * @param connectTimeout
+     *                           The connect timeout in milliseconds.
+     * @param readTimeout
+     *                           The read timeout in milliseconds.
+     */
+    public void setHostTimeouts(String host, int connectTimeout, int readTimeout) {
+        hostTimeouts.put(host.toLowerCase(), new Timeouts(connectTimeout, readTimeout));
+    }
+
+    /**
+     * Returns a client with its own timeouts and User-Agent, sharing this client's thread pool and connection reuse. Changing the
+     * settings of the returned client does not affect this client.
+     *
+     * @param connectTimeout
+     *                           The connect timeout in milliseconds.
+     * @param readTimeout
+     *                           The read timeout in milliseconds.
+     * @param userAgent
+     *                           The User-Agent.
+     *
+     * @return The HTTP client.
+     */
+    public HttpClient withSettings(int connectTimeout, int readTimeout, String userAgent) {
+        HttpClient client = new HttpClient(executor);
+        client.defaultTimeouts = new Timeouts(connectTimeout, readTimeout);
+        client.userAgent = userAgent;
+        return client;
+    }
+
+    /**
+     * Sets the User-Agent header sent with every request.
+     *
+     * @param userAgent
+     *                      The User-Agent.
+     */
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * Sends a GET request and reads the response body as text.
+     *
+     * @param uri
+     *                The URI.
+     *
+     * @return The response.
+     *
+     * @throws IOException
+     *                         If the request failed.
+     */
+    public Response get(String uri) throws IOException {
+        return send("GET", uri, (statusCode, headers, body) -> new Response(statusCode, headers, readText(body, headers)));
+    }
+
+    /**
+     * Sends a GET request asynchronously and reads the response body as text.
+     *
+     * @param uri
+     *                The URI.
+     *
+     * @return The future response.
+     */
+    public CompletableFuture<Response> getAsync(final String uri) {
+        CompletableFuture<Response> future = new CompletableFuture<Response>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(get(uri));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Sends a HEAD request.
+     *
+     * @param uri
+     *                The URI.
+     *
+     * @return The response (without body).
+     *
+     * @throws IOException
+     *                         If the request failed.
+     */
+    public Response head(String uri) throws IOException {
+        return send("HEAD", uri, (statusCode, headers, body) -> new Response(statusCode, headers, null));
+    }
+
+    /**
+     * Sends a GET request and passes the response body as a stream to a handler. The stream is closed afterwards.
+     *
+     * @param uri
+     *                    The URI.
+     * @param handler
+     *                    The response body handler.
+     *
+     * @return The result of the handler.
+     *
+     * @throws IOException
+     *                         If the request failed.
+     */
+    public <T> T get(String uri, BodyHandler<T> handler) throws IOException {
+        return send("GET", uri, handler);
+    }
+
+    /**
+     * Sends a GET request and returns the response body as a stream, which must be closed by the caller.
+     *
+     * @param uri
+     *                The URI.
+     *
+     * @return The response body.
+     *
+     * @throws IOException
+     *                         If the request failed or returned an error status code.
+     */
+    public InputStream openStream(String uri) throws IOException {
+        HttpURLConnection connection = connect("GET", uri);
+        int statusCode = connection.getResponseCode();
+        if (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            drain(connection.getErrorStream());
+            throw new IOException(String.format("HTTP request to '%s' failed (HTTP status code: %d)", uri, statusCode));
+        }
+        return connection.getInputStream();
+    }
+
+    /**
+     * Shuts down the thread pool for asynchronous requests.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T send(String method, String uri, BodyHandler<T> handler) throws IOException {
+        HttpURLConnection connection = connect(method, uri);
+        int statusCode = connection.getResponseCode();
+        InputStream body = (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) ? connection.getErrorStream() : connection.getInputStream();
+        if (body == null) {
+            body = new EmptyInputStream();
+        }
+        try {
+            return handler.handle(statusCode, new Headers(connection), new NonClosingInputStream(body));
+        } finally {
+            // Read any remainder so the connection can be reused
+            drain(body);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private HttpURLConnection connect(String method, String uri) throws IOException {
+        URL url = new URL(uri);
+        Timeouts timeouts = hostTimeouts.get(url.getHost().toLowerCase());
+        if (timeouts == null) {
+            timeouts = defaultTimeouts;
+        }
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeouts.connectTimeout);
+        connection.setReadTimeout(timeouts.readTimeout);
+        connection.setRequestProperty("User-Agent", userAgent);
+        if ("HEAD".equals(method)) {
+            // Always ask the server, e.g. for an up-to-date Last-Modified header
+            connection.setUseCaches(false);
+        }
+        return connection;
+    }
+
+    private static String readText(InputStream body, Headers headers) throws IOException {
+        Reader reader = new InputStreamReader(body, getCharset(headers.get("Content-Type")));
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, count);
+        }
+        return sb.toString();
+    }
+
+    private static Charset getCharset(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        return Charset.forName(param.substring(8).replace("\"", "").trim());
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static void drain(InputStream is) {
+        if (is != null) {
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (is.read(buffer) != -1) {
+                    // Discard
+                }
+            } catch (IOException e) {
+                // Connection will not be reused
+            } finally {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles the response of a request.
+     *
+     * @param <T>
+     *            The result type.
+     */
+    public interface BodyHandler<T> {
+
+        /**
+         * Handles a response.
+         *
+         * @param statusCode
+         *                       The HTTP status code.
+         * @param headers
+         *                       The response headers.
+         * @param body
+         *                       The response body (empty for HEAD requests); closed by the client afterwards.
+         *
+         * @return The result.
+         *
+         * @throws IOException
+         *                         If the response could not be read.
+         */
+        T handle(int statusCode, Headers headers, InputStream body) throws IOException;
+    }
+
+    /**
+     * Response headers.
+     */
+    public static class Headers {
+
+        private final HttpURLConnection connection;
+
+        private Headers(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Returns the (last) value of a header.
+         *
+         * @param name
+         *                 The header name.
+         *
+         * @return The header value, or {@code null} if not present.
+         */
+        public String get(String name) {
+            return connection.getHeaderField(name);
+        }
+    }
+
+    /**
+     * HTTP response with a text body.
+     */
+    public static class Response {
+
+        private final int statusCode;
+
+        private final Headers headers;
+
+        private final String body;
+
+        private Response(int statusCode, Headers headers, String body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * Connect and read timeouts.
+     */
+    private static class Timeouts {
+
+        private final int connectTimeout;
+
+        private final int readTimeout;
+
+        private Timeouts(int connectTimeout, int readTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+        }
+    }
+
+    /**
+     * Stream wrapper that ignores {@code close()}, so handlers cannot close the body before it is drained.
+     */
+    private static class NonClosingInputStream extends FilterInputStream {
+
+        private NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // Closed by the client
+        }
+    }
+
+    /**
+     * Empty stream for responses without body.
+     */
+    private static class EmptyInputStream extends InputStream {
+
+        @Override
+        public int read() {
+            return -1;
+        }
+    }
+}
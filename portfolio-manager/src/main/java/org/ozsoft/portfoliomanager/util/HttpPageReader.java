@@ -23,16 +23,16 @@ import java.io.InputStream;
 import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.PasswordAuthentication;
-import java.net.URL;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 
-import org.apache.commons.io.IOUtils;
-
 /**
- * Retrieves HTTP pages from an URL, with support for a HTTP proxy with optional authentication.
+ * Retrieves HTTP pages from an URL, with support for a HTTP proxy with optional authentication. <br />
+ * <br />
+ *
+ * Requests go through the shared {@link HttpClient}, so connections are reused across readers.
  *
  * @author Oscar Stigter
  */
@@ -49,6 +49,9 @@ public class HttpPageReader {
 
     private static final DateFormat DATE_FORMAT = new SimpleDateFormat("dd MMM yyyy", Locale.US);
 
+    /** The shared HTTP client with this reader's (longer) timeouts and User-Agent. */
+    private static final HttpClient HTTP_CLIENT = HttpClient.getDefault().withSettings(CONNECT_TIMEOUT, READ_TIMEOUT, USER_AGENT);
+
     private boolean useProxy = false;
     private String proxyHost = "";
     private int proxyPort = 8080;
@@ -83,15 +86,13 @@ public class HttpPageReader {
      *
      * @return The response content body.
      */
-    @SuppressWarnings("deprecation")
     public String read(String uri) throws IOException {
         updateProxySettings();
-        URL url = new URL(uri);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty("User-Agent", USER_AGENT);
-        connection.setConnectTimeout(CONNECT_TIMEOUT);
-        connection.setReadTimeout(READ_TIMEOUT);
-        return IOUtils.toString(connection.getInputStream());
+        HttpClient.Response response = HTTP_CLIENT.get(uri);
+        if (!response.isSuccessful()) {
+            throw new IOException(String.format("Failed GET request to '%s' (HTTP status code: %d)", uri, response.getStatusCode()));
+        }
+        return response.getBody();
     }
 
     /**
@@ -105,33 +106,26 @@ public class HttpPageReader {
      * @throws IOException
      *                         If the remote file could not be found, or the last modified date could not be determined.
      */
-    @SuppressWarnings("deprecation")
     public long getFileLastModified(String uri) throws IOException {
         long timestamp = -1L;
 
         updateProxySettings();
-        URL url = new URL(uri);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setUseCaches(false);
-        connection.setRequestMethod("HEAD");
-        connection.setConnectTimeout(CONNECT_TIMEOUT);
-        connection.setReadTimeout(READ_TIMEOUT);
-
-        int statusCode = connection.getResponseCode();
+        HttpClient.Response response = HTTP_CLIENT.head(uri);
+        int statusCode = response.getStatusCode();
         if (statusCode == HttpURLConnection.HTTP_OK) {
-            String dateString = connection.getHeaderField("Last-Modified");
+            String dateString = response.getHeader("Last-Modified");
             if (dateString != null && dateString.length() > 16) {
                 dateString = dateString.substring(5, 16);
                 try {
                     timestamp = DATE_FORMAT.parse(dateString).getTime();
                 } catch (ParseException e) {
-                    System.err.format("ERROR: Invalid Last-Modified date '%s' from HEAD request to '%s'\n", dateString, url);
+                    System.err.format("ERROR: Invalid Last-Modified date '%s' from HEAD request to '%s'\n", dateString, uri);
                 }
             } else {
-                System.err.format("ERROR: No Last-Modified header from HEAD request to '%s'\n", url);
+                System.err.format("ERROR: No Last-Modified header from HEAD request to '%s'\n", uri);
             }
         } else {
-            System.err.format("ERROR: Failed HEAD request to '%s' (HTTP status code: %d)\n", url, statusCode);
+            System.err.format("ERROR: Failed HEAD request to '%s' (HTTP status code: %d)\n", uri, statusCode);
         }
 
         return timestamp;
@@ -148,14 +142,9 @@ public class HttpPageReader {
      * @throws IOException
      *                         If the file could not be found or retrieved.
      */
-    @SuppressWarnings("deprecation")
     public InputStream downloadFile(String uri) throws IOException {
         updateProxySettings();
-        URL url = new URL(uri);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setConnectTimeout(CONNECT_TIMEOUT);
-        connection.setReadTimeout(READ_TIMEOUT);
-        return connection.getInputStream();
+        return HTTP_CLIENT.openStream(uri);
     }
 
     /**
@@ -0,0 +1,149 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and error statistics over the most recent calls to a remote service. <br />
+ * <br />
+ *
+ * Keeps a fixed-size ring of the latest samples, so the statistics follow the service's current behaviour rather than its history.
+ */
+public class LatencyStats {
+
+    private final long[] latencies;
+
+    private final boolean[] failures;
+
+    private int count;
+
+    private int next;
+
+    private long totalCount;
+
+    private long totalFailureCount;
+
+    /**
+     * Constructor.
+     *
+     * @param windowSize
+     *                       The number of most recent calls to keep.
+     */
+    public LatencyStats(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+        latencies = new long[windowSize];
+        failures = new boolean[windowSize];
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param nanos
+     *                    The call duration in nanoseconds.
+     * @param success
+     *                    Whether the call succeeded.
+     */
+    public synchronized void record(long nanos, boolean success) {
+        latencies[next] = nanos;
+        failures[next] = !success;
+        next = (next + 1) % latencies.length;
+        if (count < latencies.length) {
+            count++;
+        }
+        totalCount++;
+        if (!success) {
+            totalFailureCount++;
+        }
+    }
+
+    /**
+     * Returns the number of calls in the window.
+     *
+     * @return The number of calls.
+     */
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * Returns the total number of calls recorded.
+     *
+     * @return The total number of calls.
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the total number of failed calls recorded.
+     *
+     * @return The total number of failed calls.
+     */
+    public synchronized long getTotalFailureCount() {
+        return totalFailureCount;
+    }
+
+    /**
+     * Returns the fraction of failed calls in the window.
+     *
+     * @return The error rate (between 0 and 1).
+     */
+    public synchronized double getErrorRate() {
+        if (count == 0) {
+            return 0.0;
+        }
+        int failureCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (failures[i]) {
+                failureCount++;
+            }
+        }
+        return (double) failureCount / count;
+    }
+
+    /**
+     * Returns a latency percentile of the successful calls in the window.
+     *
+     * @param percentile
+     *                       The percentile (between 0 and 100).
+     *
+     * @return The latency in milliseconds, or -1 if there are no successful calls in the window.
+     */
+    public synchronized long getPercentileMillis(double percentile) {
+        long[] samples = new long[count];
+        int sampleCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!failures[i]) {
+                samples[sampleCount++] = latencies[i];
+            }
+        }
+        if (sampleCount == 0) {
+            return -1L;
+        }
+        Arrays.sort(samples, 0, sampleCount);
+        int index = (int) Math.ceil(percentile / 100.0 * sampleCount) - 1;
+        index = Math.max(0, Math.min(sampleCount - 1, index));
+        return TimeUnit.NANOSECONDS.toMillis(samples[index]);
+    }
+}
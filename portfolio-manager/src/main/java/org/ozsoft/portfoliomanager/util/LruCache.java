@@ -0,0 +1,271 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache with least-recently-used eviction and per-entry expiry. <br />
+ * <br />
+ *
+ * Once the cache holds its maximum number of entries, adding a new entry evicts the least recently accessed one. Expired entries are
+ * dropped when read and by {@link #cleanUp()}, which is meant to be called periodically so that entries which are never read again do not
+ * linger. Hits, misses, evictions, expirations and load times are counted for tuning.
+ *
+ * @param <K>
+ *            The key type.
+ * @param <V>
+ *            The value type.
+ */
+public class LruCache<K, V> {
+
+    private final String name;
+
+    private final int maxSize;
+
+    private final LinkedHashMap<K, ValueEntry<V>> entries;
+
+    private long evictionCount;
+
+    private long expirationCount;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private final AtomicLong loadSuccessCount = new AtomicLong();
+
+    private final AtomicLong loadFailureCount = new AtomicLong();
+
+    private final AtomicLong totalLoadTime = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *                    The cache name (used for statistics).
+     * @param maxSize
+     *                    The maximum number of entries.
+     */
+    public LruCache(String name, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        // Insertion order, with entries moved to the end when accessed, so that peek() does not count as an access
+        this.entries = new LinkedHashMap<K, ValueEntry<V>>(16, 0.75f, false) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, ValueEntry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the cache name.
+     *
+     * @return The cache name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the value for a key, if present and not expired.
+     *
+     * @param key
+     *                The key.
+     *
+     * @return The value, or {@code null} if absent or expired.
+     */
+    public synchronized V get(K key) {
+        ValueEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            expirationCount++;
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        entries.remove(key);
+        entries.put(key, entry);
+        return entry.value;
+    }
+
+    /**
+     * Returns the value for a key, if present and not expired, and extends its time to live. Unlike a {@link #get(Object)} followed by a
+     * {@link #put(Object, Object, long, TimeUnit)}, this does not re-add an entry that was removed in between.
+     *
+     * @param key
+     *                  The key.
+     * @param ttl
+     *                  The new time to live.
+     * @param unit
+     *                  The time unit of the time to live.
+     *
+     * @return The value, or {@code null} if absent or expired.
+     */
+    public synchronized V touch(K key, long ttl, TimeUnit unit) {
+        V value = get(key);
+        if (value != null) {
+            entries.put(key, new ValueEntry<V>(value, System.nanoTime() + unit.toNanos(ttl)));
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value for a key, if present and not expired, without counting it as an access (for background tasks that must not keep
+     * entries alive).
+     *
+     * @param key
+     *                The key.
+     *
+     * @return The value, or {@code null} if absent or expired.
+     */
+    public synchronized V peek(K key) {
+        ValueEntry<V> entry = entries.get(key);
+        return (entry != null && !entry.isExpired(System.nanoTime())) ? entry.value : null;
+    }
+
+    /**
+     * Adds or replaces an entry.
+     *
+     * @param key
+     *                  The key.
+     * @param value
+     *                  The value.
+     * @param ttl
+     *                  The time to live.
+     * @param unit
+     *                  The time unit of the time to live.
+     */
+    public synchronized void put(K key, V value, long ttl, TimeUnit unit) {
+        entries.remove(key);
+        entries.put(key, new ValueEntry<V>(value, System.nanoTime() + unit.toNanos(ttl)));
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param key
+     *                The key.
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the current number of entries (including expired entries not yet cleaned up).
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all expired entries.
+     *
+     * @return The number of entries removed.
+     */
+    public synchronized int cleanUp() {
+        int count = 0;
+        long now = System.nanoTime();
+        Iterator<ValueEntry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+                count++;
+            }
+        }
+        expirationCount += count;
+        return count;
+    }
+
+    /**
+     * Records the outcome and duration of a load of a missing or outdated value.
+     *
+     * @param nanos
+     *                    The load duration in nanoseconds.
+     * @param success
+     *                    Whether the load produced a value.
+     */
+    public void recordLoad(long nanos, boolean success) {
+        totalLoadTime.addAndGet(nanos);
+        if (success) {
+            loadSuccessCount.incrementAndGet();
+        } else {
+            loadFailureCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return The cache statistics.
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(name, entries.size(), maxSize, hitCount, missCount, evictionCount, expirationCount, loadSuccessCount.get(),
+                loadFailureCount.get(), totalLoadTime.get());
+    }
+
+    /**
+     * Cache entry with its expiry time.
+     */
+    private static class ValueEntry<V> {
+
+        private final V value;
+
+        private final long expiryTime;
+
+        private ValueEntry(V value, long expiryTime) {
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiryTime > 0L;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. <br />
+ * <br />
+ *
+ * The bucket is refilled continuously at a fixed rate up to its capacity (the maximum burst). Callers that find the bucket empty reserve a
+ * future token and sleep until it becomes available, so concurrent callers are spread out evenly instead of all waking up at once.
+ */
+public class RateLimiter {
+
+    private final double permitsPerSecond;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long lastRefillTime;
+
+    /**
+     * Constructor.
+     *
+     * @param permitsPerSecond
+     *                             The sustained number of permits per second.
+     * @param burst
+     *                             The maximum number of permits that can be acquired without waiting (bucket capacity).
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0.0) {
+            throw new IllegalArgumentException("Invalid rate: " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Invalid burst: " + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = burst;
+        this.tokens = burst;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the sustained number of permits per second.
+     *
+     * @return The number of permits per second.
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Acquires a single permit, blocking until it is available.
+     *
+     * @throws InterruptedException
+     *                                  If interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        long waitTime = reserve();
+        if (waitTime > 0L) {
+            TimeUnit.NANOSECONDS.sleep(waitTime);
+        }
+    }
+
+    /**
+     * Acquires a single permit only if it is immediately available.
+     *
+     * @return {@code true} if the permit was acquired, otherwise {@code false}.
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Reserves a permit and returns how long the caller has to wait before using it.
+     *
+     * @return The wait time in nanoseconds (0 if a permit is available right away).
+     */
+    private synchronized long reserve() {
+        refill();
+        double deficit = 1.0 - tokens;
+        tokens -= 1.0;
+        if (deficit <= 0.0) {
+            return 0L;
+        } else {
+            return (long) (deficit / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Adds the tokens accrued since the last refill, up to the bucket's capacity.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        double accrued = (now - lastRefillTime) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(capacity, tokens + accrued);
+        lastRefillTime = now;
+    }
+}
@@ -1,13 +1,28 @@
 package org.ozsoft.portfoliomanager.util;
 
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpSession;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
 import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.ozsoft.portfoliomanager.domain.User;
 import org.ozsoft.portfoliomanager.repository.UserRepository;
 
 public class SecurityUtils {
 
+    /** Principal attribute holding the user ID, added at login. */
+    public static final String USER_ID_ATTRIBUTE = "uid";
+
+    /** Session attributes holding the resolved user ID and the Google ID it was resolved for. */
+    private static final String SESSION_USER_ID_ATTRIBUTE = SecurityUtils.class.getName() + ".userId";
+    private static final String SESSION_GOOGLE_ID_ATTRIBUTE = SecurityUtils.class.getName() + ".googleId";
+
     public static String getCurrentUserGoogleId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
@@ -21,11 +36,65 @@ public class SecurityUtils {
         throw new SecurityException("No authenticated user found");
     }
 
+    /**
+     * Returns the ID of the current user. The ID is resolved once at login and then read from the principal (or
+     * the session, for logins from before it was added to the principal), so API calls don't look the user up
+     * in the database.
+     */
     public static Long getCurrentUserId(UserRepository userRepository) {
         String googleId = getCurrentUserGoogleId();
-        User user = userRepository.findByGoogleId(googleId)
-                .orElseThrow(() -> new SecurityException("User not found for googleId: " + googleId));
-        return user.getId();
+        Object principalUserId = ((OAuth2User) SecurityContextHolder.getContext().getAuthentication().getPrincipal())
+                .getAttribute(USER_ID_ATTRIBUTE);
+        if (principalUserId instanceof Number) {
+            return ((Number) principalUserId).longValue();
+        }
+        Long userId = getSessionUserId(googleId);
+        if (userId == null) {
+            User user = userRepository.findByGoogleId(googleId)
+                    .orElseThrow(() -> new SecurityException("User not found for googleId: " + googleId));
+            userId = user.getId();
+            setSessionUserId(googleId, userId);
+        }
+        return userId;
+    }
+
+    /**
+     * Stores the ID of the user with the given Google ID in the current session, if there is one. Does not
+     * create a session (stateless cookie sessions have none).
+     */
+    public static void setSessionUserId(String googleId, Long userId) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes && googleId != null && userId != null) {
+            HttpSession session = ((ServletRequestAttributes) attributes).getRequest().getSession(false);
+            if (session != null) {
+                session.setAttribute(SESSION_GOOGLE_ID_ATTRIBUTE, googleId);
+                session.setAttribute(SESSION_USER_ID_ATTRIBUTE, userId);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of an OAuth2 login with the user ID added to the principal's attributes.
+     */
+    public static OAuth2AuthenticationToken withUserId(OAuth2AuthenticationToken authentication, Long userId) {
+        OAuth2User principal = authentication.getPrincipal();
+        Map<String, Object> attributes = new HashMap<>(principal.getAttributes());
+        attributes.put(USER_ID_ATTRIBUTE, userId);
+        OAuth2User user = new DefaultOAuth2User(principal.getAuthorities(), attributes, "sub");
+        return new OAuth2AuthenticationToken(user, authentication.getAuthorities(),
+                authentication.getAuthorizedClientRegistrationId());
+    }
+
+    private static Long getSessionUserId(String googleId) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            // Sessions survive a re-login as another user (the attributes are migrated), so check whose ID it is
+            Object sessionGoogleId = attributes.getAttribute(SESSION_GOOGLE_ID_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+            if (googleId.equals(sessionGoogleId)) {
+                return (Long) attributes.getAttribute(SESSION_USER_ID_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+            }
+        }
+        return null;
     }
 
     public static boolean isUserAuthenticated() {
@@ -0,0 +1,236 @@
+// This file is part of the 'portfolio-manager' (Portfolio Manager)
+// project, an open source stock portfolio manager application
+// written in Java.
+//
+// Copyright 2015 Oscar Stigter
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Write-behind queue that coalesces write requests. <br />
+ * <br />
+ *
+ * The first request schedules a write after the coalescing window; further requests within that window are merged into the same write.
+ * Writes run one at a time on a single background thread, so callers never wait for them. A request made while a write is running
+ * schedules another write, so no change is lost.
+ */
+public class WriteBehindQueue {
+
+    private static final Logger LOGGER = LogManager.getLogger(WriteBehindQueue.class);
+
+    private final Runnable writer;
+
+    private final ScheduledExecutorService executor;
+
+    private volatile long windowMillis;
+
+    private ScheduledFuture<?> pendingWrite;
+
+    /** Identifies the pending write; a scheduled write only runs while it is still the pending one. */
+    private Object pendingToken;
+
+    private long requestCount;
+
+    private long writeCount;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            The name of the writer thread.
+     * @param writer
+     *            The write to perform.
+     * @param windowMillis
+     *            The coalescing window in milliseconds.
+     */
+    public WriteBehindQueue(final String name, Runnable writer, long windowMillis) {
+        this.writer = writer;
+        setWindow(windowMillis);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sets the coalescing window (applies to the next scheduled write).
+     *
+     * @param windowMillis
+     *            The coalescing window in milliseconds.
+     */
+    public void setWindow(long windowMillis) {
+        if (windowMillis < 0L) {
+            throw new IllegalArgumentException("Invalid window: " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Requests a write. Returns immediately.
+     */
+    public synchronized void request() {
+        requestCount++;
+        if (pendingWrite == null && !executor.isShutdown()) {
+            pendingWrite = scheduleWrite(windowMillis);
+        }
+    }
+
+    /**
+     * Performs any pending write right away and waits until all writes have completed.
+     *
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The time unit of the timeout.
+     *
+     * @return {@code true} if all writes have completed, otherwise {@code false} (timeout).
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        ScheduledFuture<?> barrier;
+        synchronized (this) {
+            if (executor.isShutdown()) {
+                return executor.awaitTermination(timeout, unit);
+            }
+            if (pendingWrite != null && pendingWrite.cancel(false)) {
+                // Not started yet; write now instead of at the end of the window. The cancelled write may still be
+                // starting on the writer thread, but then it finds itself superseded and skips the write.
+                pendingWrite = scheduleWrite(0L);
+            }
+            // Tasks run in order on the single writer thread, so this completes after any write scheduled before it
+            barrier = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // Barrier
+                }
+            }, 0L, TimeUnit.MILLISECONDS);
+        }
+        try {
+            barrier.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // Cannot happen (the barrier does nothing)
+            return true;
+        }
+    }
+
+    /**
+     * Flushes any pending write and stops the writer thread; further requests are ignored.
+     *
+     * @param timeout
+     *            The maximum time to wait for the pending write.
+     * @param unit
+     *            The time unit of the timeout.
+     *
+     * @return {@code true} if all writes have completed, otherwise {@code false} (timeout).
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        boolean flushed = flush(timeout, unit);
+        executor.shutdown();
+        return flushed;
+    }
+
+    /**
+     * Returns whether a write is scheduled but has not started yet.
+     *
+     * @return {@code true} if a write is pending, otherwise {@code false}.
+     */
+    public synchronized boolean isPending() {
+        return pendingWrite != null;
+    }
+
+    /**
+     * Returns the number of write requests.
+     *
+     * @return The number of write requests.
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the number of writes performed.
+     *
+     * @return The number of writes.
+     */
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Schedules a write (called while holding the lock).
+     *
+     * @param delayMillis
+     *            The delay in milliseconds.
+     *
+     * @return The scheduled write.
+     */
+    private ScheduledFuture<?> scheduleWrite(long delayMillis) {
+        final Object token = new Object();
+        pendingToken = token;
+        return executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                write(token);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Performs a write, on the writer thread.
+     *
+     * @param token
+     *            The token of the scheduled write.
+     */
+    private void write(Object token) {
+        synchronized (this) {
+            if (token != pendingToken) {
+                // Superseded by the write scheduled by flush()
+                return;
+            }
+            // Requests from now on schedule a new write
+            pendingToken = null;
+            pendingWrite = null;
+            writeCount++;
+        }
+        try {
+            writer.run();
+        } catch (RuntimeException e) {
+            LOGGER.error("Write-behind write failed", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.ozsoft.portfoliomanager.config;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.util.LruCache;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+
+public class CachingSessionRepositoryTest {
+
+    private MapSessionRepository store;
+    private CachingSessionRepository<MapSession> repository;
+
+    @Before
+    public void setUp() {
+        store = spy(new MapSessionRepository(new ConcurrentHashMap<>()));
+        repository = new CachingSessionRepository<>(store, new LruCache<>("sessions", 100), 600, 3600);
+    }
+
+    @After
+    public void tearDown() {
+        repository.destroy();
+    }
+
+    @Test
+    public void servesSessionsFromCache() {
+        CachingSessionRepository.CachedSession<MapSession> session = repository.createSession();
+        session.setAttribute("user", "alice");
+        repository.save(session);
+
+        assertSame(session, repository.findById(session.getId()));
+        assertSame(session, repository.findById(session.getId()));
+        verify(store, never()).findById(anyString());
+    }
+
+    @Test
+    public void batchesLastAccessUpdates() {
+        CachingSessionRepository.CachedSession<MapSession> session = repository.createSession();
+        repository.save(session);
+        verify(store, times(1)).save(any(MapSession.class));
+
+        Instant lastAccess = Instant.now().plusSeconds(10);
+        session.setLastAccessedTime(lastAccess);
+        repository.save(session);
+        session.setLastAccessedTime(lastAccess);
+        repository.save(session);
+        verify(store, times(1)).save(any(MapSession.class));
+
+        repository.flush();
+        verify(store, times(2)).save(any(MapSession.class));
+        assertEquals(lastAccess, store.findById(session.getId()).getLastAccessedTime());
+    }
+
+    @Test
+    public void writesAttributeChangesThrough() {
+        CachingSessionRepository.CachedSession<MapSession> session = repository.createSession();
+        repository.save(session);
+
+        session.setAttribute("user", "bob");
+        repository.save(session);
+
+        verify(store, times(2)).save(any(MapSession.class));
+        assertEquals("bob", store.findById(session.getId()).getAttribute("user"));
+    }
+
+    @Test
+    public void rekeysSessionWhenIdChanges() {
+        CachingSessionRepository.CachedSession<MapSession> session = repository.createSession();
+        repository.save(session);
+        String oldId = session.getId();
+
+        String newId = session.changeSessionId();
+        repository.save(session);
+
+        assertSame(session, repository.findById(newId));
+        assertNull(repository.findById(oldId));
+    }
+
+    @Test
+    public void deletesFromCacheAndStore() {
+        CachingSessionRepository.CachedSession<MapSession> session = repository.createSession();
+        repository.save(session);
+
+        repository.deleteById(session.getId());
+
+        assertNull(repository.findById(session.getId()));
+        assertNull(store.findById(session.getId()));
+    }
+}
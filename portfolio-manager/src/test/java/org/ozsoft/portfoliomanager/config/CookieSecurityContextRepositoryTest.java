@@ -0,0 +1,99 @@
+package org.ozsoft.portfoliomanager.config;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.Cookie;
+
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.util.SecurityUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+
+public class CookieSecurityContextRepositoryTest {
+
+    private final CookieSecurityContextRepository repository = new CookieSecurityContextRepository("secret", 3600);
+
+    @Test
+    public void restoresLoginFromCookie() throws Exception {
+        String value = repository.createCookieValue(createLogin());
+
+        Authentication authentication = repository.readCookie(createRequest(value));
+
+        assertTrue(authentication instanceof OAuth2AuthenticationToken);
+        OAuth2User user = (OAuth2User) authentication.getPrincipal();
+        assertEquals("google-1", user.getName());
+        assertEquals("user@example.com", user.getAttribute("email"));
+        assertEquals(Long.valueOf(42L), user.getAttribute(SecurityUtils.USER_ID_ATTRIBUTE));
+        assertEquals("google", ((OAuth2AuthenticationToken) authentication).getAuthorizedClientRegistrationId());
+    }
+
+    @Test
+    public void rejectsTamperedOrForeignCookies() throws Exception {
+        String value = repository.createCookieValue(createLogin());
+        // Change a character in the middle (the last one may only hold padding bits)
+        int index = value.length() / 2;
+        char c = value.charAt(index);
+        String tampered = value.substring(0, index) + (c == 'A' ? 'B' : 'A') + value.substring(index + 1);
+
+        assertNull(repository.readCookie(createRequest(tampered)));
+        assertNull(repository.readCookie(createRequest("not-a-cookie")));
+        assertNull(new CookieSecurityContextRepository("other", 3600).readCookie(createRequest(value)));
+    }
+
+    @Test
+    public void rejectsExpiredCookies() throws Exception {
+        String value = new CookieSecurityContextRepository("secret", -1).createCookieValue(createLogin());
+
+        assertNull(repository.readCookie(createRequest(value)));
+    }
+
+    @Test
+    public void writesCookieOnlyWhenLoginChanges() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, response);
+        SecurityContext context = repository.loadContext(holder);
+        assertNull(context.getAuthentication());
+
+        context.setAuthentication(createLogin());
+        repository.saveContext(context, holder.getRequest(), holder.getResponse());
+        String setCookie = response.getHeader("Set-Cookie");
+        assertNotNull(setCookie);
+        assertTrue(setCookie.startsWith(CookieSecurityContextRepository.COOKIE_NAME + "="));
+
+        String value = setCookie.substring(setCookie.indexOf('=') + 1, setCookie.indexOf(';'));
+        MockHttpServletResponse nextResponse = new MockHttpServletResponse();
+        holder = new HttpRequestResponseHolder(createRequest(value), nextResponse);
+        context = repository.loadContext(holder);
+        assertNotNull(context.getAuthentication());
+        repository.saveContext(context, holder.getRequest(), holder.getResponse());
+        assertNull(nextResponse.getHeader("Set-Cookie"));
+    }
+
+    private static OAuth2AuthenticationToken createLogin() {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("sub", "google-1");
+        attributes.put("email", "user@example.com");
+        attributes.put("name", "User");
+        attributes.put(SecurityUtils.USER_ID_ATTRIBUTE, 42L);
+        OAuth2User user = new DefaultOAuth2User(Collections.singleton(new OAuth2UserAuthority(attributes)), attributes,
+                "sub");
+        return new OAuth2AuthenticationToken(user, user.getAuthorities(), "google");
+    }
+
+    private static MockHttpServletRequest createRequest(String cookieValue) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(CookieSecurityContextRepository.COOKIE_NAME, cookieValue));
+        return request;
+    }
+}
@@ -0,0 +1,120 @@
+package org.ozsoft.portfoliomanager.domain;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+/**
+ * JUnit test suite for the {@link ChangeLog} class.
+ */
+public class ChangeLogTest {
+
+    private final Gson gson = new Gson();
+
+    private File dir;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("changelog").toFile();
+        file = new File(dir, "portfolio.wal");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(dir, "portfolio.json").delete();
+        dir.delete();
+    }
+
+    @Test
+    public void appendsAndReadsRecords() throws Exception {
+        ChangeLog log = new ChangeLog(file, gson);
+        Assert.assertFalse(log.exists());
+        Assert.assertEquals(0, log.getRecordCount());
+
+        ChangeSet changes = new ChangeSet(true, false, true);
+        changes.getStocks().add(new Stock("AAPL", "Apple"));
+        changes.getDeletedStocks().add("MSFT");
+        log.append(gson.toJson(changes));
+        log.append(gson.toJson(new ChangeSet(false, true, false)));
+
+        Assert.assertTrue(log.exists());
+        Assert.assertEquals(2, log.getRecordCount());
+        List<ChangeSet> records = new ChangeLog(file, gson).read();
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("AAPL", records.get(0).getStocks().get(0).getSymbol());
+        Assert.assertEquals("MSFT", records.get(0).getDeletedStocks().get(0));
+        Assert.assertTrue(records.get(0).isDeductIncomeTax());
+        Assert.assertTrue(records.get(1).isShowClosedPositions());
+    }
+
+    @Test
+    public void ignoresTornLastRecord() throws Exception {
+        ChangeLog log = new ChangeLog(file, gson);
+        log.append(gson.toJson(new ChangeSet(true, false, false)));
+        try (OutputStream os = new FileOutputStream(file, true)) {
+            os.write("{\"roundTotals\":tr".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Assert.assertEquals(1, new ChangeLog(file, gson).read().size());
+    }
+
+    @Test
+    public void clearRemovesRecords() throws Exception {
+        ChangeLog log = new ChangeLog(file, gson);
+        log.append(gson.toJson(new ChangeSet(true, false, false)));
+        log.clear();
+
+        Assert.assertFalse(log.exists());
+        Assert.assertEquals(0, log.getRecordCount());
+        Assert.assertTrue(log.read().isEmpty());
+    }
+
+    @Test
+    public void skipsRecordsInSnapshot() throws Exception {
+        ChangeLog log = new ChangeLog(file, gson);
+        for (long generation = 1L; generation <= 3L; generation++) {
+            ChangeSet changes = new ChangeSet(true, false, false);
+            changes.setGeneration(generation);
+            log.append(gson.toJson(changes));
+        }
+
+        // Left behind by a crash after writing the snapshot of generation 2
+        List<ChangeSet> records = new ChangeLog(file, gson).read(2L);
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(3L, records.get(0).getGeneration());
+        Assert.assertTrue(new ChangeLog(file, gson).read(3L).isEmpty());
+    }
+
+    @Test
+    public void writesSnapshotWhenAppendFails() throws Exception {
+        // The change log cannot be written to a directory
+        Assert.assertTrue(file.mkdir());
+        File snapshotFile = new File(dir, "portfolio.json");
+
+        boolean written = Configuration.writeFiles(snapshotFile, new ChangeLog(file, gson), "{}", () -> "{\"generation\":1}");
+
+        Assert.assertTrue(written);
+        Assert.assertEquals("{\"generation\":1}", new String(Files.readAllBytes(snapshotFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reportsFailedSnapshot() throws Exception {
+        // The snapshot cannot be written to a missing directory
+        File snapshotFile = new File(new File(dir, "missing"), "portfolio.json");
+
+        Assert.assertFalse(Configuration.writeFiles(snapshotFile, new ChangeLog(file, gson), null, () -> "{}"));
+    }
+}
@@ -0,0 +1,168 @@
+package org.ozsoft.portfoliomanager.domain;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.test.TestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.gson.Gson;
+
+/**
+ * JUnit test suite for the change tracking of the {@link Configuration} class (the changes written on each save).
+ */
+public class ConfigurationChangesTest {
+
+    private static final String SYMBOL = "CHGTST";
+
+    private Configuration config;
+
+    @Before
+    public void setUp() {
+        config = Configuration.getInstance();
+        takeChanges();
+    }
+
+    @After
+    public void tearDown() {
+        for (Transaction transaction : config.getTransactions(SYMBOL)) {
+            config.deleteTransaction(transaction);
+        }
+        Stock stock = config.getStock(SYMBOL);
+        if (stock != null) {
+            config.deleteStock(stock);
+        }
+        takeChanges();
+    }
+
+    @Test
+    public void takeChangesStartsTrackingAnew() {
+        Stock stock = new Stock(SYMBOL, "Change Test");
+        config.addStock(stock);
+        Transaction transaction = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 10, 5.00, 1.00);
+        config.addTransaction(transaction);
+
+        ChangeSet changes = takeChanges();
+        Assert.assertEquals(1, changes.getStocks().size());
+        Assert.assertSame(stock, changes.getStocks().get(0));
+        Assert.assertEquals(1, changes.getTransactions().size());
+        Assert.assertSame(transaction, changes.getTransactions().get(0));
+
+        Assert.assertTrue(takeChanges().isEmpty());
+    }
+
+    @Test
+    public void restoreChangesKeepsNewerChanges() {
+        Stock stock = new Stock(SYMBOL, "Change Test");
+        config.addStock(stock);
+        Transaction kept = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 10, 5.00, 1.00);
+        Transaction deleted = TestUtils.createTransaction(0, 2000L, TransactionType.BUY, SYMBOL, 10, 6.00, 1.00);
+        config.addTransaction(kept);
+        config.addTransaction(deleted);
+        ChangeSet failed = takeChanges();
+
+        // Changed after the failed save
+        config.deleteTransaction(deleted);
+        restoreChanges(failed);
+
+        ChangeSet changes = takeChanges();
+        Assert.assertEquals(1, changes.getStocks().size());
+        Assert.assertEquals(1, changes.getTransactions().size());
+        Assert.assertSame(kept, changes.getTransactions().get(0));
+        Assert.assertEquals(1, changes.getDeletedTransactions().size());
+        Assert.assertEquals(2000L, changes.getDeletedTransactions().get(0).getDate());
+    }
+
+    @Test
+    public void restoredDeletesPrecedeNewerUpserts() {
+        Transaction original = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 10, 5.00, 1.00);
+        config.addTransaction(original);
+        takeChanges();
+
+        // Delete (save fails), then re-add under the same symbol and date
+        config.deleteTransaction(original);
+        ChangeSet failed = takeChanges();
+        Transaction replacement = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 20, 5.50, 1.00);
+        config.addTransaction(replacement);
+        config.deleteTransaction(replacement);
+        Transaction latest = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 30, 6.00, 1.00);
+        config.addTransaction(latest);
+        restoreChanges(failed);
+
+        // Deletes are applied before upserts, so the latest transaction survives the save
+        ChangeSet changes = takeChanges();
+        Assert.assertEquals(2, changes.getDeletedTransactions().size());
+        Assert.assertEquals(1, changes.getTransactions().size());
+        Assert.assertSame(latest, changes.getTransactions().get(0));
+    }
+
+    @Test
+    public void replaysDeleteOfSameDayTransactionById() {
+        Transaction first = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 10, 5.00, 1.00);
+        Transaction second = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 20, 6.00, 1.00);
+        config.addTransaction(first);
+        config.addTransaction(second);
+        takeChanges();
+
+        // Logged as a change log record, then back to the state before it
+        config.deleteTransaction(second);
+        Gson gson = new Gson();
+        ChangeSet record = gson.fromJson(gson.toJson(takeChanges()), ChangeSet.class);
+        config.addTransaction(second);
+        takeChanges();
+
+        synchronized (config) {
+            ReflectionTestUtils.invokeMethod(config, "apply", record);
+        }
+        Assert.assertEquals(1, config.getTransactions(SYMBOL).size());
+        Assert.assertSame(first, config.getTransactions(SYMBOL).get(0));
+        Assert.assertNull(config.getTransaction(second.getId()));
+    }
+
+    @Test
+    public void invalidTransactionIsNotTracked() {
+        config.addStock(new Stock(SYMBOL, "Change Test"));
+        Transaction buy = TestUtils.createTransaction(0, 1000L, TransactionType.BUY, SYMBOL, 10, 5.00, 1.00);
+        config.addTransaction(buy);
+        config.getPortfolio();
+        takeChanges();
+
+        try {
+            config.addTransaction(TestUtils.createTransaction(0, 2000L, TransactionType.SELL, SYMBOL, 20, 6.00, 1.00));
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            config.addTransaction(TestUtils.createTransaction(0, 3000L, TransactionType.SELL, SYMBOL, 5, 6.00, 1.00));
+            // The SELL depends on the shares of the BUY
+            config.deleteTransaction(buy);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(2, config.getTransactions(SYMBOL).size());
+        Assert.assertSame(buy, config.getTransaction(buy.getId()));
+        ChangeSet changes = takeChanges();
+        Assert.assertEquals(1, changes.getTransactions().size());
+        Assert.assertTrue(changes.getDeletedTransactions().isEmpty());
+        TestUtils.assertEquals(5, config.getPortfolio().getPosition(SYMBOL).getNoOfShares());
+
+        // The tear down deletes the BUY, which the SELL depends on
+        config.deleteTransaction(config.getTransactions(SYMBOL).get(1));
+    }
+
+    private ChangeSet takeChanges() {
+        synchronized (config) {
+            return ReflectionTestUtils.invokeMethod(config, "takeChanges");
+        }
+    }
+
+    private void restoreChanges(ChangeSet changes) {
+        synchronized (config) {
+            ReflectionTestUtils.invokeMethod(config, "restoreChanges", changes);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.ozsoft.portfoliomanager.domain;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test suite for the {@link Exchange} class.
+ */
+public class ExchangeTest {
+
+    private static final ZoneId KOLKATA = ZoneId.of("Asia/Kolkata");
+
+    @Test
+    public void tradingHours() {
+        Set<LocalDate> noHolidays = Collections.emptySet();
+        // Monday 2026-10-19
+        Assert.assertTrue(Exchange.NSE.isOpen(ZonedDateTime.of(2026, 10, 19, 10, 0, 0, 0, KOLKATA), noHolidays));
+        Assert.assertFalse(Exchange.NSE.isOpen(ZonedDateTime.of(2026, 10, 19, 9, 0, 0, 0, KOLKATA), noHolidays));
+        Assert.assertFalse(Exchange.NSE.isOpen(ZonedDateTime.of(2026, 10, 19, 15, 30, 0, 0, KOLKATA), noHolidays));
+        // Saturday
+        Assert.assertFalse(Exchange.NSE.isOpen(ZonedDateTime.of(2026, 10, 17, 10, 0, 0, 0, KOLKATA), noHolidays));
+        // Holiday
+        Assert.assertFalse(Exchange.NSE.isOpen(ZonedDateTime.of(2026, 10, 19, 10, 0, 0, 0, KOLKATA),
+                Collections.singleton(LocalDate.of(2026, 10, 19))));
+        // Same instant in another time zone
+        Assert.assertTrue(Exchange.NSE.isOpen(ZonedDateTime.of(2026, 10, 19, 10, 0, 0, 0, KOLKATA).withZoneSameInstant(ZoneId.of("UTC")),
+                noHolidays));
+        Assert.assertTrue(Exchange.UNKNOWN.isOpen(ZonedDateTime.now(), noHolidays));
+    }
+
+    @Test
+    public void lastClose() {
+        Set<LocalDate> noHolidays = Collections.emptySet();
+        // Monday morning -> previous Friday's close
+        ZonedDateTime lastClose = Exchange.NSE.getLastClose(ZonedDateTime.of(2026, 10, 19, 10, 0, 0, 0, KOLKATA), noHolidays);
+        Assert.assertEquals(ZonedDateTime.of(2026, 10, 16, 15, 30, 0, 0, KOLKATA), lastClose);
+        // Monday evening -> same day's close
+        lastClose = Exchange.NSE.getLastClose(ZonedDateTime.of(2026, 10, 19, 18, 0, 0, 0, KOLKATA), noHolidays);
+        Assert.assertEquals(ZonedDateTime.of(2026, 10, 19, 15, 30, 0, 0, KOLKATA), lastClose);
+    }
+
+    @Test
+    public void fromName() {
+        Assert.assertEquals(Exchange.NSE, Exchange.fromName("XNSE"));
+        Assert.assertEquals(Exchange.NASDAQ, Exchange.fromName("nasdaq"));
+        Assert.assertEquals(Exchange.NYSE, Exchange.fromName("XNYS"));
+        Assert.assertEquals(Exchange.UNKNOWN, Exchange.fromName("FOO"));
+        Assert.assertEquals(Exchange.UNKNOWN, Exchange.fromName(null));
+    }
+}
@@ -0,0 +1,162 @@
+package org.ozsoft.portfoliomanager.domain;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.test.TestUtils;
+
+/**
+ * JUnit test suite for the incremental updates of the {@link Portfolio} class (adding and removing transactions once attached).
+ */
+public class PortfolioIncrementalTest {
+
+    private final Map<String, Stock> stocks = new HashMap<String, Stock>();
+
+    private boolean deductIncomeTax;
+
+    @Before
+    public void setUp() {
+        deductIncomeTax = Configuration.getInstance().isDeductIncomeTax();
+        Configuration.getInstance().setDeductIncomeTax(false);
+        addStock("TST1", "20.00", "1.00");
+        addStock("TST2", "10.00", "0.25");
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.getInstance().setDeductIncomeTax(deductIncomeTax);
+    }
+
+    @Test
+    public void addInOrder() {
+        Portfolio portfolio = createPortfolio();
+        portfolio.addTransaction(TestUtils.createTransaction(1, 1L, TransactionType.BUY, "TST1", 100, 20.00, 5.00));
+        portfolio.addTransaction(TestUtils.createTransaction(2, 2L, TransactionType.BUY, "TST2", 100, 10.00, 1.00));
+        portfolio.addTransaction(TestUtils.createTransaction(3, 3L, TransactionType.DIVIDEND, "TST1", 100, 1.00, 0.00));
+        portfolio.addTransaction(TestUtils.createTransaction(4, 4L, TransactionType.SELL, "TST2", 100, 15.00, 2.00));
+
+        TestUtils.assertEquals(2005.00, portfolio.getCurrentCost());
+        TestUtils.assertEquals(3008.00, portfolio.getTotalCost());
+        TestUtils.assertEquals(100.00, portfolio.getTotalIncome());
+        TestUtils.assertEquals(498.00, portfolio.getRealizedResult());
+        TestUtils.assertEquals(592.00, portfolio.getTotalReturn());
+        assertRebuiltEquals(portfolio);
+    }
+
+    @Test
+    public void addOutOfOrder() {
+        Portfolio portfolio = createPortfolio();
+        portfolio.addTransaction(TestUtils.createTransaction(1, 1L, TransactionType.BUY, "TST1", 100, 20.00, 5.00));
+        portfolio.addTransaction(TestUtils.createTransaction(3, 3L, TransactionType.SELL, "TST1", 50, 25.00, 5.00));
+        // Inserted before the SELL, so the position is rebuilt
+        portfolio.addTransaction(TestUtils.createTransaction(2, 2L, TransactionType.BUY, "TST1", 50, 22.00, 5.00));
+        portfolio.addTransaction(TestUtils.createTransaction(4, 4L, TransactionType.SELL, "TST1", 100, 25.00, 5.00));
+
+        TestUtils.assertEquals(0.00, portfolio.getCurrentCost());
+        TestUtils.assertEquals(3120.00, portfolio.getTotalCost());
+        TestUtils.assertEquals(630.00, portfolio.getRealizedResult());
+        Assert.assertEquals(4, portfolio.getTransactions().size());
+        assertRebuiltEquals(portfolio);
+    }
+
+    @Test
+    public void remove() {
+        Portfolio portfolio = createPortfolio();
+        Transaction buy = TestUtils.createTransaction(1, 1L, TransactionType.BUY, "TST1", 100, 20.00, 5.00);
+        Transaction dividend = TestUtils.createTransaction(2, 2L, TransactionType.DIVIDEND, "TST1", 100, 1.00, 0.00);
+        Transaction otherBuy = TestUtils.createTransaction(3, 3L, TransactionType.BUY, "TST2", 100, 10.00, 1.00);
+        portfolio.addTransaction(buy);
+        portfolio.addTransaction(dividend);
+        portfolio.addTransaction(otherBuy);
+
+        portfolio.removeTransaction(dividend);
+        TestUtils.assertEquals(0.00, portfolio.getTotalIncome());
+        TestUtils.assertEquals(3006.00, portfolio.getCurrentCost());
+        assertRebuiltEquals(portfolio);
+
+        portfolio.removeTransaction(otherBuy);
+        Assert.assertNull(portfolio.getPosition("TST2"));
+        TestUtils.assertEquals(2005.00, portfolio.getCurrentCost());
+        assertRebuiltEquals(portfolio);
+
+        // Removing an unknown transaction has no effect
+        portfolio.removeTransaction(TestUtils.createTransaction(1, 1L, TransactionType.BUY, "TST1", 100, 20.00, 5.00));
+        TestUtils.assertEquals(2005.00, portfolio.getCurrentCost());
+        Assert.assertEquals(1, portfolio.getTransactions().size());
+    }
+
+    @Test
+    public void invalidTransactionIsNotAdded() {
+        Portfolio portfolio = createPortfolio();
+        portfolio.addTransaction(TestUtils.createTransaction(1, 1L, TransactionType.BUY, "TST1", 100, 20.00, 5.00));
+        try {
+            portfolio.addTransaction(TestUtils.createTransaction(2, 2L, TransactionType.SELL, "TST1", 200, 25.00, 5.00));
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(1, portfolio.getTransactions().size());
+        TestUtils.assertEquals(2005.00, portfolio.getCurrentCost());
+        TestUtils.assertEquals(2005.00, portfolio.getTotalCost());
+        TestUtils.assertEquals(0.00, portfolio.getRealizedResult());
+        assertRebuiltEquals(portfolio);
+    }
+
+    @Test
+    public void invalidRemovalIsRolledBack() {
+        Portfolio portfolio = createPortfolio();
+        Transaction buy = TestUtils.createTransaction(1, 1L, TransactionType.BUY, "TST1", 100, 20.00, 5.00);
+        portfolio.addTransaction(buy);
+        portfolio.addTransaction(TestUtils.createTransaction(2, 2L, TransactionType.SELL, "TST1", 50, 25.00, 5.00));
+        try {
+            // The SELL depends on the shares of the BUY
+            portfolio.removeTransaction(buy);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(2, portfolio.getTransactions().size());
+        Assert.assertSame(buy, portfolio.getTransactions().get(0));
+        Assert.assertNotNull(portfolio.getPosition("TST1"));
+        TestUtils.assertEquals(1002.50, portfolio.getCurrentCost());
+        assertRebuiltEquals(portfolio);
+    }
+
+    private void addStock(String symbol, String price, String divRate) {
+        Stock stock = new Stock(symbol, symbol);
+        stock.setPrice(new BigDecimal(price));
+        stock.setDivRate(new BigDecimal(divRate));
+        stocks.put(symbol, stock);
+    }
+
+    private Portfolio createPortfolio() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.update(stocks::get);
+        return portfolio;
+    }
+
+    /**
+     * Asserts that a portfolio has the same totals as one rebuilt from its transactions.
+     */
+    private void assertRebuiltEquals(Portfolio portfolio) {
+        Portfolio rebuilt = new Portfolio();
+        for (Transaction transaction : portfolio.getTransactions()) {
+            rebuilt.addTransaction(transaction);
+        }
+        rebuilt.update(stocks::get);
+        TestUtils.assertEquals(rebuilt.getCurrentCost(), portfolio.getCurrentCost());
+        TestUtils.assertEquals(rebuilt.getCurrentValue(), portfolio.getCurrentValue());
+        TestUtils.assertEquals(rebuilt.getTotalCost(), portfolio.getTotalCost());
+        TestUtils.assertEquals(rebuilt.getTotalIncome(), portfolio.getTotalIncome());
+        TestUtils.assertEquals(rebuilt.getRealizedResult(), portfolio.getRealizedResult());
+        TestUtils.assertEquals(rebuilt.getTotalReturn(), portfolio.getTotalReturn());
+        Assert.assertEquals(rebuilt.getPositions().size(), portfolio.getPositions().size());
+    }
+}
@@ -0,0 +1,139 @@
+package org.ozsoft.portfoliomanager.domain;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries.Period;
+import org.ozsoft.portfoliomanager.test.TestUtils;
+
+/**
+ * JUnit test suite for the {@link PortfolioStatistics} class.
+ */
+public class PortfolioStatisticsTest {
+
+    private static final double DELTA = 0.01;
+
+    private boolean deductIncomeTax;
+
+    @Before
+    public void setUp() {
+        deductIncomeTax = Configuration.getInstance().isDeductIncomeTax();
+        Configuration.getInstance().setDeductIncomeTax(false);
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.getInstance().setDeductIncomeTax(deductIncomeTax);
+    }
+
+    @Test
+    public void computesPeriods() {
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        // Unsorted on purpose
+        transactions.add(TestUtils.createTransaction(3, toMillis(2024, 4, 2), TransactionType.SELL, "TST", 50, 30.00, 5.00));
+        transactions.add(TestUtils.createTransaction(1, toMillis(2023, 12, 20), TransactionType.BUY, "TST", 100, 20.00, 5.00));
+        transactions.add(TestUtils.createTransaction(2, toMillis(2024, 2, 15), TransactionType.DIVIDEND, "TST", 100, 0.50, 0.00));
+        PortfolioStatistics statistics = PortfolioStatistics.compute(transactions, LocalDate.of(2024, 4, 30), ZoneOffset.UTC);
+
+        List<Period> months = statistics.getMonths();
+        Assert.assertEquals(5, months.size());
+        Assert.assertEquals(LocalDate.of(2023, 12, 20), months.get(0).getStartDate());
+        Assert.assertEquals(12, months.get(0).getDays());
+        TestUtils.assertEquals(2005.00, months.get(0).getAverageCost());
+        TestUtils.assertEquals(50.00, months.get(2).getIncome());
+        TestUtils.assertEquals((2005.00 + 29 * 1002.50) / 30, months.get(4).getAverageCost());
+        TestUtils.assertEquals(1002.50, months.get(4).getCost());
+        TestUtils.assertEquals(492.50, months.get(4).getRealizedResult());
+
+        List<Period> quarters = statistics.getQuarters();
+        Assert.assertEquals(3, quarters.size());
+        Assert.assertEquals(LocalDate.of(2023, 12, 31), quarters.get(0).getEndDate());
+        Assert.assertEquals(LocalDate.of(2024, 1, 1), quarters.get(1).getStartDate());
+        TestUtils.assertEquals(50.00, quarters.get(1).getIncome());
+        TestUtils.assertEquals(2005.00, quarters.get(1).getAverageCost());
+        Assert.assertEquals(LocalDate.of(2024, 4, 30), quarters.get(2).getEndDate());
+
+        Assert.assertEquals(2, statistics.getYears().size());
+        Assert.assertEquals(91 + 30, statistics.getYears().get(1).getDays());
+
+        Period overall = statistics.getOverall();
+        Assert.assertEquals(LocalDate.of(2023, 12, 20), overall.getStartDate());
+        Assert.assertEquals(LocalDate.of(2024, 4, 30), overall.getEndDate());
+        Assert.assertEquals(133, overall.getDays());
+        TestUtils.assertEquals(50.00, overall.getIncome());
+        TestUtils.assertEquals((104 * 2005.00 + 29 * 1002.50) / 133, overall.getAverageCost());
+
+        // Less than a year counts as one year
+        double expectedCagr = 542.50 / overall.getAverageCost().doubleValue() * 100.0;
+        Assert.assertEquals(expectedCagr, statistics.getAnnualizedReturn(new BigDecimal("542.50")), DELTA);
+    }
+
+    @Test
+    public void annualizedReturnOfTotalLossIsMinusHundredPercent() {
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        transactions.add(TestUtils.createTransaction(1, toMillis(2022, 1, 1), TransactionType.BUY, "TST", 100, 20.00, 0.00));
+        PortfolioStatistics statistics = PortfolioStatistics.compute(transactions, LocalDate.of(2024, 7, 1), ZoneOffset.UTC);
+
+        Assert.assertEquals(-100.0, statistics.getAnnualizedReturn(new BigDecimal("-2000.00")), DELTA);
+        Assert.assertEquals(-100.0, statistics.getAnnualizedReturn(new BigDecimal("-2500.00")), DELTA);
+        double expectedCagr = (Math.pow(0.5, 1.0 / (statistics.getOverall().getDays() / 365.0)) - 1.0) * 100.0;
+        Assert.assertEquals(expectedCagr, statistics.getAnnualizedReturn(new BigDecimal("-1000.00")), DELTA);
+    }
+
+    @Test
+    public void handlesNoTransactions() {
+        PortfolioStatistics statistics = PortfolioStatistics.compute(Collections.<Transaction>emptyList(), LocalDate.now(), ZoneOffset.UTC);
+        Assert.assertNull(statistics.getOverall());
+        Assert.assertTrue(statistics.getMonths().isEmpty());
+        Assert.assertEquals(0.0, statistics.getAnnualizedReturn(BigDecimal.TEN), DELTA);
+    }
+
+    @Test
+    public void periodsAddUpToOverall() {
+        Random random = new Random(42L);
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        LocalDate date = LocalDate.of(1995, 3, 17);
+        for (int i = 1; i <= 20000; i++) {
+            String symbol = "TST" + random.nextInt(50);
+            TransactionType type = (random.nextInt(4) == 0) ? TransactionType.DIVIDEND : TransactionType.BUY;
+            transactions.add(TestUtils.createTransaction(i, toMillis(date), type, symbol, 1 + random.nextInt(100), 1.0 + random.nextInt(100),
+                    random.nextInt(10)));
+            date = date.plusDays(random.nextInt(2));
+        }
+        LocalDate lastDate = date.plusDays(100);
+
+        PortfolioStatistics statistics = PortfolioStatistics.compute(transactions, lastDate, ZoneOffset.UTC);
+
+        Period overall = statistics.getOverall();
+        Assert.assertEquals(lastDate, overall.getEndDate());
+        for (List<Period> periods : Arrays.asList(statistics.getMonths(), statistics.getQuarters(), statistics.getYears())) {
+            int days = 0;
+            BigDecimal income = BigDecimal.ZERO;
+            for (Period period : periods) {
+                days += period.getDays();
+                income = income.add(period.getIncome());
+            }
+            Assert.assertEquals(overall.getDays(), days);
+            Assert.assertEquals(0, overall.getIncome().compareTo(income));
+            Assert.assertEquals(lastDate, periods.get(periods.size() - 1).getEndDate());
+        }
+    }
+
+    private static long toMillis(int year, int month, int day) {
+        return toMillis(LocalDate.of(year, month, day));
+    }
+
+    private static long toMillis(LocalDate date) {
+        return date.atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -0,0 +1,171 @@
+package org.ozsoft.portfoliomanager.domain;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries.Granularity;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries.Period;
+import org.ozsoft.portfoliomanager.test.TestUtils;
+
+/**
+ * JUnit test suite for the {@link ValuationSeries} class.
+ */
+public class ValuationSeriesTest {
+
+    private boolean deductIncomeTax;
+
+    @Before
+    public void setUp() {
+        deductIncomeTax = Configuration.getInstance().isDeductIncomeTax();
+        Configuration.getInstance().setDeductIncomeTax(false);
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.getInstance().setDeductIncomeTax(deductIncomeTax);
+    }
+
+    @Test
+    public void rebuildsFromTransactions() {
+        ValuationSeries series = createSeries();
+        Assert.assertEquals(LocalDate.of(2024, 1, 10), series.getFirstDate());
+        Assert.assertEquals(LocalDate.of(2024, 4, 30), series.getLastDate());
+        Assert.assertEquals(112, series.size());
+        assertAmount("2005.00", series.getCost(LocalDate.of(2024, 4, 1)));
+        assertAmount("1002.50", series.getCost(LocalDate.of(2024, 4, 2)));
+        Assert.assertNull(series.getValue(LocalDate.of(2024, 4, 2)));
+    }
+
+    @Test
+    public void queriesByMonth() {
+        List<Period> periods = createSeries().query(null, null, Granularity.MONTH);
+        Assert.assertEquals(4, periods.size());
+
+        Period january = periods.get(0);
+        Assert.assertEquals(LocalDate.of(2024, 1, 10), january.getStartDate());
+        Assert.assertEquals(LocalDate.of(2024, 1, 31), january.getEndDate());
+        Assert.assertEquals(22, january.getDays());
+        assertAmount("2005.00", january.getAverageCost());
+        assertAmount("0.00", january.getIncome());
+        Assert.assertNull(january.getValue());
+
+        assertAmount("50.00", periods.get(1).getIncome());
+        assertAmount("0.00", periods.get(2).getIncome());
+
+        Period april = periods.get(3);
+        Assert.assertEquals(30, april.getDays());
+        // (2005.00 + 29 * 1002.50) / 30, rounded to cents
+        assertAmount("1035.92", april.getAverageCost());
+        assertAmount("1002.50", april.getCost());
+        assertAmount("492.50", april.getRealizedResult());
+    }
+
+    @Test
+    public void queriesByQuarterAndYearWithinRange() {
+        ValuationSeries series = createSeries();
+
+        List<Period> quarters = series.query(null, null, Granularity.QUARTER);
+        Assert.assertEquals(2, quarters.size());
+        Assert.assertEquals(LocalDate.of(2024, 3, 31), quarters.get(0).getEndDate());
+        assertAmount("50.00", quarters.get(0).getIncome());
+        assertAmount("492.50", quarters.get(1).getRealizedResult());
+
+        List<Period> years = series.query(LocalDate.of(2024, 2, 16), LocalDate.of(2025, 1, 1), Granularity.YEAR);
+        Assert.assertEquals(1, years.size());
+        Assert.assertEquals(LocalDate.of(2024, 2, 16), years.get(0).getStartDate());
+        Assert.assertEquals(LocalDate.of(2024, 4, 30), years.get(0).getEndDate());
+        assertAmount("0.00", years.get(0).getIncome());
+        assertAmount("492.50", years.get(0).getRealizedResult());
+
+        Assert.assertTrue(series.query(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31), Granularity.DAY).isEmpty());
+        Assert.assertNull(series.summarize(LocalDate.of(2025, 1, 1), null));
+    }
+
+    @Test
+    public void appendsDays() {
+        ValuationSeries series = new ValuationSeries();
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        append(series, day, "100", "110", "0", "0");
+        append(series, day.plusDays(2), "100", "120", "5", "0");
+        Assert.assertEquals(3, series.size());
+        assertAmount("100.00", series.getCost(day.plusDays(1)));
+        Assert.assertNull(series.getValue(day.plusDays(1)));
+
+        // Replaces the last day
+        append(series, day.plusDays(2), "100", "125", "5", "0");
+        Assert.assertEquals(3, series.size());
+        Period period = series.summarize(null, null);
+        assertAmount("125.00", period.getValue());
+        assertAmount("5.00", period.getIncome());
+
+        try {
+            append(series, day.plusDays(1), "100", "125", "5", "0");
+            Assert.fail("Appending before the last day should fail");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void storesColumnsAndKeepsValuesOnRebuild() {
+        ValuationSeries recorded = new ValuationSeries();
+        append(recorded, LocalDate.of(2024, 4, 29), "1002.5", "1500", "50", "492.5");
+        append(recorded, LocalDate.of(2024, 4, 30), "1002.5", "1550", "50", "492.5");
+
+        ValuationSeries stored = ValuationSeries.fromBytes(recorded.getFirstDate(), recorded.toBytes());
+        Assert.assertEquals(2, stored.size());
+        assertAmount("1550.00", stored.getValue(LocalDate.of(2024, 4, 30)));
+        Assert.assertEquals(0, ValuationSeries.fromBytes(null, new byte[0]).size());
+
+        ValuationSeries rebuilt = createSeries();
+        rebuilt.copyValues(stored);
+        assertAmount("1500.00", rebuilt.getValue(LocalDate.of(2024, 4, 29)));
+        assertAmount("1550.00", rebuilt.getValue(LocalDate.of(2024, 4, 30)));
+        Assert.assertNull(rebuilt.getValue(LocalDate.of(2024, 4, 28)));
+    }
+
+    @Test
+    public void keepsExactAmounts() {
+        ValuationSeries series = new ValuationSeries();
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        append(series, day, "0.1", "0.1", "0.1", "0");
+        append(series, day.plusDays(1), "0.3", "0.2", "0.3", "0");
+
+        Period period = ValuationSeries.fromBytes(series.getFirstDate(), series.toBytes()).summarize(null, null);
+        Assert.assertEquals("0.20", period.getAverageCost().toString());
+        Assert.assertEquals("0.30", period.getIncome().toString());
+        Assert.assertEquals("0.20", period.getValue().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDataWithoutHeader() {
+        ValuationSeries.fromBytes(LocalDate.of(2024, 4, 30), new byte[4 * Long.BYTES]);
+    }
+
+    private static void append(ValuationSeries series, LocalDate date, String cost, String value, String income, String realized) {
+        series.append(date, new BigDecimal(cost), new BigDecimal(value), new BigDecimal(income), new BigDecimal(realized));
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        Assert.assertEquals(new BigDecimal(expected), actual);
+    }
+
+    private static ValuationSeries createSeries() {
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        transactions.add(TestUtils.createTransaction(1, toMillis(2024, 1, 10), TransactionType.BUY, "TST", 100, 20.00, 5.00));
+        transactions.add(TestUtils.createTransaction(2, toMillis(2024, 2, 15), TransactionType.DIVIDEND, "TST", 100, 0.50, 0.00));
+        transactions.add(TestUtils.createTransaction(3, toMillis(2024, 4, 2), TransactionType.SELL, "TST", 50, 30.00, 5.00));
+        return ValuationSeries.fromTransactions(transactions, LocalDate.of(2024, 4, 30), ZoneOffset.UTC);
+    }
+
+    private static long toMillis(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
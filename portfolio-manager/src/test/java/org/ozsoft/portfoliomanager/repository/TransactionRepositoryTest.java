@@ -0,0 +1,78 @@
+package org.ozsoft.portfoliomanager.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ozsoft.portfoliomanager.entity.TransactionEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * JUnit test suite for the paged queries of the {@link TransactionRepository} interface.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:transactionrepositorytest")
+public class TransactionRepositoryTest {
+
+    @Autowired
+    private TransactionRepository repository;
+
+    /** IDs of the saved transactions, in (date, id) order. */
+    private final int[] ids = new int[10];
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < ids.length; i++) {
+            TransactionEntity entity = new TransactionEntity(1L);
+            entity.setSymbol(i % 2 == 0 ? "AAA" : "BBB");
+            entity.setType(i < 8 ? "BUY" : "SELL");
+            entity.setDate((long) (i / 3));
+            entity.setNoOfShares(BigDecimal.ONE);
+            entity.setPrice(BigDecimal.ONE);
+            ids[i] = repository.save(entity).getId();
+        }
+    }
+
+    @Test
+    public void pagesByOffset() {
+        List<TransactionEntity> page = findPage(null, null, null, null, null, null, 3);
+        Assert.assertEquals(3, page.size());
+        Assert.assertEquals(ids[3], (int) page.get(0).getId());
+        Assert.assertEquals(ids[5], (int) page.get(2).getId());
+    }
+
+    @Test
+    public void pagesAfterPosition() {
+        // Continues with the next transaction on the same date
+        List<TransactionEntity> page = findPage(null, null, null, null, 1L, ids[4], 0);
+        Assert.assertEquals(3, page.size());
+        Assert.assertEquals(ids[5], (int) page.get(0).getId());
+        Assert.assertEquals(ids[7], (int) page.get(2).getId());
+    }
+
+    @Test
+    public void appliesOnlyGivenFilters() {
+        Assert.assertEquals(5, findPage("AAA", null, null, null, null, null, 0, 50).size());
+        Assert.assertEquals(4, findPage("AAA", "BUY", null, null, null, null, 0, 50).size());
+        Assert.assertEquals(3, findPage(null, null, 1L, 1L, null, null, 0, 50).size());
+        Assert.assertEquals(3, findPage("BBB", null, 1L, null, 1L, ids[3], 0, 50).size());
+        Assert.assertTrue(repository.findPage(2L, null, null, null, null, null, null, 0, 50).isEmpty());
+    }
+
+    private List<TransactionEntity> findPage(String symbol, String type, Long fromDate, Long toDate, Long afterDate,
+            Integer afterId, int offset) {
+        return findPage(symbol, type, fromDate, toDate, afterDate, afterId, offset, 3);
+    }
+
+    private List<TransactionEntity> findPage(String symbol, String type, Long fromDate, Long toDate, Long afterDate,
+            Integer afterId, int offset, int size) {
+        return repository.findPage(1L, symbol, type, fromDate, toDate, afterDate, afterId, offset, size);
+    }
+}
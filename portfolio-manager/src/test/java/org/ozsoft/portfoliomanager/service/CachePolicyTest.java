@@ -0,0 +1,28 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test suite for the {@link CachePolicy} class.
+ */
+public class CachePolicyTest {
+
+    @Test
+    public void states() {
+        CachePolicy policy = new CachePolicy(10, 60, 1, TimeUnit.MINUTES);
+        long now = System.currentTimeMillis();
+        Assert.assertEquals(CachePolicy.State.FRESH, policy.getState(now - TimeUnit.MINUTES.toMillis(5), false));
+        Assert.assertEquals(CachePolicy.State.STALE, policy.getState(now - TimeUnit.MINUTES.toMillis(30), false));
+        Assert.assertEquals(CachePolicy.State.EXPIRED, policy.getState(now - TimeUnit.MINUTES.toMillis(90), false));
+        Assert.assertEquals(CachePolicy.State.FRESH, policy.getState(now, true));
+        Assert.assertEquals(CachePolicy.State.EXPIRED, policy.getState(now - TimeUnit.MINUTES.toMillis(5), true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hardTtlBelowSoftTtl() {
+        new CachePolicy(60, 10, 1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,145 @@
+package org.ozsoft.portfoliomanager.service;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.domain.Transaction;
+import org.ozsoft.portfoliomanager.domain.TransactionType;
+import org.ozsoft.portfoliomanager.test.TestUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DatabaseServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DatabaseService service;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:dbservicetest;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE transactions (id INT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, config_id INT, date BIGINT, "
+                + "symbol VARCHAR(20), type VARCHAR(20), number_of_shares DECIMAL(19, 4), price DECIMAL(19, 4), cost DECIMAL(19, 4))");
+        service = new DatabaseService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "fetchSize", 100);
+        service.init();
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE transactions");
+    }
+
+    @Test
+    public void deletesBeforeUpserts() {
+        Transaction original = TestUtils.createTransaction(1, 1000L, TransactionType.BUY, "TST", 10, 5.00, 1.00);
+        saveTransactions(Collections.singletonList(original), Collections.<Transaction>emptyList());
+        // A web user's transaction with the same symbol and date is never touched
+        jdbcTemplate.update("INSERT INTO transactions (user_id, date, symbol, type, number_of_shares, price, cost) "
+                + "VALUES (7, 1000, 'TST', 'BUY', 1, 1, 0)");
+
+        // Deleted and re-added under the same symbol and date within one save
+        Transaction replacement = TestUtils.createTransaction(2, 1000L, TransactionType.BUY, "TST", 30, 6.00, 1.00);
+        saveTransactions(Collections.singletonList(replacement), Collections.singletonList(original));
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT number_of_shares, price FROM transactions "
+                + "WHERE user_id IS NULL AND symbol = 'TST' AND date = 1000");
+        assertEquals(1, rows.size());
+        assertEquals(0, new BigDecimal("30").compareTo((BigDecimal) rows.get(0).get("NUMBER_OF_SHARES")));
+        assertEquals(0, new BigDecimal("6.00").compareTo((BigDecimal) rows.get(0).get("PRICE")));
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE user_id = 7", Integer.class));
+    }
+
+    @Test
+    public void updatesExistingTransaction() {
+        Transaction transaction = TestUtils.createTransaction(1, 1000L, TransactionType.BUY, "TST", 10, 5.00, 1.00);
+        saveTransactions(Collections.singletonList(transaction), Collections.<Transaction>emptyList());
+        transaction.setPrice(new BigDecimal("7.00"));
+        saveTransactions(Collections.singletonList(transaction), Collections.<Transaction>emptyList());
+
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals(0, new BigDecimal("7.00").compareTo(jdbcTemplate.queryForObject("SELECT price FROM transactions", BigDecimal.class)));
+    }
+
+    @Test
+    public void loadsOnlyTransactionsWithoutUser() {
+        saveTransactions(Collections.singletonList(TestUtils.createTransaction(1, 2000L, TransactionType.BUY, "TST", 10, 5.00, 1.00)),
+                Collections.<Transaction>emptyList());
+        saveTransactions(Collections.singletonList(TestUtils.createTransaction(2, 1000L, TransactionType.BUY, "ABC", 20, 2.00, 1.00)),
+                Collections.<Transaction>emptyList());
+        jdbcTemplate.update("INSERT INTO transactions (user_id, date, symbol, type, number_of_shares, price, cost) "
+                + "VALUES (7, 1500, 'TST', 'BUY', 1, 1, 0)");
+
+        List<Transaction> transactions = service.loadAllTransactions();
+        assertEquals(2, transactions.size());
+        assertEquals("ABC", transactions.get(0).getSymbol());
+        assertEquals(2000L, transactions.get(1).getDate());
+    }
+
+    @Test
+    public void keepsSameDayTransactionsInOneSymbolApart() {
+        Transaction first = TestUtils.createTransaction(1, 1000L, TransactionType.BUY, "TST", 10, 5.00, 1.00);
+        Transaction second = TestUtils.createTransaction(2, 1000L, TransactionType.BUY, "TST", 20, 6.00, 1.00);
+        saveTransactions(Arrays.asList(first, second), Collections.<Transaction>emptyList());
+
+        second.setPrice(new BigDecimal("7.00"));
+        saveTransactions(Collections.singletonList(second), Collections.<Transaction>emptyList());
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT config_id, price FROM transactions ORDER BY config_id");
+        assertEquals(2, rows.size());
+        assertEquals(0, new BigDecimal("5.00").compareTo((BigDecimal) rows.get(0).get("PRICE")));
+        assertEquals(0, new BigDecimal("7.00").compareTo((BigDecimal) rows.get(1).get("PRICE")));
+
+        saveTransactions(Collections.<Transaction>emptyList(), Collections.singletonList(first));
+        List<Transaction> transactions = service.loadAllTransactions();
+        assertEquals(1, transactions.size());
+        assertEquals(2, transactions.get(0).getId());
+        assertEquals(0, new BigDecimal("20").compareTo(transactions.get(0).getNoOfShares()));
+    }
+
+    @Test
+    public void claimsRowsWithoutConfigurationId() {
+        // Written before transactions were keyed by ID
+        jdbcTemplate.update("INSERT INTO transactions (date, symbol, type, number_of_shares, price, cost) VALUES (1000, 'TST', 'BUY', 10, 5, 1)");
+        jdbcTemplate.update("INSERT INTO transactions (date, symbol, type, number_of_shares, price, cost) VALUES (1000, 'TST', 'BUY', 20, 6, 1)");
+
+        Transaction first = TestUtils.createTransaction(11, 1000L, TransactionType.BUY, "TST", 10, 5.00, 1.00);
+        Transaction second = TestUtils.createTransaction(12, 1000L, TransactionType.BUY, "TST", 20, 6.00, 1.00);
+        saveTransactions(Arrays.asList(first, second), Collections.<Transaction>emptyList());
+
+        assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE config_id IS NULL",
+                Integer.class));
+    }
+
+    @Test
+    public void mergesCopiesOfRowsWithoutConfigurationId() {
+        // The former per-row save inserted a copy on every save
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO transactions (date, symbol, type, number_of_shares, price, cost) VALUES (1000, 'TST', 'BUY', 10, 5, 1)");
+        }
+        jdbcTemplate.update("INSERT INTO transactions (date, symbol, type, number_of_shares, price, cost) VALUES (1000, 'TST', 'BUY', 20, 6, 1)");
+
+        List<Transaction> transactions = service.loadAllTransactions();
+        assertEquals(2, transactions.size());
+
+        // The imported transactions claim a row each, and the remaining copies are deleted
+        saveTransactions(transactions, Collections.<Transaction>emptyList());
+        assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE config_id IS NULL",
+                Integer.class));
+        assertEquals(2, service.loadAllTransactions().size());
+    }
+
+    private void saveTransactions(List<Transaction> transactions, List<Transaction> deletedTransactions) {
+        service.saveChanges(Collections.emptyList(), Collections.<String>emptyList(), transactions, deletedTransactions);
+    }
+}
@@ -0,0 +1,82 @@
+package org.ozsoft.portfoliomanager.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class MarketstackServiceTest {
+
+    private MarketstackService service;
+
+    @Before
+    public void setUp() {
+        service = new MarketstackService();
+        TickerMetadataService tickerMetadataService = mock(TickerMetadataService.class);
+        when(tickerMetadataService.getCompanyName("AAPL")).thenReturn("Apple Inc");
+        ReflectionTestUtils.setField(service, "tickerMetadataService", tickerMetadataService);
+    }
+
+    @Test
+    public void parsesBatchWithNullFields() {
+        String json = "{\"data\": ["
+                + "{\"symbol\": \"AAPL\", \"open\": 170.1, \"close\": 172.5, \"high\": 173.0, \"low\": 169.8, \"volume\": 1000},"
+                + "{\"symbol\": \"msft\", \"open\": null, \"close\": 410.0, \"high\": null, \"low\": null, \"volume\": null},"
+                + "{\"symbol\": \"XYZ\", \"open\": 1.0, \"close\": null},"
+                + "{\"symbol\": null, \"close\": 1.0}"
+                + "]}";
+
+        Map<String, StockPriceDTO> prices = service.parseMarketstackBatchResponse(json, null);
+
+        assertEquals(2, prices.size());
+        StockPriceDTO apple = prices.get("AAPL");
+        assertEquals("Apple Inc", apple.getName());
+        assertEquals(0, new BigDecimal("172.5").compareTo(apple.getPrice()));
+        assertEquals(0, new BigDecimal("173.0").compareTo(apple.getDayHigh()));
+        StockPriceDTO microsoft = prices.get("MSFT");
+        assertEquals("MSFT", microsoft.getName());
+        assertEquals(0, new BigDecimal("410.0").compareTo(microsoft.getPrice()));
+        assertNull(microsoft.getOpen());
+        assertNull(microsoft.getDayLow());
+    }
+
+    @Test
+    public void skipsBarsBeforeTradingDay() {
+        String json = "{\"data\": ["
+                + "{\"symbol\": \"AAPL\", \"close\": 172.5, \"date\": \"2024-04-30T00:00:00+0000\"},"
+                + "{\"symbol\": \"MSFT\", \"close\": 410.0, \"date\": \"2024-04-29T00:00:00+0000\"},"
+                + "{\"symbol\": \"IBM\", \"close\": 165.0}"
+                + "]}";
+
+        Map<String, StockPriceDTO> prices = service.parseMarketstackBatchResponse(json, LocalDate.of(2024, 4, 30));
+
+        assertEquals(1, prices.size());
+        assertEquals(0, new BigDecimal("172.5").compareTo(prices.get("AAPL").getPrice()));
+        assertNull(prices.get("AAPL").getPreviousClose());
+    }
+
+    @Test
+    public void ignoresErrorResponse() {
+        assertTrue(service.parseMarketstackBatchResponse("{\"error\": {\"code\": \"invalid_access_key\"}}", null).isEmpty());
+        assertTrue(service.parseMarketstackBatchResponse("not json", null).isEmpty());
+    }
+
+    @Test
+    public void errorResponseIsFailure() throws Exception {
+        assertNull(service.parseMarketstackResponse("{\"data\": []}", "XYZ"));
+        try {
+            service.parseMarketstackResponse("{\"error\": {\"code\": \"rate_limit_reached\"}}", "AAPL");
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
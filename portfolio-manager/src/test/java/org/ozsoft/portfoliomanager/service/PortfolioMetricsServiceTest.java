@@ -0,0 +1,182 @@
+package org.ozsoft.portfoliomanager.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.domain.Transaction;
+import org.ozsoft.portfoliomanager.domain.TransactionType;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.repository.TransactionRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PortfolioMetricsServiceTest {
+
+    private PortfolioMetricsService service;
+    private UserPortfolioService userPortfolioService;
+    private PortfolioService portfolioService;
+    private QuoteBus quoteBus;
+
+    @Before
+    public void setUp() {
+        userPortfolioService = mock(UserPortfolioService.class);
+        portfolioService = mock(PortfolioService.class);
+        quoteBus = new QuoteBus();
+        service = new PortfolioMetricsService();
+        ReflectionTestUtils.setField(service, "userPortfolioService", userPortfolioService);
+        ReflectionTestUtils.setField(service, "portfolioService", portfolioService);
+        ReflectionTestUtils.setField(service, "transactionRepository", mock(TransactionRepository.class));
+        ReflectionTestUtils.setField(service, "quoteBus", quoteBus);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "flushSeconds", 3600L);
+        when(userPortfolioService.peekPortfolio(1L)).thenReturn(createPortfolio("AAPL"));
+        service.init();
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void savesMetricsOfChangedUsersInOneBatch() {
+        when(userPortfolioService.peekPortfolio(2L)).thenReturn(createPortfolio("MSFT"));
+        changed(1L);
+        changed(2L);
+        changed(1L);
+
+        service.flush();
+
+        ArgumentCaptor<Map<Long, Portfolio>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(portfolioService, times(1)).updatePortfolioMetrics(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertEquals(0, new BigDecimal("1000").compareTo(captor.getValue().get(1L).getCurrentCost()));
+
+        service.flush();
+        verify(portfolioService, times(1)).updatePortfolioMetrics(anyMap());
+        // Computing the metrics does not keep the portfolios cached
+        verify(userPortfolioService, never()).getPortfolio(anyLong());
+    }
+
+    @Test
+    public void savesInBatches() {
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        for (long userId = 2L; userId <= 5L; userId++) {
+            when(userPortfolioService.peekPortfolio(userId)).thenReturn(createPortfolio("MSFT"));
+        }
+        for (long userId = 1L; userId <= 5L; userId++) {
+            changed(userId);
+        }
+
+        service.flush();
+
+        verify(portfolioService, times(3)).updatePortfolioMetrics(anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void priceUpdatesRevalueHoldersOnly() {
+        changed(1L);
+        service.flush();
+        // Held symbols are listened to, not subscribed (and thus not streamed)
+        assertTrue(quoteBus.getSubscribedSymbols().isEmpty());
+
+        quoteBus.publish(createQuote("MSFT", "300"));
+        service.flush();
+        verify(portfolioService, never()).updatePortfolioValues(anyMap());
+
+        quoteBus.publish(createQuote("AAPL", "150"));
+        service.flush();
+        ArgumentCaptor<Map<Long, BigDecimal>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(portfolioService, times(1)).updatePortfolioValues(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(0, new BigDecimal("1500").compareTo(captor.getValue().get(1L)));
+
+        // Revalued from the recorded positions, without rebuilding the portfolio
+        verify(portfolioService, times(1)).updatePortfolioMetrics(anyMap());
+        verify(userPortfolioService, times(1)).peekPortfolio(1L);
+    }
+
+    @Test
+    public void closedPositionsAreNotRevalued() {
+        changed(1L);
+        service.flush();
+
+        Portfolio closed = createPortfolio("AAPL");
+        Transaction sale = createTransaction(2, "AAPL", TransactionType.SELL);
+        closed.addTransaction(sale);
+        when(userPortfolioService.peekPortfolio(1L)).thenReturn(closed);
+        changed(1L);
+        service.flush();
+
+        quoteBus.publish(createQuote("AAPL", "150"));
+        service.flush();
+        verify(portfolioService, never()).updatePortfolioValues(anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void revaluesPositionsWithLegacySymbols() {
+        when(userPortfolioService.peekPortfolio(1L)).thenReturn(createPortfolio(" aapl"));
+        changed(1L);
+        service.flush();
+
+        quoteBus.publish(createQuote("AAPL", "150"));
+        service.flush();
+        ArgumentCaptor<Map<Long, BigDecimal>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(portfolioService, times(1)).updatePortfolioValues(captor.capture());
+        assertEquals(0, new BigDecimal("1500").compareTo(captor.getValue().get(1L)));
+    }
+
+    @Test
+    public void retriesAfterFailedSave() {
+        doThrow(new RuntimeException("database down")).doNothing().when(portfolioService).updatePortfolioMetrics(anyMap());
+        changed(1L);
+
+        service.flush();
+        service.flush();
+
+        verify(portfolioService, times(2)).updatePortfolioMetrics(anyMap());
+    }
+
+    private void changed(Long userId) {
+        service.onTransactionsChanged(new TransactionsChangedEvent(this, userId));
+    }
+
+    private static Portfolio createPortfolio(String symbol) {
+        Stock stock = new Stock(symbol, symbol);
+        Portfolio portfolio = new Portfolio();
+        portfolio.update(s -> stock);
+        portfolio.addTransaction(createTransaction(1, symbol, TransactionType.BUY));
+        return portfolio;
+    }
+
+    private static Transaction createTransaction(int id, String symbol, TransactionType type) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setDate(id);
+        transaction.setSymbol(symbol);
+        transaction.setType(type);
+        transaction.setNoOfShares(BigDecimal.TEN);
+        transaction.setPrice(new BigDecimal("100"));
+        transaction.setCost(BigDecimal.ZERO);
+        return transaction;
+    }
+
+    private static StockPriceDTO createQuote(String symbol, String price) {
+        StockPriceDTO quote = new StockPriceDTO();
+        quote.setSymbol(symbol);
+        quote.setPrice(new BigDecimal(price));
+        return quote;
+    }
+}
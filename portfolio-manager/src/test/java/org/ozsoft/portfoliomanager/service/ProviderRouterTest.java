@@ -0,0 +1,121 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.dto.ProviderStatsDTO;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+
+/**
+ * JUnit test suite for the {@link ProviderRouter} class.
+ */
+public class ProviderRouterTest {
+
+    @Test
+    public void skipsPrimaryWhenCircuitIsOpen() {
+        TestProvider primary = new TestProvider("primary", 0L, true);
+        TestProvider fallback = new TestProvider("fallback", 0L, false);
+        ProviderRouter router = new ProviderRouter(primary, fallback, 3, 60L, 10L, 1000L, 5000L, 4);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("fallback", router.fetch("TST").getName());
+        }
+        router.shutdown();
+
+        Assert.assertEquals(3, primary.calls.get());
+        Assert.assertEquals(10, fallback.calls.get());
+        ProviderStatsDTO stats = router.getStats().get(0);
+        Assert.assertEquals("OPEN", stats.getCircuitState());
+        Assert.assertEquals(7L, stats.getShortCircuitCount());
+    }
+
+    @Test
+    public void hedgesSlowPrimary() {
+        TestProvider primary = new TestProvider("primary", 2000L, false);
+        TestProvider fallback = new TestProvider("fallback", 0L, false);
+        ProviderRouter router = new ProviderRouter(primary, fallback, 3, 60L, 10L, 100L, 5000L, 4);
+        long startTime = System.currentTimeMillis();
+        StockPriceDTO result = router.fetch("TST");
+        long duration = System.currentTimeMillis() - startTime;
+        router.shutdown();
+
+        Assert.assertEquals("fallback", result.getName());
+        Assert.assertTrue("Hedge took too long: " + duration + " ms", duration < 1000L);
+        Assert.assertEquals(1L, router.getStats().get(1).getHedgeCount());
+    }
+
+    @Test
+    public void callsProvidersDirectlyWhenSaturated() {
+        TestProvider primary = new TestProvider("primary", 200L, true);
+        TestProvider fallback = new TestProvider("fallback", 0L, false);
+        ProviderRouter router = new ProviderRouter(primary, fallback, 3, 60L, 10L, 100L, 5000L, 4);
+        // A shut down pool rejects every call, like a saturated one
+        router.shutdown();
+        StockPriceDTO result = router.fetch("TST");
+
+        Assert.assertEquals("fallback", result.getName());
+        Assert.assertEquals(1, primary.calls.get());
+        Assert.assertEquals(1L, router.getStats().get(0).getFailureCount());
+        Assert.assertEquals(0L, router.getStats().get(1).getHedgeCount());
+    }
+
+    @Test
+    public void callsFallbackDirectlyWhenHedgeIsRejected() {
+        final AtomicReference<ProviderRouter> routerRef = new AtomicReference<>();
+        TestProvider primary = new TestProvider("primary", 500L, false) {
+            @Override
+            public StockPriceDTO fetch(String symbol) throws Exception {
+                // Saturate the pool once the primary is running (clearing the interrupt of its own thread)
+                routerRef.get().shutdown();
+                Thread.interrupted();
+                return super.fetch(symbol);
+            }
+        };
+        TestProvider fallback = new TestProvider("fallback", 0L, false);
+        ProviderRouter router = new ProviderRouter(primary, fallback, 3, 60L, 10L, 100L, 5000L, 4);
+        routerRef.set(router);
+        StockPriceDTO result = router.fetch("TST");
+
+        Assert.assertEquals("fallback", result.getName());
+        Assert.assertEquals(1, fallback.calls.get());
+        ProviderStatsDTO stats = router.getStats().get(1);
+        Assert.assertEquals(1L, stats.getRequestCount());
+        Assert.assertEquals(1L, stats.getHedgeCount());
+        Assert.assertEquals("CLOSED", stats.getCircuitState());
+    }
+
+    private static class TestProvider implements PriceProvider {
+
+        private final String name;
+        private final long delay;
+        private final boolean failing;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private TestProvider(String name, long delay, boolean failing) {
+            this.name = name;
+            this.delay = delay;
+            this.failing = failing;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public StockPriceDTO fetch(String symbol) throws Exception {
+            calls.incrementAndGet();
+            if (delay > 0L) {
+                Thread.sleep(delay);
+            }
+            if (failing) {
+                throw new java.io.IOException("Connection refused");
+            }
+            StockPriceDTO dto = new StockPriceDTO();
+            dto.setSymbol(symbol);
+            dto.setName(name);
+            return dto;
+        }
+    }
+}
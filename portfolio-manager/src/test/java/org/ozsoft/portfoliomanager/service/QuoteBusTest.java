@@ -0,0 +1,60 @@
+package org.ozsoft.portfoliomanager.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+
+/**
+ * JUnit test suite for the {@link QuoteBus} class.
+ */
+public class QuoteBusTest {
+
+    @Test
+    public void fansOutChangedQuotes() {
+        QuoteBus bus = new QuoteBus();
+        final List<BigDecimal> received = new ArrayList<>();
+        Consumer<StockPriceDTO> listener = quote -> received.add(quote.getPrice());
+        bus.subscribe("abc", listener);
+        Assert.assertTrue(bus.getSubscribedSymbols().contains("ABC"));
+
+        bus.publish(quote("ABC", "10.00"));
+        bus.publish(quote("ABC", "10.0"));
+        bus.publish(quote("ABC", "11.00"));
+        bus.publish(quote("XYZ", "5.00"));
+        Assert.assertEquals(2, received.size());
+
+        bus.unsubscribe("ABC", listener);
+        Assert.assertTrue(bus.getSubscribedSymbols().isEmpty());
+        bus.publish(quote("ABC", "12.00"));
+        Assert.assertEquals(2, received.size());
+    }
+
+    @Test
+    public void busListenersReceiveAllSymbolsWithoutSubscribing() {
+        QuoteBus bus = new QuoteBus();
+        final List<String> received = new ArrayList<>();
+        Consumer<StockPriceDTO> listener = quote -> received.add(quote.getSymbol());
+        bus.addListener(listener);
+        Assert.assertTrue(bus.getSubscribedSymbols().isEmpty());
+
+        bus.publish(quote("ABC", "10.00"));
+        bus.publish(quote("XYZ", "5.00"));
+        Assert.assertEquals(2, received.size());
+
+        bus.removeListener(listener);
+        bus.publish(quote("ABC", "11.00"));
+        Assert.assertEquals(2, received.size());
+    }
+
+    private static StockPriceDTO quote(String symbol, String price) {
+        StockPriceDTO dto = new StockPriceDTO();
+        dto.setSymbol(symbol);
+        dto.setPrice(new BigDecimal(price));
+        return dto;
+    }
+}
@@ -0,0 +1,93 @@
+package org.ozsoft.portfoliomanager.service;
+
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * JUnit test suite for the {@link QuoteStreamService} class.
+ */
+public class QuoteStreamServiceTest {
+
+    @Test
+    public void refreshFetchesSubscribedSymbolsOnce() {
+        QuoteBus quoteBus = new QuoteBus();
+        final List<String> received = new ArrayList<>();
+        quoteBus.subscribe("ABC", quote -> received.add(quote.getSymbol()));
+        quoteBus.subscribe("XYZ", quote -> received.add(quote.getSymbol()));
+
+        Map<String, StockPriceDTO> prices = new LinkedHashMap<>();
+        prices.put("ABC", quote("ABC", "10.00"));
+        prices.put("XYZ", quote("XYZ", "5.00"));
+        StockAPIService stockAPIService = mock(StockAPIService.class);
+        when(stockAPIService.refreshStockPrices(anyCollection())).thenReturn(prices);
+
+        QuoteStreamService service = new QuoteStreamService();
+        ReflectionTestUtils.setField(service, "quoteBus", quoteBus);
+        ReflectionTestUtils.setField(service, "stockAPIService", stockAPIService);
+        service.refresh();
+
+        verify(stockAPIService, times(1)).refreshStockPrices(anyCollection());
+        verify(stockAPIService, never()).getStockPriceAsync(anyString());
+        verify(stockAPIService, never()).getStockPrice(anyString());
+        Assert.assertEquals(2, received.size());
+        Assert.assertTrue(received.contains("ABC"));
+        Assert.assertTrue(received.contains("XYZ"));
+    }
+
+    @Test
+    public void subscribeNormalizesAndDedupesSymbols() {
+        QuoteBus quoteBus = mock(QuoteBus.class);
+        QuoteStreamService service = createService(quoteBus, 50);
+        service.subscribe(1L, Arrays.asList("aapl", "AAPL", " aapl ", "msft", ""));
+
+        verify(quoteBus, times(1)).subscribe(eq("AAPL"), any());
+        verify(quoteBus, times(1)).subscribe(eq("MSFT"), any());
+        verify(quoteBus, times(2)).subscribe(anyString(), any());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subscribeRejectsTooManySymbols() {
+        QuoteBus quoteBus = mock(QuoteBus.class);
+        QuoteStreamService service = createService(quoteBus, 2);
+        try {
+            service.subscribe(1L, Arrays.asList("ABC", "abc", "DEF", "GHI"));
+        } finally {
+            verify(quoteBus, never()).subscribe(anyString(), any());
+        }
+    }
+
+    private static QuoteStreamService createService(QuoteBus quoteBus, int maxSymbolsPerClient) {
+        StockAPIService stockAPIService = mock(StockAPIService.class);
+        when(stockAPIService.getStockPriceAsync(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        UserPortfolioService userPortfolioService = mock(UserPortfolioService.class);
+        when(userPortfolioService.getPortfolio(anyLong())).thenReturn(new Portfolio());
+
+        QuoteStreamService service = new QuoteStreamService();
+        ReflectionTestUtils.setField(service, "quoteBus", quoteBus);
+        ReflectionTestUtils.setField(service, "stockAPIService", stockAPIService);
+        ReflectionTestUtils.setField(service, "userPortfolioService", userPortfolioService);
+        ReflectionTestUtils.setField(service, "maxSymbolsPerClient", maxSymbolsPerClient);
+        ReflectionTestUtils.setField(service, "emitterTimeoutMinutes", 1L);
+        return service;
+    }
+
+    private static StockPriceDTO quote(String symbol, String price) {
+        StockPriceDTO dto = new StockPriceDTO();
+        dto.setSymbol(symbol);
+        dto.setPrice(new BigDecimal(price));
+        return dto;
+    }
+}
@@ -0,0 +1,103 @@
+package org.ozsoft.portfoliomanager.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.entity.TickerMetadataEntity;
+import org.ozsoft.portfoliomanager.repository.TickerMetadataRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * JUnit test suite for the {@link TickerMetadataService} class.
+ */
+public class TickerMetadataServiceTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private String response;
+
+    private TickerMetadataService service;
+
+    private TickerMetadataRepository repository;
+
+    @Before
+    public void setUp() {
+        service = new TickerMetadataService() {
+            @Override
+            String makeHttpRequest(String url) {
+                requests.incrementAndGet();
+                return response;
+            }
+        };
+        ReflectionTestUtils.setField(service, "apiUrl", "http://localhost");
+        ReflectionTestUtils.setField(service, "maxAgeDays", 30);
+        ReflectionTestUtils.setField(service, "retryMinutes", 60);
+        ReflectionTestUtils.setField(service, "maxSize", 100);
+        ReflectionTestUtils.setField(service, "maxPending", 10);
+        repository = mock(TickerMetadataRepository.class);
+        when(repository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        ReflectionTestUtils.setField(service, "tickerMetadataRepository", repository);
+        ReflectionTestUtils.setField(service, "cacheRegistry", new CacheRegistry());
+        service.init();
+    }
+
+    @Test
+    public void failedLookupIsNotRepeated() throws Exception {
+        assertNull(service.getCompanyName("xyz"));
+        awaitLoads();
+        assertEquals(1, requests.get());
+
+        assertNull(service.getCompanyName("XYZ"));
+        assertNull(service.getCompanyName("XYZ"));
+        awaitLoads();
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void failedLookupIsRetriedAfterDelay() throws Exception {
+        ReflectionTestUtils.setField(service, "retryMinutes", 0);
+        assertNull(service.getCompanyName("ABC"));
+        awaitLoads();
+        assertEquals(1, requests.get());
+
+        response = "{\"name\": \"ABC Corp\", \"stock_exchange\": {\"acronym\": \"NYSE\", \"currency\": {\"code\": \"USD\"}}}";
+        assertNull(service.getCompanyName("ABC"));
+        awaitLoads();
+        assertEquals(2, requests.get());
+        assertEquals("ABC Corp", service.getCompanyName("ABC"));
+        assertEquals("NYSE", service.getMetadata("ABC").getExchange());
+        assertEquals("USD", service.getMetadata("ABC").getCurrency());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void readsMetadataMissingInMemoryFromDatabase() throws Exception {
+        TickerMetadataEntity stored = new TickerMetadataEntity("DEF");
+        stored.setName("DEF Inc");
+        stored.setUpdatedAt(LocalDateTime.now());
+        when(repository.findById("DEF")).thenReturn(Optional.of(stored));
+
+        assertNull(service.getCompanyName("DEF"));
+        awaitLoads();
+        assertEquals("DEF Inc", service.getCompanyName("DEF"));
+        assertEquals(0, requests.get());
+    }
+
+    /**
+     * Waits until the (single) loader thread has run all scheduled loads.
+     */
+    private void awaitLoads() throws Exception {
+        ExecutorService loader = (ExecutorService) ReflectionTestUtils.getField(service, "loader");
+        loader.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+}
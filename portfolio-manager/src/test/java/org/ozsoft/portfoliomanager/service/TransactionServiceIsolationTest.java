@@ -7,6 +7,7 @@ import org.ozsoft.portfoliomanager.dto.TransactionDTO;
 import org.ozsoft.portfoliomanager.entity.TransactionEntity;
 import org.ozsoft.portfoliomanager.repository.TransactionRepository;
 import org.ozsoft.portfoliomanager.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -31,6 +32,8 @@ public class TransactionServiceIsolationTest {
         transactionService = new TransactionService();
         transactionService.transactionRepository = transactionRepository;
         transactionService.userRepository = userRepository;
+        transactionService.userPortfolioService = mock(UserPortfolioService.class);
+        transactionService.eventPublisher = mock(ApplicationEventPublisher.class);
 
         user1 = new User("user1_google_id", "user1@example.com", "User One", "pic1.jpg");
         user1.setId(1L);
@@ -155,6 +158,21 @@ public class TransactionServiceIsolationTest {
         assertTrue(user2Txns.stream().allMatch(t -> t.getUserId().equals(2L)));
     }
 
+    @Test
+    public void testFiltersAreNormalized() {
+        transactionService.getUserTransactions(1L, " aapl ", "buy", null, null, null, null, 2, 20);
+        verify(transactionRepository).findPage(1L, "AAPL", "BUY", null, null, null, null, 40, 20);
+
+        transactionService.getUserTransactions(1L, " ", null, null, null, 5L, 7, 2, 20);
+        verify(transactionRepository).findPage(1L, null, null, null, null, 5L, 7, 0, 20);
+    }
+
+    @Test
+    public void testPageBeyondLargestOffsetIsEmpty() {
+        assertTrue(transactionService.getUserTransactions(1L, null, null, null, null, null, null, Integer.MAX_VALUE, 100).isEmpty());
+        verify(transactionRepository, never()).findPage(any(), any(), any(), any(), any(), any(), any(), anyInt(), anyInt());
+    }
+
     private TransactionEntity createTransaction(int id, long userId, String symbol, int shares) {
         TransactionEntity entity = new TransactionEntity();
         entity.setId(id);
@@ -0,0 +1,133 @@
+package org.ozsoft.portfoliomanager.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.domain.Position;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.entity.TransactionEntity;
+import org.ozsoft.portfoliomanager.repository.TransactionRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class UserPortfolioServiceTest {
+
+    private UserPortfolioService service;
+    private TransactionRepository transactionRepository;
+    private StockAPIService stockAPIService;
+
+    @Before
+    public void setUp() {
+        transactionRepository = mock(TransactionRepository.class);
+        stockAPIService = mock(StockAPIService.class);
+        service = new UserPortfolioService();
+        ReflectionTestUtils.setField(service, "maxUsers", 10);
+        ReflectionTestUtils.setField(service, "idleMinutes", 30L);
+        ReflectionTestUtils.setField(service, "transactionRepository", transactionRepository);
+        ReflectionTestUtils.setField(service, "stockAPIService", stockAPIService);
+        ReflectionTestUtils.setField(service, "tickerMetadataService", mock(TickerMetadataService.class));
+        ReflectionTestUtils.setField(service, "quoteBus", new QuoteBus());
+        ReflectionTestUtils.setField(service, "cacheRegistry", new CacheRegistry());
+        service.init();
+    }
+
+    @Test
+    public void buildsPositionsFromUserTransactions() {
+        when(transactionRepository.findByUserIdOrderByDateAsc(1L)).thenReturn(Arrays.asList(
+                createTransaction(1, "AAPL", "BUY", 1L, 10, "100"),
+                createTransaction(2, "AAPL", "SELL", 2L, 4, "120"),
+                createTransaction(3, "msft", "BUY", 3L, 5, "200")));
+        StockPriceDTO quote = new StockPriceDTO();
+        quote.setSymbol("AAPL");
+        quote.setPrice(new BigDecimal("150"));
+        when(stockAPIService.getCachedStockPrice("AAPL")).thenReturn(quote);
+
+        Portfolio portfolio = service.getPortfolio(1L);
+
+        Position aapl = portfolio.getPosition("AAPL");
+        assertEquals(0, new BigDecimal("6").compareTo(aapl.getNoOfShares()));
+        assertEquals(0, new BigDecimal("900").compareTo(aapl.getCurrentValue()));
+        assertNotNull(portfolio.getPosition("MSFT"));
+        assertEquals(2, portfolio.getPositions().size());
+    }
+
+    @Test
+    public void servesFromCacheUntilInvalidated() {
+        when(transactionRepository.findByUserIdOrderByDateAsc(1L)).thenReturn(
+                Collections.singletonList(createTransaction(1, "AAPL", "BUY", 1L, 10, "100")));
+
+        Portfolio first = service.getPortfolio(1L);
+        assertSame(first, service.getPortfolio(1L));
+        verify(transactionRepository, times(1)).findByUserIdOrderByDateAsc(1L);
+
+        service.invalidate(1L);
+        assertNotSame(first, service.getPortfolio(1L));
+        verify(transactionRepository, times(2)).findByUserIdOrderByDateAsc(1L);
+    }
+
+    @Test
+    public void peekDoesNotCache() {
+        when(transactionRepository.findByUserIdOrderByDateAsc(1L)).thenReturn(
+                Collections.singletonList(createTransaction(1, "AAPL", "BUY", 1L, 10, "100")));
+
+        Portfolio peeked = service.peekPortfolio(1L);
+        assertNotNull(peeked.getPosition("AAPL"));
+        assertNotSame(peeked, service.getPortfolio(1L));
+        verify(transactionRepository, times(2)).findByUserIdOrderByDateAsc(1L);
+
+        // A cached portfolio is used as is
+        assertSame(service.getPortfolio(1L), service.peekPortfolio(1L));
+        verify(transactionRepository, times(2)).findByUserIdOrderByDateAsc(1L);
+    }
+
+    @Test
+    public void writeDuringLoadOnlyAffectsThatUser() {
+        when(transactionRepository.findByUserIdOrderByDateAsc(1L)).thenAnswer(invocation -> {
+            // Another user writes while this user's portfolio is loading
+            service.invalidate(2L);
+            return Collections.singletonList(createTransaction(1, "AAPL", "BUY", 1L, 10, "100"));
+        });
+        when(transactionRepository.findByUserIdOrderByDateAsc(2L)).thenAnswer(invocation -> {
+            // The user writes while their own portfolio is loading
+            service.invalidate(2L);
+            return Collections.singletonList(createTransaction(2, "MSFT", "BUY", 1L, 5, "200"));
+        });
+
+        assertSame(service.getPortfolio(1L), service.getPortfolio(1L));
+        verify(transactionRepository, times(1)).findByUserIdOrderByDateAsc(1L);
+
+        assertNotSame(service.getPortfolio(2L), service.getPortfolio(2L));
+        verify(transactionRepository, times(2)).findByUserIdOrderByDateAsc(2L);
+    }
+
+    @Test
+    public void skipsInvalidTransactions() {
+        when(transactionRepository.findByUserIdOrderByDateAsc(1L)).thenReturn(Arrays.asList(
+                createTransaction(1, "AAPL", "BUY", 1L, 10, "100"),
+                createTransaction(2, "AAPL", "SELL", 2L, 20, "120"),
+                createTransaction(3, "AAPL", "SPLIT", 3L, 20, "0")));
+
+        Position aapl = service.getPortfolio(1L).getPosition("AAPL");
+
+        assertEquals(0, BigDecimal.TEN.compareTo(aapl.getNoOfShares()));
+        assertEquals(1, service.getPortfolio(1L).getTransactions().size());
+    }
+
+    private TransactionEntity createTransaction(int id, String symbol, String type, long date, int shares, String price) {
+        TransactionEntity entity = new TransactionEntity(1L);
+        entity.setId(id);
+        entity.setSymbol(symbol);
+        entity.setType(type);
+        entity.setDate(date);
+        entity.setNoOfShares(new BigDecimal(shares));
+        entity.setPrice(new BigDecimal(price));
+        entity.setCost(BigDecimal.ZERO);
+        return entity;
+    }
+}
@@ -0,0 +1,84 @@
+package org.ozsoft.portfoliomanager.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.ozsoft.portfoliomanager.domain.Portfolio;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.domain.TransactionType;
+import org.ozsoft.portfoliomanager.domain.ValuationSeries;
+import org.ozsoft.portfoliomanager.dto.StockPriceDTO;
+import org.ozsoft.portfoliomanager.entity.ValuationSeriesEntity;
+import org.ozsoft.portfoliomanager.repository.TransactionRepository;
+import org.ozsoft.portfoliomanager.repository.ValuationSeriesRepository;
+import org.ozsoft.portfoliomanager.test.TestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ValuationServiceTest {
+
+    private ValuationService service;
+    private UserPortfolioService userPortfolioService;
+    private ValuationSeriesRepository valuationSeriesRepository;
+    private StockAPIService stockAPIService;
+
+    @Before
+    public void setUp() {
+        userPortfolioService = mock(UserPortfolioService.class);
+        valuationSeriesRepository = mock(ValuationSeriesRepository.class);
+        stockAPIService = mock(StockAPIService.class);
+        when(valuationSeriesRepository.findByUserId(1L)).thenReturn(Optional.empty());
+        service = new ValuationService();
+        ReflectionTestUtils.setField(service, "userPortfolioService", userPortfolioService);
+        ReflectionTestUtils.setField(service, "valuationSeriesRepository", valuationSeriesRepository);
+        ReflectionTestUtils.setField(service, "transactionRepository", mock(TransactionRepository.class));
+        ReflectionTestUtils.setField(service, "stockAPIService", stockAPIService);
+    }
+
+    @Test
+    public void snapshotFetchesMissingPrices() {
+        when(userPortfolioService.peekPortfolio(1L)).thenReturn(createPortfolio());
+        StockPriceDTO quote = new StockPriceDTO();
+        quote.setSymbol("AAPL");
+        quote.setPrice(new BigDecimal("150"));
+        when(stockAPIService.refreshStockPrices(anyCollection())).thenReturn(Collections.singletonMap("AAPL", quote));
+
+        service.snapshot(1L);
+
+        TestUtils.assertEquals(1500L, getSavedSeries().getValue(LocalDate.now()));
+    }
+
+    @Test
+    public void snapshotWithoutPriceHasUnknownValue() {
+        when(userPortfolioService.peekPortfolio(1L)).thenReturn(createPortfolio());
+        when(stockAPIService.refreshStockPrices(anyCollection())).thenReturn(Collections.emptyMap());
+
+        service.snapshot(1L);
+
+        ValuationSeries series = getSavedSeries();
+        assertNull(series.getValue(LocalDate.now()));
+        TestUtils.assertEquals(1000L, series.getCost(LocalDate.now()));
+    }
+
+    private Portfolio createPortfolio() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.addTransaction(TestUtils.createTransaction(1, System.currentTimeMillis(), TransactionType.BUY, "AAPL", 10, 100.00, 0.00));
+        portfolio.update(symbol -> new Stock(symbol, symbol));
+        return portfolio;
+    }
+
+    private ValuationSeries getSavedSeries() {
+        ArgumentCaptor<ValuationSeriesEntity> captor = ArgumentCaptor.forClass(ValuationSeriesEntity.class);
+        verify(valuationSeriesRepository).save(captor.capture());
+        ValuationSeriesEntity entity = captor.getValue();
+        return ValuationSeries.fromBytes(entity.getFirstDate(), entity.getData());
+    }
+}
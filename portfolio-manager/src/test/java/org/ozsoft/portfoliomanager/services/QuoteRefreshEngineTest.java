@@ -0,0 +1,250 @@
+package org.ozsoft.portfoliomanager.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ozsoft.portfoliomanager.domain.Quote;
+import org.ozsoft.portfoliomanager.domain.Stock;
+import org.ozsoft.portfoliomanager.services.downloader.QuoteDownloader;
+
+/**
+ * JUnit test suite for the {@link QuoteRefreshEngine} class.
+ */
+public class QuoteRefreshEngineTest {
+
+    @Test
+    public void countsOutcomesAndRespectsConcurrencyLimit() {
+        List<Stock> stocks = new ArrayList<Stock>();
+        for (int i = 0; i < 30; i++) {
+            stocks.add(new Stock("TST" + i, "Test Stock " + i));
+        }
+
+        TestDownloader downloader = new TestDownloader();
+        QuoteRefreshEngine engine = new QuoteRefreshEngine(8);
+        engine.setProviderLimits(downloader.getName(), 3, 1000.0);
+        final AtomicInteger reported = new AtomicInteger();
+        RefreshResult result = engine.refresh(stocks, downloader, new RefreshListener() {
+            @Override
+            public void stockRefreshed(Stock stock, RefreshStatus status) {
+                reported.incrementAndGet();
+            }
+        });
+        engine.shutdown();
+
+        Assert.assertEquals(30, result.getTotalCount());
+        Assert.assertEquals(30, reported.get());
+        Assert.assertEquals(10, result.getUpdatedCount());
+        Assert.assertEquals(10, result.getSkippedCount());
+        Assert.assertEquals(10, result.getFailedCount());
+        Assert.assertTrue("Too many concurrent requests: " + downloader.maxActive.get(), downloader.maxActive.get() <= 3);
+    }
+
+    @Test
+    public void countsInterruptedStocksAsCancelled() throws Exception {
+        final List<Stock> stocks = new ArrayList<Stock>();
+        for (int i = 0; i < 5; i++) {
+            stocks.add(new Stock("TST" + i, "Test Stock " + i));
+        }
+
+        final BlockingDownloader downloader = new BlockingDownloader();
+        final QuoteRefreshEngine engine = new QuoteRefreshEngine(4);
+        engine.setProviderLimits(downloader.getName(), 2, 1000.0);
+        final AtomicReference<RefreshResult> result = new AtomicReference<RefreshResult>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                result.set(engine.refresh(stocks, downloader));
+            }
+        };
+        thread.start();
+        Assert.assertTrue(downloader.started.await(5, TimeUnit.SECONDS));
+        thread.interrupt();
+        thread.join(5000L);
+
+        // 2 in progress and 1 waiting for a slot are cancelled, the other 2 were never submitted
+        Assert.assertEquals(5, result.get().getTotalCount());
+        Assert.assertEquals(3, result.get().getCancelledCount());
+        Assert.assertEquals(2, result.get().getSkippedCount());
+
+        // Provider slots have been released
+        downloader.release.countDown();
+        RefreshResult next = engine.refresh(stocks, downloader);
+        engine.shutdown();
+        Assert.assertEquals(5, next.getSkippedCount());
+    }
+
+    @Test
+    public void reportsFinishedStocksWithTheirOutcomeWhenInterrupted() throws Exception {
+        final List<Stock> stocks = new ArrayList<Stock>();
+        stocks.add(new Stock("FIN", "Finished Stock"));
+        stocks.add(new Stock("BLK", "Blocked Stock"));
+        stocks.add(new Stock("", "Stock Without Symbol"));
+
+        // A single worker runs the second update only after the first one has completed
+        final SequencedDownloader downloader = new SequencedDownloader();
+        final QuoteRefreshEngine engine = new QuoteRefreshEngine(1);
+        engine.setProviderLimits(downloader.getName(), 2, 1000.0);
+        final AtomicReference<RefreshResult> result = new AtomicReference<RefreshResult>();
+        final List<String> cancelled = new ArrayList<String>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                result.set(engine.refresh(stocks, downloader, new RefreshListener() {
+                    @Override
+                    public void stockRefreshed(Stock stock, RefreshStatus status) {
+                        if (status == RefreshStatus.CANCELLED) {
+                            cancelled.add(stock.getSymbol());
+                        }
+                        if (stock.getSymbol().isEmpty()) {
+                            // Both updates submitted; finish the first one, unpolled, and interrupt while the second one is running
+                            downloader.proceed.countDown();
+                            try {
+                                downloader.blocked.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                // Ignore
+                            }
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }));
+            }
+        };
+        thread.start();
+        thread.join(5000L);
+        downloader.release.countDown();
+        engine.shutdown();
+
+        Assert.assertEquals(3, result.get().getTotalCount());
+        Assert.assertEquals(1, result.get().getUpdatedCount());
+        Assert.assertEquals(1, result.get().getCancelledCount());
+        Assert.assertEquals(1, result.get().getSkippedCount());
+        Assert.assertEquals(1, cancelled.size());
+        Assert.assertEquals("BLK", cancelled.get(0));
+    }
+
+    /**
+     * Quote downloader that updates FIN when told to proceed, and blocks on any other stock until released.
+     */
+    private static class SequencedDownloader extends QuoteDownloader {
+
+        private final CountDownLatch proceed = new CountDownLatch(1);
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public SequencedDownloader() {
+            super(null);
+        }
+
+        @Override
+        public boolean updateStock(Stock stock) {
+            try {
+                if (stock.getSymbol().equals("FIN")) {
+                    proceed.await();
+                    return true;
+                }
+                blocked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        @Override
+        public List<Quote> getHistoricPrices(Stock stock) {
+            return new ArrayList<Quote>();
+        }
+
+        @Override
+        public List<Quote> getDividendPayouts(Stock stock) {
+            return new ArrayList<Quote>();
+        }
+    }
+
+    /**
+     * Quote downloader that blocks until released.
+     */
+    private static class BlockingDownloader extends QuoteDownloader {
+
+        private final CountDownLatch started = new CountDownLatch(2);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public BlockingDownloader() {
+            super(null);
+        }
+
+        @Override
+        public boolean updateStock(Stock stock) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        @Override
+        public List<Quote> getHistoricPrices(Stock stock) {
+            return new ArrayList<Quote>();
+        }
+
+        @Override
+        public List<Quote> getDividendPayouts(Stock stock) {
+            return new ArrayList<Quote>();
+        }
+    }
+
+    /**
+     * Quote downloader that updates, skips and fails stocks in turn.
+     */
+    private static class TestDownloader extends QuoteDownloader {
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final AtomicInteger maxActive = new AtomicInteger();
+
+        public TestDownloader() {
+            super(null);
+        }
+
+        @Override
+        public boolean updateStock(Stock stock) {
+            int current = active.incrementAndGet();
+            while (maxActive.get() < current) {
+                maxActive.compareAndSet(maxActive.get(), current);
+            }
+            try {
+                Thread.sleep(5L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+            int nr = Integer.parseInt(stock.getSymbol().substring(3));
+            if (nr % 3 == 2) {
+                throw new IllegalStateException("Quote not available");
+            }
+            return nr % 3 == 0;
+        }
+
+        @Override
+        public List<Quote> getHistoricPrices(Stock stock) {
+            return new ArrayList<Quote>();
+        }
+
+        @Override
+        public List<Quote> getDividendPayouts(Stock stock) {
+            return new ArrayList<Quote>();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test suite for the {@link CircuitBreaker} class.
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAndRecovers() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(3, 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(breaker.allowRequest());
+            breaker.recordFailure();
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+
+        Thread.sleep(100L);
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertFalse("Only one trial call allowed", breaker.allowRequest());
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(100L);
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+    }
+}
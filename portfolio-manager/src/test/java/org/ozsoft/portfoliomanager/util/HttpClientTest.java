@@ -0,0 +1,93 @@
+package org.ozsoft.portfoliomanager.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * JUnit test suite for the {@link HttpClient} class.
+ */
+public class HttpClientTest {
+
+    private static final String BODY = "line 1\nline 2\r\nline 3";
+
+    private HttpServer server;
+
+    private String baseUri;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ok", exchange -> {
+            byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            byte[] bytes = "Not found".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.createContext("/agent", exchange -> {
+            byte[] bytes = exchange.getRequestHeaders().getFirst("User-Agent").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        baseUri = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void preservesNewlines() throws Exception {
+        HttpClient.Response response = HttpClient.getDefault().get(baseUri + "/ok");
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals(BODY, response.getBody());
+    }
+
+    @Test
+    public void returnsErrorStatus() throws Exception {
+        HttpClient.Response response = HttpClient.getDefault().get(baseUri + "/missing");
+        Assert.assertFalse(response.isSuccessful());
+        Assert.assertEquals(404, response.getStatusCode());
+        Assert.assertEquals("Not found", response.getBody());
+    }
+
+    @Test
+    public void getAsync() throws Exception {
+        HttpClient.Response response = HttpClient.getDefault().getAsync(baseUri + "/ok").get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(BODY, response.getBody());
+    }
+
+    @Test(expected = IOException.class)
+    public void openStreamFailsOnErrorStatus() throws Exception {
+        HttpClient.getDefault().openStream(baseUri + "/missing");
+    }
+
+    @Test
+    public void withSettingsDoesNotChangeSharedClient() throws Exception {
+        HttpClient client = HttpClient.getDefault().withSettings(1000, 1000, "Test/1.0");
+        Assert.assertEquals("Test/1.0", client.get(baseUri + "/agent").getBody());
+        Assert.assertNotEquals("Test/1.0", HttpClient.getDefault().get(baseUri + "/agent").getBody());
+    }
+}
@@ -0,0 +1,30 @@
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test suite for the {@link LatencyStats} class.
+ */
+public class LatencyStatsTest {
+
+    @Test
+    public void percentilesOverWindow() {
+        LatencyStats stats = new LatencyStats(100);
+        Assert.assertEquals(-1L, stats.getPercentileMillis(95.0));
+        for (int i = 1; i <= 200; i++) {
+            stats.record(TimeUnit.MILLISECONDS.toNanos(i), i % 10 != 0);
+        }
+
+        // Window holds calls 101..200, of which 90 succeeded
+        Assert.assertEquals(100, stats.getSampleCount());
+        Assert.assertEquals(200L, stats.getTotalCount());
+        Assert.assertEquals(20L, stats.getTotalFailureCount());
+        Assert.assertEquals(0.1, stats.getErrorRate(), 0.0001);
+        Assert.assertEquals(199L, stats.getPercentileMillis(100.0));
+        Assert.assertEquals(101L, stats.getPercentileMillis(0.0));
+        Assert.assertEquals(195L, stats.getPercentileMillis(95.0));
+    }
+}
@@ -0,0 +1,72 @@
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test suite for the {@link LruCache} class.
+ */
+public class LruCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<String, Integer>("test", 2);
+        cache.put("A", 1, 1, TimeUnit.HOURS);
+        cache.put("B", 2, 1, TimeUnit.HOURS);
+        Assert.assertEquals(Integer.valueOf(1), cache.get("A"));
+        cache.put("C", 3, 1, TimeUnit.HOURS);
+
+        Assert.assertNull(cache.get("B"));
+        Assert.assertEquals(Integer.valueOf(1), cache.get("A"));
+        Assert.assertEquals(Integer.valueOf(3), cache.get("C"));
+
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(2, stats.getSize());
+        Assert.assertEquals(1, stats.getEvictionCount());
+        Assert.assertEquals(3, stats.getHitCount());
+        Assert.assertEquals(1, stats.getMissCount());
+    }
+
+    @Test
+    public void expiresEntries() throws InterruptedException {
+        LruCache<String, Integer> cache = new LruCache<String, Integer>("test", 10);
+        cache.put("A", 1, 10, TimeUnit.MILLISECONDS);
+        cache.put("B", 2, 10, TimeUnit.MILLISECONDS);
+        cache.put("C", 3, 1, TimeUnit.HOURS);
+        Thread.sleep(50L);
+
+        Assert.assertNull(cache.get("A"));
+        Assert.assertEquals(1, cache.cleanUp());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(2, cache.getStats().getExpirationCount());
+    }
+
+    @Test
+    public void peekDoesNotCountAsAccess() {
+        LruCache<String, Integer> cache = new LruCache<String, Integer>("test", 2);
+        cache.put("A", 1, 1, TimeUnit.HOURS);
+        cache.put("B", 2, 1, TimeUnit.HOURS);
+        Assert.assertEquals(Integer.valueOf(1), cache.peek("A"));
+        cache.put("C", 3, 1, TimeUnit.HOURS);
+
+        Assert.assertNull(cache.peek("A"));
+        Assert.assertEquals(Integer.valueOf(2), cache.peek("B"));
+        Assert.assertEquals(0, cache.getStats().getHitCount());
+        Assert.assertEquals(0, cache.getStats().getMissCount());
+    }
+
+    @Test
+    public void touchExtendsOnlyPresentEntries() throws InterruptedException {
+        LruCache<String, Integer> cache = new LruCache<String, Integer>("test", 10);
+        cache.put("A", 1, 20, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(Integer.valueOf(1), cache.touch("A", 1, TimeUnit.HOURS));
+        Thread.sleep(50L);
+        Assert.assertEquals(Integer.valueOf(1), cache.get("A"));
+
+        cache.remove("A");
+        Assert.assertNull(cache.touch("A", 1, TimeUnit.HOURS));
+        Assert.assertNull(cache.peek("A"));
+    }
+}
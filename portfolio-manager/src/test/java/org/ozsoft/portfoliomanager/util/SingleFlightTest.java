@@ -0,0 +1,86 @@
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test suite for the {@link SingleFlight} class.
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+        final AtomicInteger loads = new AtomicInteger();
+        // The load blocks until every other caller has arrived and is waiting for it
+        final CountDownLatch arrived = new CountDownLatch(10);
+        final List<Thread> callers = new CopyOnWriteArrayList<Thread>();
+        final Callable<Integer> loader = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                loads.incrementAndGet();
+                Assert.assertTrue(arrived.await(5, TimeUnit.SECONDS));
+                for (Thread caller : callers) {
+                    while (caller != Thread.currentThread() && caller.getState() != Thread.State.WAITING) {
+                        Thread.yield();
+                    }
+                }
+                return 42;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    callers.add(Thread.currentThread());
+                    arrived.countDown();
+                    return singleFlight.execute("KEY", loader);
+                }
+            }));
+        }
+        for (Future<Integer> future : futures) {
+            Assert.assertEquals(Integer.valueOf(42), future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void failureIsReleased() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+        try {
+            singleFlight.execute("KEY", new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    throw new IllegalStateException("Boom");
+                }
+            });
+            Assert.fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        Assert.assertEquals(0, singleFlight.getInFlightCount());
+        Assert.assertEquals(Integer.valueOf(1), singleFlight.execute("KEY", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 1;
+            }
+        }));
+    }
+}
@@ -0,0 +1,103 @@
+package org.ozsoft.portfoliomanager.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit test suite for the {@link WriteBehindQueue} class.
+ */
+public class WriteBehindQueueTest {
+
+    @Test
+    public void coalescesRequestsWithinWindow() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        WriteBehindQueue queue = new WriteBehindQueue("test-writer", new Runnable() {
+            @Override
+            public void run() {
+                writes.incrementAndGet();
+            }
+        }, 60000L);
+
+        for (int i = 0; i < 100; i++) {
+            queue.request();
+        }
+        Assert.assertEquals(0, writes.get());
+        Assert.assertTrue(queue.isPending());
+
+        Assert.assertTrue(queue.flush(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, writes.get());
+        Assert.assertFalse(queue.isPending());
+        Assert.assertEquals(100L, queue.getRequestCount());
+        Assert.assertEquals(1L, queue.getWriteCount());
+        queue.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void writesAfterWindow() throws Exception {
+        final CountDownLatch written = new CountDownLatch(1);
+        WriteBehindQueue queue = new WriteBehindQueue("test-writer", new Runnable() {
+            @Override
+            public void run() {
+                written.countDown();
+            }
+        }, 10L);
+
+        queue.request();
+        Assert.assertTrue(written.await(5, TimeUnit.SECONDS));
+        queue.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void requestDuringWriteSchedulesAnotherWrite() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue queue = new WriteBehindQueue("test-writer", new Runnable() {
+            @Override
+            public void run() {
+                if (writes.incrementAndGet() == 1) {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, 0L);
+
+        queue.request();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        queue.request();
+        Assert.assertTrue(queue.isPending());
+        release.countDown();
+
+        Assert.assertTrue(queue.flush(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, writes.get());
+        queue.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void failedWriteDoesNotStopQueue() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        WriteBehindQueue queue = new WriteBehindQueue("test-writer", new Runnable() {
+            @Override
+            public void run() {
+                if (writes.incrementAndGet() == 1) {
+                    throw new IllegalStateException("Write failed");
+                }
+            }
+        }, 0L);
+
+        queue.request();
+        Assert.assertTrue(queue.flush(5, TimeUnit.SECONDS));
+        queue.request();
+        Assert.assertTrue(queue.flush(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, writes.get());
+        queue.shutdown(5, TimeUnit.SECONDS);
+    }
+}